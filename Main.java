@@ -148,6 +148,8 @@ public class Main {
                 public void windowClosing(java.awt.event.WindowEvent e) {
                     barraEstado.detener();
                     cVentas.limpiarRecursos();
+                    modelo.TopProductos.getInstance().guardarPuntoControl();
+                    ConexionDB.cerrarConexiones();
                 }
             });
         });
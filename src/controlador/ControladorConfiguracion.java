@@ -6,11 +6,10 @@ import vista.DialogoAtajos;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.Map;
 import modelo.ConexionDB;
+import modelo.ServicioConfiguracion;
 
 /**
  * Controlador del panel de configuración del sistema
@@ -137,34 +136,19 @@ public class ControladorConfiguracion {
      * Carga las preferencias desde el archivo de configuración
      */
     private void cargarPreferencia() {
-        try {
-            File f = new File("db_config.properties");
-            if (f.exists()) {
-                Properties prop = new Properties();
-                try (FileInputStream fis = new FileInputStream(f)) { 
-                    prop.load(fis); 
-                }
-                
-                String modo = prop.getProperty("modo_manual", "NORMAL");
-                if (modo.equals("GRANDE")) {
-                    vista.cmbModoManual.setSelectedIndex(1);
-                } else {
-                    vista.cmbModoManual.setSelectedIndex(0);
-                }
+        ServicioConfiguracion.Configuracion config = ServicioConfiguracion.obtener();
+        
+        if (config.getModoManual().equals("GRANDE")) {
+            vista.cmbModoManual.setSelectedIndex(1);
+        } else {
+            vista.cmbModoManual.setSelectedIndex(0);
+        }
 
-                String separar = prop.getProperty("separar_cigarros", "true");
-                vista.chkSepararCigarros.setSelected(separar.equals("true"));
-                
-                String imprimirTicket = prop.getProperty("imprimir_ticket", "true");
-                vista.chkImprimirTicket.setSelected(imprimirTicket.equals("true"));
-                
-                if (vista.txtNombreLocal != null) {
-                    String nombreLocal = prop.getProperty("nombre_local", "Mi Negocio");
-                    vista.txtNombreLocal.setText(nombreLocal);
-                }
-            }
-        } catch (Exception e) {
-            modelo.Logger.error("Error al cargar preferencias", e);
+        vista.chkSepararCigarros.setSelected(config.isSepararCigarros());
+        vista.chkImprimirTicket.setSelected(config.isImprimirTicket());
+        
+        if (vista.txtNombreLocal != null) {
+            vista.txtNombreLocal.setText(config.getTexto("nombre_local", "Mi Negocio"));
         }
     }
 
@@ -172,34 +156,25 @@ public class ControladorConfiguracion {
      * Guarda las preferencias en el archivo de configuración
      */
     private void guardarPreferencia() {
-        File f = new File("db_config.properties");
-        Properties prop = new Properties();
+        Map<String, String> prop = new HashMap<>();
         
         try {
-            if (f.exists()) { 
-                try (FileInputStream fis = new FileInputStream(f)) { 
-                    prop.load(fis); 
-                } 
-            }
-            
             int seleccion = vista.cmbModoManual.getSelectedIndex();
-            prop.setProperty("modo_manual", (seleccion == 1) ? "GRANDE" : "NORMAL");
-            prop.setProperty("separar_cigarros", vista.chkSepararCigarros.isSelected() ? "true" : "false");
-            prop.setProperty("imprimir_ticket", vista.chkImprimirTicket.isSelected() ? "true" : "false");
+            prop.put("modo_manual", (seleccion == 1) ? "GRANDE" : "NORMAL");
+            prop.put("separar_cigarros", vista.chkSepararCigarros.isSelected() ? "true" : "false");
+            prop.put("imprimir_ticket", vista.chkImprimirTicket.isSelected() ? "true" : "false");
             
             if (vista.txtNombreLocal != null) {
                 String nombreLocal = vista.txtNombreLocal.getText().trim();
                 if (nombreLocal.isEmpty()) {
                     nombreLocal = "Mi Negocio";
                 }
-                prop.setProperty("nombre_local", nombreLocal);
+                prop.put("nombre_local", nombreLocal);
             } else if (licenciaActual.equals("LITE")) {
-                prop.setProperty("nombre_local", "Kiosco");
+                prop.put("nombre_local", "Kiosco");
             }
             
-            try (FileOutputStream fos = new FileOutputStream(f)) { 
-                prop.store(fos, "Configuracion Kiosco"); 
-            }
+            ServicioConfiguracion.getInstance().guardar(prop);
             
             JOptionPane.showMessageDialog(vista, "✅ Configuración Guardada Correctamente");
             modelo.Logger.info("Configuración guardada por usuario: " + modelo.Sesion.getUsuario());
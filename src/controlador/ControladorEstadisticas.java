@@ -1,8 +1,10 @@
 package controlador;
 
+import modelo.CacheTablero;
 import modelo.EstadisticasDAO;
 import modelo.Formato;
-import modelo.ProductoDAO;
+import modelo.ResumenVentas;
+import modelo.TopProductos;
 import vista.PanelEstadisticas;
 import vista.ToastNotification;
 import java.awt.event.ActionEvent;
@@ -12,6 +14,8 @@ import java.util.List;
 import java.io.FileWriter;
 import java.io.IOException;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 /**
  * Controlador mejorado para el panel de estadísticas
@@ -19,14 +23,16 @@ import javax.swing.JOptionPane;
  */
 public class ControladorEstadisticas {
 
+    private static final int LIMITE_TOP = 10;
+    private static final int UMBRAL_STOCK_BAJO = 5;
+
     private PanelEstadisticas vista;
     private EstadisticasDAO dao;
-    private ProductoDAO productoDao;
+    private SwingWorker<EstadisticasDAO.Tablero, Void> cargaEnCurso;
 
     public ControladorEstadisticas(PanelEstadisticas vista) {
         this.vista = vista;
         this.dao = new EstadisticasDAO();
-        this.productoDao = new ProductoDAO();
         
         configurarEventos();
         cargarDatos();
@@ -37,8 +43,7 @@ public class ControladorEstadisticas {
      */
     private void configurarEventos() {
         vista.btnActualizar.addActionListener((ActionEvent e) -> {
-            cargarDatos();
-            ToastNotification.exito(vista, "Datos actualizados correctamente");
+            refrescar(() -> ToastNotification.exito(vista, "Datos actualizados correctamente"));
         });
         
         vista.btnExportar.addActionListener((ActionEvent e) -> {
@@ -48,26 +53,105 @@ public class ControladorEstadisticas {
         vista.btnReporte.addActionListener((ActionEvent e) -> {
             generarReporte();
         });
+        
+        vista.btnReconstruir.addActionListener((ActionEvent e) -> {
+            reconstruirResumenes();
+        });
+    }
+    
+    /**
+     * Recalcula ventas_dia, ventas_hora y producto_dia desde el historial
+     * (reparación manual si los resúmenes quedaron desfasados)
+     */
+    private void reconstruirResumenes() {
+        int confirm = JOptionPane.showConfirmDialog(vista,
+            "¿Reconstruir los resúmenes de estadísticas desde todas las ventas?\n" +
+            "Conviene hacerlo sin ventas en curso.",
+            "Reconstruir", JOptionPane.YES_NO_OPTION);
+        if (confirm != JOptionPane.YES_OPTION) return;
+        
+        vista.btnReconstruir.setEnabled(false);
+        Thread hilo = new Thread(() -> {
+            int ventas = ResumenVentas.reconstruir();
+            if (ventas >= 0) TopProductos.getInstance().resincronizar();
+            SwingUtilities.invokeLater(() -> {
+                vista.btnReconstruir.setEnabled(true);
+                if (ventas < 0) {
+                    ToastNotification.error(vista, "No se pudieron reconstruir los resúmenes");
+                } else {
+                    cargarDatos();
+                    ToastNotification.exito(vista, "Resúmenes reconstruidos (" + ventas + " ventas)");
+                }
+            });
+        }, "kiosco-resumenes");
+        hilo.setDaemon(true);
+        hilo.start();
     }
 
     /**
      * Carga todos los datos del panel con las nuevas métricas
+     * Muestra al instante la última foto en caché y, si venció o fue invalidada
+     * por una venta, pide una nueva en segundo plano (sin bloquear la caja)
      */
     public void cargarDatos() {
+        CacheTablero cache = CacheTablero.getInstance();
+        EstadisticasDAO.Tablero ultimo = cache.getUltimo();
+        if (ultimo != null) mostrar(ultimo);
+        if (!cache.estaVigente()) refrescar(null);
+    }
+    
+    /**
+     * Consulta el tablero en un SwingWorker (todo sale de una sola consulta,
+     * EstadisticasDAO.obtenerTablero) y lo muestra al terminar
+     * Si ya hay una consulta en vuelo no lanza otra
+     * @param alTerminar Se ejecuta en el EDT si la carga salió bien (puede ser null)
+     */
+    private void refrescar(Runnable alTerminar) {
+        if (cargaEnCurso != null && !cargaEnCurso.isDone()) return;
+        
+        CacheTablero cache = CacheTablero.getInstance();
+        long generacion = cache.getGeneracion();
+        cargaEnCurso = new SwingWorker<EstadisticasDAO.Tablero, Void>() {
+            @Override
+            protected EstadisticasDAO.Tablero doInBackground() throws Exception {
+                return dao.obtenerTablero(LocalDate.now(), LIMITE_TOP, UMBRAL_STOCK_BAJO);
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    EstadisticasDAO.Tablero tablero = get();
+                    cache.guardar(tablero, generacion);
+                    mostrar(tablero);
+                    if (alTerminar != null) alTerminar.run();
+                } catch (Exception e) {
+                    // Se mantiene la última foto buena en pantalla y en caché
+                    Throwable causa = e instanceof java.util.concurrent.ExecutionException && e.getCause() != null ? e.getCause() : e;
+                    ToastNotification.error(vista, "Error al cargar estadísticas: " + causa.getMessage());
+                }
+            }
+        };
+        cargaEnCurso.execute();
+    }
+    
+    /**
+     * Vuelca una foto del tablero en el panel (EDT)
+     */
+    private void mostrar(EstadisticasDAO.Tablero tablero) {
         try {
             // Limpiar tablas antes de cargar
             vista.limpiarTablas();
             
             // 1. KPIs principales
-            cargarKPIsPrincipales();
+            cargarKPIsPrincipales(tablero);
             
             // 2. KPIs adicionales
-            cargarKPIsAdicionales();
+            cargarKPIsAdicionales(tablero);
             
             // 3. Tablas de datos
-            cargarTablaTopProductos();
-            cargarTablaSemana();
-            cargarTablaPeriodos();
+            cargarTablaTopProductos(tablero);
+            cargarTablaSemana(tablero);
+            cargarTablaPeriodos(tablero);
             
         } catch (Exception e) {
             ToastNotification.error(vista, "Error al cargar estadísticas: " + e.getMessage());
@@ -77,50 +161,40 @@ public class ControladorEstadisticas {
     /**
      * Carga los KPIs principales (ventas hoy, ayer, productos vendidos)
      */
-    private void cargarKPIsPrincipales() {
-        LocalDate hoy = LocalDate.now();
-        LocalDate ayer = hoy.minusDays(1);
-        
-        double ventasHoy = dao.obtenerTotalVentasDia(hoy);
-        double ventasAyer = dao.obtenerTotalVentasDia(ayer);
-        int totalItems = dao.obtenerTotalProductosVendidos();
-
-        vista.actualizarKPI(vista.lblVentasHoy, Formato.moneda(ventasHoy));
-        vista.actualizarKPI(vista.lblVentasAyer, Formato.moneda(ventasAyer));
-        vista.actualizarKPI(vista.lblTotalProds, String.valueOf(totalItems));
+    private void cargarKPIsPrincipales(EstadisticasDAO.Tablero tablero) {
+        vista.actualizarKPI(vista.lblVentasHoy, Formato.moneda(tablero.getVentasHoy()));
+        vista.actualizarKPI(vista.lblVentasAyer, Formato.moneda(tablero.getVentasAyer()));
+        vista.actualizarKPI(vista.lblTotalProds, String.valueOf(tablero.getItemsHoy()));
     }
     
     /**
      * Carga los KPIs adicionales (producto del mes, promedio, stock bajo)
      */
-    private void cargarKPIsAdicionales() {
+    private void cargarKPIsAdicionales(EstadisticasDAO.Tablero tablero) {
         // Producto más vendido del mes
-        EstadisticasDAO.ProductoVendido productoMes = dao.obtenerProductoMasVendidoDelMes();
+        EstadisticasDAO.ProductoVendido productoMes = tablero.getProductoMes();
         String textoProductoMes = productoMes.getCantidadVendida() > 0 ? 
             productoMes.getNombre() + " (" + productoMes.getCantidadVendida() + ")" : 
             "Sin datos";
         vista.actualizarKPI(vista.lblProductoMes, textoProductoMes);
         
         // Promedio de venta de la semana
-        EstadisticasDAO.EstadisticasSemana statsSemana = dao.obtenerEstadisticasSemana();
-        double promedioVenta = statsSemana.promedioVenta;
-        vista.actualizarKPI(vista.lblPromedioVenta, Formato.moneda(promedioVenta));
+        vista.actualizarKPI(vista.lblPromedioVenta, Formato.moneda(tablero.getPromedioSemana()));
         
         // Productos con stock bajo
-        int stockBajo = productoDao.contarProductosStockBajo(5);
-        vista.actualizarKPI(vista.lblStockBajo, String.valueOf(stockBajo));
+        vista.actualizarKPI(vista.lblStockBajo, String.valueOf(tablero.getStockBajo()));
     }
     
     /**
      * Carga la tabla de top productos con formato simple
      */
-    private void cargarTablaTopProductos() {
-        List<String[]> top = dao.obtenerTopProductos();
+    private void cargarTablaTopProductos(EstadisticasDAO.Tablero tablero) {
+        List<EstadisticasDAO.ProductoVendido> top = tablero.getTopDia();
         
-        for (String[] fila : top) {
+        for (EstadisticasDAO.ProductoVendido pv : top) {
             vista.modeloTop.addRow(new Object[]{
-                fila[0], // Solo el nombre del producto
-                fila[1] + " unidades"
+                pv.getNombre(), // Solo el nombre del producto
+                pv.getCantidadVendida() + " unidades"
             });
         }
         
@@ -133,16 +207,14 @@ public class ControladorEstadisticas {
     /**
      * Carga la tabla de ventas de la semana sin emojis
      */
-    private void cargarTablaSemana() {
-        List<String[]> semana = dao.obtenerVentasSemana();
-        
-        for (String[] fila : semana) {
+    private void cargarTablaSemana(EstadisticasDAO.Tablero tablero) {
+        for (EstadisticasDAO.PuntoSerie dia : tablero.getUltimosSieteDias()) {
             // Solo mostrar el nombre del día sin emojis
-            String diaCompleto = obtenerNombreDiaCompleto(fila[0]);
+            String diaCompleto = obtenerNombreDiaCompleto(dia.getInicio().getDayOfWeek().toString().substring(0, 3));
             
             vista.modeloSemana.addRow(new Object[]{
                 diaCompleto,
-                "$ " + fila[1]
+                "$ " + String.format("%.2f", dia.getTotal())
             });
         }
     }
@@ -150,9 +222,8 @@ public class ControladorEstadisticas {
     /**
      * Carga la nueva tabla de períodos del día
      */
-    private void cargarTablaPeriodos() {
-        String fechaHoy = LocalDate.now().toString();
-        List<EstadisticasDAO.VentaPorHora> periodos = dao.obtenerVentasPorHora(fechaHoy);
+    private void cargarTablaPeriodos(EstadisticasDAO.Tablero tablero) {
+        List<EstadisticasDAO.VentaPorHora> periodos = tablero.getPeriodos();
         
         for (EstadisticasDAO.VentaPorHora periodo : periodos) {
             vista.modeloPeriodos.addRow(new Object[]{
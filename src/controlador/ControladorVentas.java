@@ -8,9 +8,6 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.io.File;
-import java.io.FileInputStream;
-import java.util.Properties;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -26,6 +23,7 @@ public class ControladorVentas {
     private PanelVentas vista;
     private ProductoDAO productoDao;
     private VentaDAO ventaDao;
+    private ProcesadorVentas procesadorVentas;
     private CajaDAO cajaDao;
     private ControladorCajas controladorCajas; 
     
@@ -37,9 +35,23 @@ public class ControladorVentas {
     private Timer timerBusqueda;
     private String modoCarrito = "LOCAL"; 
     private Timer timerReceptor;
-    private boolean imprimirTicketActivo = true;
+    private volatile boolean imprimirTicketActivo = true;
+    private final java.util.function.Consumer<ServicioConfiguracion.Configuracion> oyenteConfiguracion = this::aplicarConfiguracion;
     private Timer timerCarritoCompartido;
+    private Timer timerCatalogo;
     private boolean usarCarritoCompartido = false;
+    private final CarritoCompartidoDAO carritoDao = new CarritoCompartidoDAO();
+    private final PedidoDAO pedidoDao = new PedidoDAO(); // Solo lo usa un hilo a la vez (EDT en EMISOR, lector en RECEPTOR)
+    private java.util.concurrent.ExecutorService lectorCarrito; // Lecturas de carrito_compartido fuera del EDT
+    private final java.util.concurrent.atomic.AtomicBoolean lecturaPendiente = new java.util.concurrent.atomic.AtomicBoolean();
+    // Lo último leído del carrito compartido (solo los usa el hilo lector)
+    private long versionCarrito = -1;
+    private final java.util.Map<Long, CarritoCompartidoDAO.ItemCarrito> itemsCarrito = new java.util.LinkedHashMap<>();
+    // Ítems de carrito_compartido que muestra la tabla, id -> nombre (solo EDT): es lo que se cobra
+    private java.util.Map<Long, String> idsEnCarrito = new java.util.LinkedHashMap<>();
+    // Ventas cobradas que no se pudieron guardar, esperando que se vacíe el carrito (solo EDT)
+    private final java.util.Deque<VentaEnCurso> ventasNoGuardadas = new java.util.ArrayDeque<>();
+    private boolean cerrandoCaja = false;
 
 
     /**
@@ -50,10 +62,18 @@ public class ControladorVentas {
         this.vista = vista;
         this.productoDao = new ProductoDAO();
         this.ventaDao = new VentaDAO();
+        this.procesadorVentas = new ProcesadorVentas(ventaDao, SwingUtilities::invokeLater);
+        ColaImpresion.getInstance().setAvisoError(mensaje ->
+                SwingUtilities.invokeLater(() -> ToastNotification.error(vista, "❌ " + mensaje)));
+        ColaImpresion.getInstance().iniciar(); // Reimprime lo que quedó pendiente del cierre anterior
         this.cajaDao = new CajaDAO();
 
         this.idCajaActual = cajaDao.obtenerOIniciarCaja();
         
+        if (!CatalogoProductos.getInstance().estaCargado()) {
+            CatalogoProductos.getInstance().cargar();
+        }
+        
         cargarConfiguracion();
         cargarDatosPrueba(); 
         actualizarTablaProductos("");
@@ -65,26 +85,25 @@ public class ControladorVentas {
      * Carga la configuración desde el archivo properties
      */
     private void cargarConfiguracion() {
-        try {
-            File f = new File("db_config.properties");
-            if (f.exists()) {
-                Properties prop = new Properties();
-                prop.load(new FileInputStream(f));
-                
-                // Leer todas las configuraciones
-                modoCarrito = prop.getProperty("modo_carrito", "LOCAL").toUpperCase();
-                String ticketConfig = prop.getProperty("imprimir_ticket", "true").trim();
-                imprimirTicketActivo = Boolean.parseBoolean(ticketConfig);
-                String compartido = prop.getProperty("carrito_compartido", "false").trim();
-                usarCarritoCompartido = Boolean.parseBoolean(compartido);
-                
-                Logger.info("Configuración cargada: carrito=" + modoCarrito + 
-                           ", ticket=" + imprimirTicketActivo + 
-                           ", compartido=" + usarCarritoCompartido);
-            }
-        } catch (Exception e) {
-            Logger.error("Error al cargar configuración", e);
-        }
+        ServicioConfiguracion.Configuracion config = ServicioConfiguracion.obtener();
+        
+        // El modo de carrito arma la UI: solo cambia al reiniciar
+        modoCarrito = config.getModoCarrito();
+        imprimirTicketActivo = config.isImprimirTicket();
+        usarCarritoCompartido = config.isCarritoCompartido();
+        
+        Logger.info("Configuración cargada: carrito=" + modoCarrito + 
+                   ", ticket=" + imprimirTicketActivo + 
+                   ", compartido=" + usarCarritoCompartido);
+        
+        ServicioConfiguracion.getInstance().suscribir(oyenteConfiguracion);
+    }
+    
+    /**
+     * Aplica en caliente los cambios de configuración que no requieren reiniciar
+     */
+    private void aplicarConfiguracion(ServicioConfiguracion.Configuracion config) {
+        imprimirTicketActivo = config.isImprimirTicket();
     }
     
     /**
@@ -101,19 +120,61 @@ public class ControladorVentas {
             vista.btnCobrar.addActionListener(e -> enviarPedidoACaja());
             
         } else if (modoCarrito.equals("RECEPTOR")) {
-            timerReceptor = new Timer(2000, e -> revisarBuzonCompartido());
+            timerReceptor = new Timer(iniciarAvisosCarrito(), e -> pedirLecturaCarrito());
             timerReceptor.start();
+            lectorCarrito.execute(() -> pedidoDao.purgarEntregados(7));
+            pedirLecturaCarrito(); // Lo que quedó en la cola mientras estaba cerrada
             
         } else if (usarCarritoCompartido) {
             // Modo carrito compartido
             vista.btnCobrar.setText("☁️ COBRAR (RED)");
             vista.btnCobrar.setBackground(new Color(100, 149, 237)); // Azul Cornflower
             
-            timerCarritoCompartido = new Timer(2000, e -> sincronizarCarritoDesdeBD());
+            timerCarritoCompartido = new Timer(iniciarAvisosCarrito(), e -> pedirLecturaCarrito());
             timerCarritoCompartido.start();
+            pedirLecturaCarrito();
         }
     }
     
+    /**
+     * Escucha los avisos de cambio de las otras terminales (AvisoCarrito)
+     * y prepara el hilo que lee carrito_compartido
+     * @return Intervalo del sondeo de respaldo: lento si llegan los avisos, 2 s si no
+     */
+    private int iniciarAvisosCarrito() {
+        lectorCarrito = java.util.concurrent.Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kiosco-carrito");
+            t.setDaemon(true);
+            return t;
+        });
+        vista.txtPagaCon.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                pedirLecturaCarrito(); // Lo que se salteó mientras se cargaba el pago
+            }
+        });
+        
+        boolean conAvisos = AvisoCarrito.getInstance().iniciar(() -> SwingUtilities.invokeLater(this::pedirLecturaCarrito));
+        return conAvisos ? ServicioConfiguracion.obtener().getEntero("carrito_sondeo_ms", 15000) : 2000;
+    }
+    
+    /**
+     * Pide leer carrito_compartido en segundo plano (se llama en el EDT)
+     * Los pedidos que llegan mientras hay una lectura en espera se juntan en esa lectura
+     */
+    private void pedirLecturaCarrito() {
+        if (lectorCarrito == null || lectorCarrito.isShutdown() || vista.txtPagaCon.hasFocus()) return; // Se retoma al salir del campo
+        if (!lecturaPendiente.compareAndSet(false, true)) return;
+        lectorCarrito.execute(() -> {
+            lecturaPendiente.set(false); // Un cambio durante la lectura pide otra
+            if (modoCarrito.equals("RECEPTOR")) {
+                revisarBuzonCompartido();
+            } else {
+                sincronizarCarritoDesdeBD();
+            }
+        });
+    }
+    
     /**
      * Método para limpiar recursos al cerrar
      */
@@ -127,46 +188,60 @@ public class ControladorVentas {
         if (timerCarritoCompartido != null && timerCarritoCompartido.isRunning()) {
             timerCarritoCompartido.stop();
         }
+        if (timerCatalogo != null && timerCatalogo.isRunning()) {
+            timerCatalogo.stop();
+        }
+        if (lectorCarrito != null) {
+            lectorCarrito.shutdownNow();
+        }
+        AvisoCarrito.getInstance().detener();
+        ServicioConfiguracion.getInstance().desuscribir(oyenteConfiguracion);
+        procesadorVentas.detener(10000); // Guardar las ventas que quedaron en cola
+        ColaImpresion.getInstance().detener(3000); // Lo que no salga queda en tickets_pendientes
         Logger.info("Recursos de ControladorVentas limpiados");
     }
     /**
-     * Sincroniza el carrito local con la base de datos compartida
-     * Evita parpadeos innecesarios comparando totales antes de actualizar
+     * Trae lo que cambió en el carrito compartido desde la última versión leída
+     * (hilo kiosco-carrito) y vuelca el resultado en la tabla desde el EDT
      */
     private void sincronizarCarritoDesdeBD() {
-        if (vista.txtPagaCon.hasFocus()) return;
-
-        try (Connection c = ConexionDB.conectar(); Statement s = c.createStatement()) {
-            ResultSet rs = s.executeQuery("SELECT * FROM carrito_compartido");
-            
-            List<Object[]> datosNuevos = new ArrayList<>();
-            double totalNuevo = 0;
-            
-            while(rs.next()) {
-                String nombre = rs.getString("nombre_producto");
-                double precio = rs.getDouble("precio");
-                datosNuevos.add(new Object[]{1, nombre, precio, "➖"});
-                totalNuevo += precio;
-            }
-
-            // Validación anti-parpadeo: solo actualizar si hay cambios reales
-            double totalActual = 0;
-            try {
-                 String textoTotal = vista.lblTotal.getText().replace("$", "").replace(".", "").replace(",", ".").trim();
-                 totalActual = Double.parseDouble(textoTotal);
-            } catch(Exception e) { totalActual = -1; }
-
-            if (Math.abs(totalNuevo - totalActual) > 0.01 || datosNuevos.size() != vista.modeloCarrito.getRowCount()) {
-                vista.modeloCarrito.setRowCount(0);
-                for (Object[] fila : datosNuevos) {
-                    vista.modeloCarrito.addRow(fila);
-                }
-                calcularTotal();
-            }
-            
-        } catch(Exception e) {
-            System.out.println("Error sync carrito: " + e.getMessage());
+        CarritoCompartidoDAO.CambiosCarrito cambios = carritoDao.obtenerCambiosDesde(versionCarrito);
+        if (cambios == null) return; // Sin cambios (una lectura de carrito_version)
+        
+        if (cambios.reinicio) itemsCarrito.clear();
+        for (Long id : cambios.bajas) itemsCarrito.remove(id);
+        for (CarritoCompartidoDAO.ItemCarrito item : cambios.altas) itemsCarrito.put(item.id, item);
+        versionCarrito = cambios.version;
+        
+        List<Object[]> datosNuevos = new ArrayList<>(itemsCarrito.size());
+        java.util.Map<Long, String> ids = new java.util.LinkedHashMap<>();
+        for (CarritoCompartidoDAO.ItemCarrito item : itemsCarrito.values()) {
+            datosNuevos.add(new Object[]{1, item.nombreProducto, item.precio, "➖"});
+            ids.put(item.id, item.nombreProducto);
+        }
+        SwingUtilities.invokeLater(() -> aplicarCarritoCompartido(datosNuevos, ids));
+    }
+    
+    /**
+     * Reemplaza el carrito visible solo si difiere de lo leído (evita parpadeos)
+     */
+    private void aplicarCarritoCompartido(List<Object[]> datosNuevos, java.util.Map<Long, String> ids) {
+        idsEnCarrito = ids;
+        DefaultTableModel carrito = vista.modeloCarrito;
+        boolean igual = datosNuevos.size() == carrito.getRowCount();
+        for (int i = 0; igual && i < datosNuevos.size(); i++) {
+            Object[] fila = datosNuevos.get(i);
+            igual = fila[0].equals(carrito.getValueAt(i, 0))
+                    && fila[1].equals(carrito.getValueAt(i, 1))
+                    && fila[2].equals(carrito.getValueAt(i, 2));
         }
+        if (igual) return;
+        
+        carrito.setRowCount(0);
+        for (Object[] fila : datosNuevos) {
+            carrito.addRow(fila);
+        }
+        calcularTotal();
     }
     
     public void setControladorCajas(ControladorCajas controladorCajas) {
@@ -187,18 +262,12 @@ public class ControladorVentas {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                     timerBusqueda.stop();
                     String codigoEscaneado = vista.txtBuscar.getText().trim();
-                    boolean productoEncontrado = false;
-
-                    for (int i = 0; i < listaProductosCache.size(); i++) {
-                        Producto p = listaProductosCache.get(i);
-                        if (String.valueOf(p.getCodigo()).equals(codigoEscaneado)) {
-                            validarYAgregarProducto(p.getCodigo(), p.getNombre(), p.getPrecio(), p.getStock(), i);
-                            vista.txtBuscar.setText(""); 
-                            productoEncontrado = true;
-                            break;
-                        }
-                    }
-                    if (!productoEncontrado) {
+                    Producto p = buscarProductoEscaneado(codigoEscaneado);
+
+                    if (p != null) {
+                        validarYAgregarProducto(p.getCodigo(), p.getNombre(), p.getPrecio(), p.getStock(), -1);
+                        vista.txtBuscar.setText(""); 
+                    } else {
                         actualizarTablaProductos(codigoEscaneado);
                     }
                 } else {
@@ -249,15 +318,7 @@ public class ControladorVentas {
         vista.btnNuevoProducto.addActionListener(e -> abrirVentanaNuevoProducto());
         
         vista.btnManual.addActionListener(e -> {
-            String modoActual = "NORMAL"; 
-            try {
-                File f = new File("db_config.properties");
-                if (f.exists()) {
-                    Properties prop = new Properties();
-                    prop.load(new FileInputStream(f));
-                    modoActual = prop.getProperty("modo_manual", "NORMAL").trim().toUpperCase();
-                }
-            } catch (Exception ex) {}
+            String modoActual = ServicioConfiguracion.obtener().getModoManual();
 
             if (modoActual.equals("GRANDE")) {
                 mostrarSelectorManual(); 
@@ -289,6 +350,46 @@ public class ControladorVentas {
             }
         });
         timerRefresco.start();
+
+        // En RED otras terminales modifican productos: resincronizar el catálogo en memoria
+        if (ConexionDB.tipoBase.equals("mysql")) {
+            timerCatalogo = new Timer(30000, e -> CatalogoProductos.getInstance().recargarEnSegundoPlano());
+            timerCatalogo.start();
+        }
+    }
+
+    /**
+     * Resuelve un código escaneado contra el catálogo en memoria
+     * Si no está (p.ej. lo cargó otra terminal) se consulta una vez la BD y se incorpora al catálogo
+     * @return El producto o null si el texto no es un código existente
+     */
+    private Producto buscarProductoEscaneado(String texto) {
+        long codigo = parsearCodigo(texto);
+        if (codigo < 0) return null;
+
+        CatalogoProductos catalogo = CatalogoProductos.getInstance();
+        Producto p = catalogo.buscar(codigo);
+        if (p == null) {
+            p = productoDao.buscarPorCodigo(codigo);
+            if (p != null) catalogo.poner(p);
+        }
+        return p;
+    }
+
+    /**
+     * Convierte el texto del lector a código sin lanzar excepciones
+     * @return El código o -1 si no es un número válido
+     */
+    private static long parsearCodigo(String texto) {
+        int largo = texto.length();
+        if (largo == 0 || largo > 18) return -1;
+        long codigo = 0;
+        for (int i = 0; i < largo; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            codigo = codigo * 10 + (c - '0');
+        }
+        return codigo;
     }
 
     private void verCajaActual() {
@@ -312,6 +413,7 @@ public class ControladorVentas {
 
         // Preparar objetos para la Base de Datos
         List<Venta.DetalleVenta> items = prepararItemsVenta(carrito);
+        if (items == null) return; // Algún producto ya no existe
         Venta nuevaVenta = new Venta(totalVenta, medioPago, items);
         
         // Intentar guardar con mejor manejo de errores
@@ -342,6 +444,7 @@ public class ControladorVentas {
 
     /**
      * Prepara los items de venta desde el carrito
+     * @return null si un producto no manual no se encuentra (la venta no se cobra)
      */
     private List<Venta.DetalleVenta> prepararItemsVenta(DefaultTableModel carrito) {
         List<Venta.DetalleVenta> items = new ArrayList<>();
@@ -349,32 +452,77 @@ public class ControladorVentas {
             int cant = (int) carrito.getValueAt(i, 0);
             String nom = (String) carrito.getValueAt(i, 1);
             double tot = Double.parseDouble(carrito.getValueAt(i, 2).toString());
-            items.add(new Venta.DetalleVenta(nom, tot / cant, cant));
+
+            // El carrito guarda nombres: se resuelve el código del producto (los manuales no tienen)
+            String nombreProducto = nom.startsWith("📨 ") ? nom.substring("📨 ".length()) : nom;
+            if (nombreProducto.endsWith(" (Manual)")) {
+                items.add(new Venta.DetalleVenta(nom, tot / cant, cant));
+                continue;
+            }
+            Producto p = buscarProductoPorNombre(nombreProducto);
+            if (p == null) {
+                Logger.warn("Venta no cobrada: producto inexistente en el carrito: " + nombreProducto);
+                JOptionPane.showMessageDialog(vista, 
+                    "El producto \"" + nombreProducto + "\" ya no existe.\n" +
+                    "Quítelo del carrito para cobrar.", 
+                    "Producto No Encontrado", 
+                    JOptionPane.ERROR_MESSAGE);
+                return null;
+            }
+            items.add(new Venta.DetalleVenta(p.getCodigo(), nom, tot / cant, cant, p.isEsCigarrillo()));
         }
         return items;
     }
 
     /**
-     * Procesa la venta final con mejor manejo de errores y feedback
+     * Resuelve un nombre del carrito contra el catálogo en memoria
+     * Si no está (otra terminal lo agregó o renombró y el catálogo aún no se recargó)
+     * se consulta la BD y se incorpora al catálogo
+     */
+    private Producto buscarProductoPorNombre(String nombre) {
+        CatalogoProductos catalogo = CatalogoProductos.getInstance();
+        Producto p = catalogo.buscarPorNombre(nombre);
+        if (p == null) {
+            p = productoDao.buscarPorNombre(nombre);
+            if (p != null) catalogo.poner(p);
+        }
+        return p;
+    }
+
+    /**
+     * Entrega la venta al procesador y deja la caja libre para el próximo cliente
+     * El guardado ocurre en segundo plano; el resultado llega a terminarVenta() en el EDT
      */
     private void procesarVentaFinal(Venta nuevaVenta, String medioPago, DefaultTableModel carrito) {
+        VentaEnCurso enCurso = new VentaEnCurso(carrito, totalVenta, recargoPct, idCajaActual, vista.lblTotal.getText());
+        
+        if (!procesadorVentas.encolar(idCajaActual, nuevaVenta, exito -> terminarVenta(enCurso, medioPago, exito))) {
+            ToastNotification.error(vista, "⏳ Hay demasiadas ventas guardándose - Intente nuevamente");
+            Logger.warn("Cola de ventas llena, venta no encolada");
+            return;
+        }
+        
+        // Limpiar carrito compartido si está activo
+        if (usarCarritoCompartido) {
+            limpiarCarritoCompartido();
+        }
+
+        limpiarInterfazVenta();
+    }
+
+    /**
+     * Resultado del guardado en segundo plano (se ejecuta en el EDT)
+     */
+    private void terminarVenta(VentaEnCurso venta, String medioPago, boolean exito) {
         try {
-            if (ventaDao.registrarVenta(idCajaActual, nuevaVenta)) {
-                
+            if (exito) {
                 // Éxito: Mostrar confirmación y manejar ticket
-                manejarVentaExitosa(medioPago, carrito);
-                
-                // Limpiar carrito compartido si está activo
-                if (usarCarritoCompartido) {
-                    limpiarCarritoCompartido();
-                }
-
-                limpiarInterfazVenta();
-                
+                manejarVentaExitosa(medioPago, venta);
             } else {
                 // Error en la venta
                 ToastNotification.error(vista, "❌ Error al procesar la venta - Verifique la conexión");
                 Logger.error("Error al registrar venta en BD");
+                restaurarCarrito(venta);
             }
         } catch (Exception e) {
             // Error crítico
@@ -390,27 +538,96 @@ public class ControladorVentas {
         }
     }
 
+    /**
+     * Devuelve al carrito una venta que no se pudo guardar
+     * Si ya se está atendiendo a otro cliente no se pisa su carrito: la venta queda
+     * pendiente y vuelve sola cuando el carrito se vacía
+     */
+    private void restaurarCarrito(VentaEnCurso venta) {
+        if (vista.modeloCarrito.getRowCount() > 0) {
+            ventasNoGuardadas.add(venta);
+            JOptionPane.showMessageDialog(vista, 
+                "No se pudo guardar la venta de " + venta.totalTexto + ".\n" +
+                "Volverá al carrito cuando termine la venta actual.", 
+                "Venta No Guardada", 
+                JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
+        DefaultTableModel filas = venta.filas;
+        for (int i = 0; i < filas.getRowCount(); i++) {
+            int cant = (int) filas.getValueAt(i, 0);
+            String nombre = (String) filas.getValueAt(i, 1);
+            double totalFila = Double.parseDouble(filas.getValueAt(i, 2).toString());
+            vista.modeloCarrito.addRow(new Object[]{ cant, nombre, totalFila, "➖" });
+            
+            if (usarCarritoCompartido) {
+                for (int u = 0; u < cant; u++) {
+                    agregarACarritoCompartido(nombre, totalFila / cant, "Caja");
+                }
+            }
+        }
+        recargoPct = venta.recargoPct;
+        calcularTotal();
+    }
+
+    /**
+     * Con el carrito vacío, vuelve a cargar la próxima venta que no se pudo guardar
+     */
+    private void restaurarVentaNoGuardada() {
+        if (vista.modeloCarrito.getRowCount() > 0 || ventasNoGuardadas.isEmpty()) return;
+        VentaEnCurso venta = ventasNoGuardadas.poll();
+        restaurarCarrito(venta);
+        ToastNotification.warning(vista, "⚠️ Venta de " + venta.totalTexto + " sin guardar: vuelva a cobrarla");
+    }
+
+    /**
+     * Copia de lo cobrado: la UI ya se limpió cuando llega el resultado del guardado
+     */
+    private static class VentaEnCurso {
+        final DefaultTableModel filas;
+        final double total;
+        final double recargoPct;
+        final int idCaja;
+        final String totalTexto;
+
+        VentaEnCurso(DefaultTableModel carrito, double total, double recargoPct, int idCaja, String totalTexto) {
+            this.filas = new DefaultTableModel(0, carrito.getColumnCount());
+            for (int i = 0; i < carrito.getRowCount(); i++) {
+                Object[] fila = new Object[carrito.getColumnCount()];
+                for (int c = 0; c < fila.length; c++) fila[c] = carrito.getValueAt(i, c);
+                this.filas.addRow(fila);
+            }
+            this.total = total;
+            this.recargoPct = recargoPct;
+            this.idCaja = idCaja;
+            this.totalTexto = totalTexto;
+        }
+    }
+
     /**
      * Maneja una venta exitosa con feedback mejorado y auditoría completa
      */
-    private void manejarVentaExitosa(String medioPago, DefaultTableModel carrito) {
+    private void manejarVentaExitosa(String medioPago, VentaEnCurso venta) {
+        DefaultTableModel carrito = venta.filas;
+        
         // Feedback visual mejorado
         String iconoMedio = medioPago.equals("Efectivo") ? "💵" : 
                            medioPago.equals("Transferencia") ? "📲" : "💳";
         
         ToastNotification.exito(vista, 
             String.format("✅ Venta procesada %s %s - %s", 
-                iconoMedio, medioPago, vista.lblTotal.getText()));
+                iconoMedio, medioPago, venta.totalTexto));
 
         // Sonido de confirmación
         modelo.SonidoManager.reproducirVentaExitosa();
 
         if (imprimirTicketActivo) {
-            manejarImpresionTicket(medioPago, carrito);
+            manejarImpresionTicket(medioPago, venta);
         }
         
         // MEJORADO: Auditoría completa de la venta
-        Logger.logVenta(totalVenta, medioPago, carrito.getRowCount(), idCajaActual);
+        Logger.logVenta(venta.total, medioPago, carrito.getRowCount(), venta.idCaja);
         
         // Log detallado de productos vendidos
         StringBuilder productosVendidos = new StringBuilder();
@@ -425,13 +642,13 @@ public class ControladorVentas {
         
         Logger.auditoria("DETALLE_VENTA", 
             String.format("Productos: [%s] | Total: $%.2f | Medio: %s", 
-                productosVendidos.toString(), totalVenta, medioPago));
+                productosVendidos.toString(), venta.total, medioPago));
     }
 
     /**
      * Maneja la impresión de tickets con mejor UX
      */
-    private void manejarImpresionTicket(String medioPago, DefaultTableModel carrito) {
+    private void manejarImpresionTicket(String medioPago, VentaEnCurso venta) {
         String[] opcionesTicket = {"🖨️ Imprimir Ticket", "📱 Solo Digital", "❌ Sin Ticket"};
         int respuestaTicket = JOptionPane.showOptionDialog(vista, 
             "¿Cómo desea el comprobante?", 
@@ -443,7 +660,7 @@ public class ControladorVentas {
             opcionesTicket[0]);
 
         if (respuestaTicket == 0) { // Imprimir
-            generarEImprimirTicket(medioPago, carrito);
+            generarEImprimirTicket(medioPago, venta);
         } else if (respuestaTicket == 1) { // Solo digital
             ToastNotification.info(vista, "📱 Comprobante digital registrado");
         }
@@ -452,48 +669,55 @@ public class ControladorVentas {
     /**
      * Genera e imprime el ticket con formato mejorado
      */
-    private void generarEImprimirTicket(String medioPago, DefaultTableModel carrito) {
+    private void generarEImprimirTicket(String medioPago, VentaEnCurso venta) {
+        DefaultTableModel carrito = venta.filas;
+        double totalVenta = venta.total;
+        double recargoPct = venta.recargoPct;
         try {
-            StringBuilder ticket = new StringBuilder();
-            
-            // Encabezado mejorado
-            ticket.append("================================\n");
-            ticket.append("         🏪 KIOSCO SYSTEM       \n");
-            ticket.append("================================\n");
-            ticket.append("Fecha: ").append(java.time.LocalDate.now()).append("\n");
-            ticket.append("Hora:  ").append(java.time.LocalTime.now().toString().substring(0,5)).append("\n");
-            ticket.append("Caja:  #").append(idCajaActual).append("\n");
-            ticket.append("Cajero: ").append(modelo.Sesion.getUsuario()).append("\n");
-            ticket.append("--------------------------------\n");
-            ticket.append("CANT  PRODUCTO           TOTAL\n");
-            ticket.append("--------------------------------\n");
-            
-            // Productos con formato mejorado
-            for (int i = 0; i < carrito.getRowCount(); i++) {
-                int c = (int) carrito.getValueAt(i, 0);
-                String n = carrito.getValueAt(i, 1).toString();
-                if(n.length() > 15) n = n.substring(0, 15);
-                double t = Double.parseDouble(carrito.getValueAt(i, 2).toString());
+            // El cuerpo se escribe directo en bytes ESC/POS (sin String.format ni String intermedio)
+            boolean encolado = modelo.TicketImpresora.imprimir(ticket -> {
+                // Encabezado mejorado
+                ticket.linea("================================");
+                ticket.linea("         🏪 KIOSCO SYSTEM       ");
+                ticket.linea("================================");
+                ticket.texto("Fecha: ").linea(java.time.LocalDate.now().toString());
+                ticket.texto("Hora:  ").linea(java.time.LocalTime.now().toString().substring(0,5));
+                ticket.texto("Caja:  #").entero(venta.idCaja, 0).salto();
+                ticket.texto("Cajero: ").linea(modelo.Sesion.getUsuario());
+                ticket.linea("--------------------------------");
+                ticket.linea("CANT  PRODUCTO           TOTAL");
+                ticket.linea("--------------------------------");
                 
-                ticket.append(String.format("%2d x %-15s $%,.0f\n", c, n, t));
-            }
+                // Productos con formato mejorado (%2d x %-15s $%,.0f)
+                for (int i = 0; i < carrito.getRowCount(); i++) {
+                    int c = (int) carrito.getValueAt(i, 0);
+                    String n = carrito.getValueAt(i, 1).toString();
+                    if(n.length() > 15) n = n.substring(0, 15);
+                    double t = Double.parseDouble(carrito.getValueAt(i, 2).toString());
+                    
+                    ticket.entero(c, 2).texto(" x ").columna(n, 15).texto(" $").montoEntero(t).salto();
+                }
+                
+                // Totales mejorados
+                ticket.linea("--------------------------------");
+                if (recargoPct > 0) {
+                    double subtotal = totalVenta / (1 + recargoPct);
+                    double recargo = totalVenta - subtotal;
+                    ticket.texto("Subtotal:            $").montoEntero(subtotal).salto();
+                    ticket.texto("Recargo (").redondeado(recargoPct * 100).texto("%):        $").montoEntero(recargo).salto();
+                }
+                ticket.texto("TOTAL:               $").montoEntero(totalVenta).salto();
+                ticket.texto("Medio: ").linea(medioPago);
+                ticket.linea("================================");
+                ticket.linea("    ¡Gracias por su compra!    ");
+                ticket.linea("================================").salto().salto();
+            });
             
-            // Totales mejorados
-            ticket.append("--------------------------------\n");
-            if (recargoPct > 0) {
-                double subtotal = totalVenta / (1 + recargoPct);
-                double recargo = totalVenta - subtotal;
-                ticket.append(String.format("Subtotal:            $%,.0f\n", subtotal));
-                ticket.append(String.format("Recargo (%.0f%%):        $%,.0f\n", recargoPct * 100, recargo));
+            if (encolado) {
+                ToastNotification.info(vista, "🖨️ Ticket enviado a impresora");
+            } else {
+                ToastNotification.warning(vista, "⚠️ Cola de impresión llena, ticket no enviado");
             }
-            ticket.append(String.format("TOTAL:               $%,.0f\n", totalVenta));
-            ticket.append("Medio: ").append(medioPago).append("\n");
-            ticket.append("================================\n");
-            ticket.append("    ¡Gracias por su compra!    \n");
-            ticket.append("================================\n\n\n");
-            
-            modelo.TicketImpresora.imprimir(ticket.toString());
-            ToastNotification.info(vista, "🖨️ Ticket enviado a impresora");
             
         } catch (Exception e) {
             Logger.error("Error generando ticket", e);
@@ -502,13 +726,33 @@ public class ControladorVentas {
     }
 
     /**
-     * Limpia el carrito compartido de forma segura
+     * Saca del carrito compartido lo que se acaba de cobrar (lo que mostraba la tabla)
      */
     private void limpiarCarritoCompartido() {
-        try (Connection c = ConexionDB.conectar(); Statement s = c.createStatement()) {
-            s.executeUpdate("DELETE FROM carrito_compartido");
-        } catch (Exception e) {
-            Logger.error("Error limpiando carrito compartido", e);
+        carritoDao.limpiarCarrito(new ArrayList<>(idsEnCarrito.keySet())); // Registra el error si falla
+        idsEnCarrito.clear();
+    }
+
+    /**
+     * Agrega al carrito compartido y recuerda el id para cobrarlo o quitarlo después
+     */
+    private boolean agregarACarritoCompartido(String nombre, double precio, String origen) {
+        long id = carritoDao.agregarItem(nombre, precio, origen);
+        if (id < 0) return false;
+        idsEnCarrito.put(id, nombre);
+        return true;
+    }
+
+    /**
+     * Quita del carrito compartido una unidad de las que muestra esta terminal
+     */
+    private void quitarDeCarritoCompartido(String nombre) {
+        for (java.util.Map.Entry<Long, String> e : idsEnCarrito.entrySet()) {
+            if (e.getValue().equals(nombre)) {
+                carritoDao.removerItem(e.getKey());
+                idsEnCarrito.remove(e.getKey());
+                return;
+            }
         }
     }
 
@@ -520,6 +764,7 @@ public class ControladorVentas {
         vista.lblVuelto.setText(Formato.moneda(0));
         vista.lblTotal.setText(Formato.moneda(0));
         calcularTotal();
+        restaurarVentaNoGuardada();
     }
 
     // ... EL RESTO DE TUS MÉTODOS DE AGREGAR PRODUCTO, EDITAR, ETC, SIGUEN IGUAL ...
@@ -639,12 +884,16 @@ public class ControladorVentas {
                     // Actualizar en la base de datos
                     Producto productoActualizado = new Producto(codigo, nombre, precio, nuevoStock, false);
                     if (productoDao.actualizar(productoActualizado)) {
-                        // Actualizar visualmente
-                        vista.modeloProductos.setValueAt(nuevoStock, row, 3);
                         Logger.info(String.format("Stock actualizado para %s: %d -> %d", nombre, stockActual, nuevoStock));
                         
-                        // Ahora intentar agregar al carrito de nuevo
-                        agregarDesdeTabla(row);
+                        if (row >= 0) {
+                            // Actualizar visualmente y volver a intentar desde la tabla
+                            vista.modeloProductos.setValueAt(nuevoStock, row, 3);
+                            agregarDesdeTabla(row);
+                        } else {
+                            // Vino de un escaneo: el producto puede no estar visible en la tabla
+                            validarYAgregarProducto(codigo, nombre, precio, nuevoStock, -1);
+                        }
                     } else {
                         JOptionPane.showMessageDialog(vista, "Error al actualizar el stock en la base de datos.", "Error", JOptionPane.ERROR_MESSAGE);
                     }
@@ -686,12 +935,7 @@ public class ControladorVentas {
 
         // Sincronizar con carrito compartido si está activo
         if (usarCarritoCompartido) {
-            try (Connection c = ConexionDB.conectar(); 
-                 PreparedStatement ps = c.prepareStatement("INSERT INTO carrito_compartido(nombre_producto, precio) VALUES(?,?)")) {
-                ps.setString(1, nombre);
-                ps.setDouble(2, precio);
-                ps.executeUpdate();
-            } catch (Exception e) {}
+            agregarACarritoCompartido(nombre, precio, "Puesto");
         }
     }
    
@@ -714,16 +958,11 @@ public class ControladorVentas {
             carrito.removeRow(row);
         }
         calcularTotal();
+        restaurarVentaNoGuardada();
 
         // Sincronizar con carrito compartido
         if (usarCarritoCompartido) {
-            try (Connection c = ConexionDB.conectar(); 
-                 PreparedStatement ps = c.prepareStatement("DELETE FROM carrito_compartido WHERE nombre_producto = ? LIMIT 1")) {
-                ps.setString(1, nombre);
-                ps.executeUpdate();
-            } catch (Exception e) {
-                System.out.println("Error al borrar del carrito compartido: " + e.getMessage());
-            }
+            quitarDeCarritoCompartido(nombre);
         }
     }
    
@@ -745,10 +984,43 @@ public class ControladorVentas {
    }
 
    private void cerrarCajaDefinitivo() {
-       cajaDao.cerrarCaja(idCajaActual);
-       JOptionPane.showMessageDialog(vista, "Caja cerrada correctamente.\nSe ha abierto una nueva sesión.");
-       if (controladorCajas != null) controladorCajas.cargarCajas();
-       idCajaActual = cajaDao.obtenerOIniciarCaja();
+       if (cerrandoCaja) return;
+       cerrandoCaja = true;
+       vista.btnCerrarCaja.setEnabled(false);
+
+       // Las ventas en cola pertenecen a esta caja: se espera su guardado fuera del EDT
+       new SwingWorker<Boolean, Void>() {
+           @Override
+           protected Boolean doInBackground() {
+               return procesadorVentas.esperarPendientes(30000);
+           }
+
+           @Override
+           protected void done() {
+               cerrandoCaja = false;
+               vista.btnCerrarCaja.setEnabled(true);
+               boolean guardadas;
+               try {
+                   guardadas = get();
+               } catch (Exception e) {
+                   Logger.error("Error esperando las ventas pendientes", e);
+                   guardadas = false;
+               }
+               if (!guardadas) {
+                   JOptionPane.showMessageDialog(vista, "Todavía hay ventas guardándose.\nIntente cerrar la caja en unos segundos.", "Cerrar Caja", JOptionPane.WARNING_MESSAGE);
+                   return;
+               }
+               // Lo que falló mientras se esperaba volvió al carrito: es plata de esta caja
+               if (vista.modeloCarrito.getRowCount() > 0 || !ventasNoGuardadas.isEmpty()) {
+                   JOptionPane.showMessageDialog(vista, "Hay ventas que no se pudieron guardar.\nCóbrelas antes de cerrar la caja.", "Cerrar Caja", JOptionPane.WARNING_MESSAGE);
+                   return;
+               }
+               cajaDao.cerrarCaja(idCajaActual);
+               JOptionPane.showMessageDialog(vista, "Caja cerrada correctamente.\nSe ha abierto una nueva sesión.");
+               if (controladorCajas != null) controladorCajas.cargarCajas();
+               idCajaActual = cajaDao.obtenerOIniciarCaja();
+           }
+       }.execute();
    }
 
     /**
@@ -1000,17 +1272,8 @@ public class ControladorVentas {
                 agregarAlCarritoVisual(nombreFinal, val);
                 
                 // 2. GUARDAR EN BD
-                try (Connection c = ConexionDB.conectar(); 
-                     PreparedStatement ps = c.prepareStatement("INSERT INTO carrito_compartido(nombre_producto, precio) VALUES(?,?)")) {
-                    
-                    ps.setString(1, nombreFinal);
-                    ps.setDouble(2, val);
-                    ps.executeUpdate();
-                    
-                } catch (Exception ex) {
-                    // --- AQUI ESTA EL CAMBIO: TE MOSTRARÁ EL ERROR EN PANTALLA ---
-                    JOptionPane.showMessageDialog(d, "Error al guardar en RED:\n" + ex.getMessage(), "Error Sincronización", JOptionPane.ERROR_MESSAGE);
-                    ex.printStackTrace();
+                if (!agregarACarritoCompartido(nombreFinal, val, "Puesto")) {
+                    JOptionPane.showMessageDialog(d, "Error al guardar en RED (ver log)", "Error Sincronización", JOptionPane.ERROR_MESSAGE);
                 }
                 
                 d.dispose();
@@ -1024,30 +1287,47 @@ public class ControladorVentas {
         d.setVisible(true);
     }
 
+   /**
+    * Deja el carrito como un pedido en la cola de la caja (cabecera e ítems en una transacción)
+    */
    private void enviarPedidoACaja() {
        if(vista.modeloCarrito.getRowCount()==0) return;
-       try(Connection c = ConexionDB.conectar(); PreparedStatement ps = c.prepareStatement("INSERT INTO carrito_compartido(nombre_producto, precio) VALUES(?,?)")) {
-           for(int i=0; i<vista.modeloCarrito.getRowCount(); i++) {
-               ps.setString(1, vista.modeloCarrito.getValueAt(i, 1).toString());
-               ps.setDouble(2, Double.parseDouble(vista.modeloCarrito.getValueAt(i, 2).toString()));
-               ps.executeUpdate();
-           }
-           vista.modeloCarrito.setRowCount(0); calcularTotal();
-           JOptionPane.showMessageDialog(vista, "✅ Enviado a Caja");
-       } catch(Exception e) { JOptionPane.showMessageDialog(vista, "Error Red: " + e.getMessage()); }
+       List<PedidoDAO.ItemPedido> items = new ArrayList<>();
+       for(int i=0; i<vista.modeloCarrito.getRowCount(); i++) {
+           int cant = (int) vista.modeloCarrito.getValueAt(i, 0);
+           double totalFila = Double.parseDouble(vista.modeloCarrito.getValueAt(i, 2).toString());
+           items.add(new PedidoDAO.ItemPedido(vista.modeloCarrito.getValueAt(i, 1).toString(), totalFila / cant, cant));
+       }
+       if (pedidoDao.enviarPedido("Puesto", items) < 0) {
+           JOptionPane.showMessageDialog(vista, "Error Red: no se pudo enviar el pedido (ver log)");
+           return;
+       }
+       vista.modeloCarrito.setRowCount(0); calcularTotal();
+       JOptionPane.showMessageDialog(vista, "✅ Enviado a Caja");
    }
 
+   /**
+    * Toma pedidos de la cola (hilo kiosco-carrito) y los suma a la tabla desde el EDT
+    * La entrega se confirma recién cuando quedaron en el carrito
+    */
    private void revisarBuzonCompartido() {
-       if(vista.txtPagaCon.hasFocus()) return;
-       try(Connection c = ConexionDB.conectar(); Statement s = c.createStatement()) {
-           ResultSet rs = s.executeQuery("SELECT * FROM carrito_compartido");
-           boolean hay = false;
-           while(rs.next()) {
-               vista.modeloCarrito.addRow(new Object[]{1, "📨 " + rs.getString("nombre_producto"), rs.getDouble("precio"), "➖"});
-               hay = true;
+       final int maximo = 20;
+       PedidoDAO.PedidosTomados tomados = pedidoDao.tomarPedidos(maximo);
+       if (tomados == null) return;
+       
+       List<Object[]> recibidos = new ArrayList<>();
+       for (PedidoDAO.Pedido pedido : tomados.pedidos) {
+           for (PedidoDAO.ItemPedido item : pedido.items) {
+               recibidos.add(new Object[]{item.cantidad, "📨 " + item.nombreProducto, item.precio * item.cantidad, "➖"});
            }
-           if(hay) { s.executeUpdate("DELETE FROM carrito_compartido"); calcularTotal(); Toolkit.getDefaultToolkit().beep(); }
-       } catch(Exception e) {}
+       }
+       SwingUtilities.invokeLater(() -> {
+           for (Object[] fila : recibidos) vista.modeloCarrito.addRow(fila);
+           calcularTotal();
+           Toolkit.getDefaultToolkit().beep();
+           if (!lectorCarrito.isShutdown()) lectorCarrito.execute(() -> pedidoDao.confirmarEntrega(tomados)); // Si no, vuelven a la cola al vencer
+           if (tomados.pedidos.size() == maximo) pedirLecturaCarrito(); // Quedan más en la cola
+       });
    }
 
    
@@ -1071,14 +1351,7 @@ public class ControladorVentas {
                     
                     // 2. ¡IMPORTANTE! GUARDAR EN BASE DE DATOS PARA QUE NO SE BORRE
                     if (usarCarritoCompartido) {
-                        try (Connection c = ConexionDB.conectar(); 
-                             PreparedStatement ps = c.prepareStatement("INSERT INTO carrito_compartido(nombre_producto, precio) VALUES(?,?)")) {
-                            ps.setString(1, nombre);
-                            ps.setDouble(2, precio);
-                            ps.executeUpdate();
-                        } catch (Exception e) {
-                            System.out.println("Error al subir manual a la nube: " + e.getMessage());
-                        }
+                        agregarACarritoCompartido(nombre, precio, "Puesto");
                     }
                 }
             } catch (Exception ex) { 
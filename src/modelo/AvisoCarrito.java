@@ -0,0 +1,208 @@
+package modelo;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aviso de cambios del carrito compartido entre terminales (UDP en la red local)
+ * La terminal que modifica carrito_compartido difunde un datagrama con la versión
+ * del carrito (carrito_version); las demás solo consultan los cambios cuando les llega
+ * una versión nueva
+ * Un datagrama se puede perder: el controlador mantiene un sondeo lento como respaldo
+ * Claves de configuración: aviso_carrito_puerto (47123) y aviso_carrito_destinos
+ * (por defecto 255.255.255.255; IPs separadas por coma si la red bloquea el broadcast)
+ */
+public class AvisoCarrito {
+
+    public static final int PUERTO_POR_DEFECTO = 47123;
+
+    private static final String PREFIJO = "KIOSCO-CARRITO";
+    private static final int LARGO_MAXIMO = 128;
+
+    private static final AvisoCarrito instance = new AvisoCarrito();
+
+    // Identifica a esta terminal: sus propios avisos se ignoran
+    private final String origen = Long.toHexString(new SecureRandom().nextLong());
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Long> ultimaPorOrigen = new HashMap<>(); // Solo lo usa el hilo receptor
+    private volatile Runnable alCambiar = () -> {};
+    private List<InetSocketAddress> destinos;
+    private DatagramSocket socket;
+    private Thread receptor;
+
+    private AvisoCarrito() {}
+
+    public static AvisoCarrito getInstance() {
+        return instance;
+    }
+
+    /**
+     * Empieza a escuchar los avisos de las otras terminales
+     * @param alCambiar Se invoca desde el hilo receptor con cada versión nueva
+     * @return false si no se pudo abrir el puerto (queda solo el sondeo)
+     */
+    public synchronized boolean iniciar(Runnable alCambiar) {
+        this.alCambiar = alCambiar != null ? alCambiar : () -> {};
+        if (receptor != null) return true;
+
+        int puerto = obtenerPuerto();
+        try {
+            DatagramSocket nuevo = new DatagramSocket(null);
+            nuevo.setReuseAddress(true); // Varias instancias en el mismo equipo
+            nuevo.setBroadcast(true);
+            nuevo.bind(new InetSocketAddress(puerto));
+            cerrarSocket();
+            socket = nuevo;
+        } catch (SocketException e) {
+            Logger.warn("No se pudo abrir el puerto " + puerto + " para avisos del carrito, se usa solo el sondeo: " + e.getMessage());
+            return false;
+        }
+
+        receptor = new Thread(this::escuchar, "kiosco-aviso-carrito");
+        receptor.setDaemon(true);
+        receptor.start();
+        Logger.info("Avisos del carrito compartido en el puerto UDP " + puerto);
+        return true;
+    }
+
+    /**
+     * Avisa a las otras terminales que el carrito cambió (sin versión de la base)
+     */
+    public void avisar() {
+        avisar(0);
+    }
+
+    /**
+     * Avisa a las otras terminales que el carrito pasó a la versión dada
+     * No bloquea ni falla: si el aviso no sale, lo cubre el sondeo
+     */
+    public void avisar(long versionCarrito) {
+        // Los receptores descartan lo que no crece por origen: se envía la versión o la siguiente propia
+        long v = version.updateAndGet(actual -> Math.max(actual + 1, versionCarrito));
+        byte[] datos = (PREFIJO + " " + origen + " " + v).getBytes(StandardCharsets.US_ASCII);
+        DatagramSocket s;
+        List<InetSocketAddress> a;
+        synchronized (this) {
+            try {
+                s = socketEnvio();
+            } catch (SocketException e) {
+                Logger.warn("No se pudo enviar el aviso del carrito: " + e.getMessage());
+                return;
+            }
+            a = destinos;
+        }
+        for (InetSocketAddress destino : a) {
+            try {
+                s.send(new DatagramPacket(datos, datos.length, destino));
+            } catch (IOException e) {
+                Logger.debug("Aviso del carrito no enviado a " + destino + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public synchronized void detener() {
+        Thread r = receptor;
+        receptor = null;
+        cerrarSocket(); // Destraba el receive()
+        if (r != null) r.interrupt();
+    }
+
+    // ===== Internos =====
+
+    private void escuchar() {
+        DatagramSocket s;
+        synchronized (this) {
+            s = socket;
+        }
+        byte[] buffer = new byte[LARGO_MAXIMO];
+        DatagramPacket paquete = new DatagramPacket(buffer, buffer.length);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                paquete.setLength(buffer.length);
+                s.receive(paquete);
+            } catch (IOException e) {
+                if (s.isClosed()) return; // detener()
+                Logger.debug("Error recibiendo aviso del carrito: " + e.getMessage());
+                continue;
+            }
+            if (esVersionNueva(new String(buffer, 0, paquete.getLength(), StandardCharsets.US_ASCII))) {
+                try {
+                    alCambiar.run();
+                } catch (Exception e) {
+                    Logger.error("Error atendiendo aviso del carrito", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Formato: "KIOSCO-CARRITO <origen> <versión>"
+     * Descarta los avisos propios, los ajenos al kiosco y los repetidos (misma versión por varios destinos)
+     */
+    private boolean esVersionNueva(String mensaje) {
+        String[] partes = mensaje.trim().split(" ");
+        if (partes.length != 3 || !partes[0].equals(PREFIJO) || partes[1].equals(origen)) return false;
+        long v;
+        try {
+            v = Long.parseLong(partes[2]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        Long anterior = ultimaPorOrigen.get(partes[1]);
+        if (anterior != null && v <= anterior) return false;
+        ultimaPorOrigen.put(partes[1], v);
+        return true;
+    }
+
+    /**
+     * Un emisor que nunca escucha (modo EMISOR) envía desde un puerto cualquiera
+     */
+    private DatagramSocket socketEnvio() throws SocketException {
+        if (destinos == null) destinos = obtenerDestinos();
+        if (socket == null || socket.isClosed()) {
+            socket = new DatagramSocket();
+            socket.setBroadcast(true);
+        }
+        return socket;
+    }
+
+    private void cerrarSocket() {
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+    }
+
+    private static int obtenerPuerto() {
+        return ServicioConfiguracion.obtener().getEntero("aviso_carrito_puerto", PUERTO_POR_DEFECTO);
+    }
+
+    private static List<InetSocketAddress> obtenerDestinos() {
+        int puerto = obtenerPuerto();
+        List<InetSocketAddress> lista = new ArrayList<>();
+        for (String host : ServicioConfiguracion.obtener().getTexto("aviso_carrito_destinos", "255.255.255.255").split(",")) {
+            if (host.trim().isEmpty()) continue;
+            try {
+                lista.add(new InetSocketAddress(InetAddress.getByName(host.trim()), puerto));
+            } catch (IOException e) {
+                Logger.warn("Destino de avisos del carrito inválido: " + host.trim());
+            }
+        }
+        return lista;
+    }
+}
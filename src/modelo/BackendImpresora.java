@@ -0,0 +1,103 @@
+package modelo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Destino físico (o simulado) de los tickets que despacha ColaImpresion
+ * Se elige con la clave "impresoras" de la configuración, una o varias separadas por coma:
+ *   sistema                 impresora predeterminada del sistema (javax.print)
+ *   sistema:Nombre          impresora del sistema por nombre
+ *   red:host[:puerto]       térmica de red, TCP crudo (puerto 9100 por defecto)
+ *   archivo:ruta[:ms]       agrega los bytes a un archivo, con demora simulada opcional
+ *   memoria[:ms]            cuenta y guarda los tickets en memoria (pruebas de carga)
+ * Con varias, cada una tiene su hilo y se reparten los tickets de la cola
+ */
+public interface BackendImpresora {
+
+    /**
+     * Nombre para logs y métricas
+     */
+    String getNombre();
+
+    /**
+     * Envía un ticket completo; bloquea hasta que la impresora lo aceptó
+     */
+    void imprimir(byte[] ticket) throws IOException;
+
+    /**
+     * Tras una falla: soltar lo que esté cacheado (servicio, conexión) para volver a buscarlo
+     */
+    default void reiniciar() {}
+
+    default void cerrar() {}
+
+    /**
+     * Arma los backends de la lista de la configuración; lo que no se entiende se ignora con aviso
+     * @return Nunca vacía: sin entradas válidas queda la impresora predeterminada
+     */
+    static List<BackendImpresora> desdeConfiguracion(String lista) {
+        List<BackendImpresora> backends = new ArrayList<>();
+        if (lista != null) {
+            for (String spec : lista.split(",")) {
+                if (spec.isBlank()) continue;
+                try {
+                    backends.add(crear(spec.trim()));
+                } catch (IllegalArgumentException e) {
+                    Logger.warn("Impresora ignorada (" + spec.trim() + "): " + e.getMessage());
+                }
+            }
+        }
+        if (backends.isEmpty()) backends.add(new ImpresoraSistema(null));
+        return backends;
+    }
+
+    static BackendImpresora crear(String spec) {
+        // Solo el primer ':' separa el tipo; el resto puede traer más (C:\tickets\out.bin)
+        int separador = spec.indexOf(':');
+        String tipo = (separador < 0 ? spec : spec.substring(0, separador)).toLowerCase();
+        String resto = separador < 0 ? "" : spec.substring(separador + 1);
+        switch (tipo) {
+            case "sistema":
+                return new ImpresoraSistema(separador < 0 ? null : resto);
+            case "red": {
+                int puerto = resto.lastIndexOf(':');
+                String host = puerto < 0 ? resto : resto.substring(0, puerto);
+                if (host.isBlank()) throw new IllegalArgumentException("falta el host");
+                return new ImpresoraRed(host, puerto < 0 ? ImpresoraRed.PUERTO_POR_DEFECTO : entero(resto.substring(puerto + 1)));
+            }
+            case "archivo": {
+                int demora = sufijoNumerico(resto);
+                String ruta = demora < 0 ? resto : resto.substring(0, demora);
+                if (ruta.isBlank()) throw new IllegalArgumentException("falta la ruta");
+                return new ImpresoraSimulada(ruta, demora < 0 ? 0 : entero(resto.substring(demora + 1)));
+            }
+            case "memoria":
+                return new ImpresoraSimulada(null, separador < 0 ? 0 : entero(resto));
+            default:
+                throw new IllegalArgumentException("tipo desconocido");
+        }
+    }
+
+    /**
+     * Posición del ':' que separa una demora final (":50"), o -1 si no la hay
+     * Un ':' seguido de otra cosa es parte de la ruta (letra de unidad en Windows)
+     */
+    private static int sufijoNumerico(String texto) {
+        int pos = texto.lastIndexOf(':');
+        if (pos < 0 || pos == texto.length() - 1) return -1;
+        for (int i = pos + 1; i < texto.length(); i++) {
+            if (!Character.isDigit(texto.charAt(i))) return -1;
+        }
+        return pos;
+    }
+
+    private static int entero(String texto) {
+        try {
+            return Integer.parseInt(texto.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("número inválido: " + texto);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package modelo;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU de PreparedStatement por conexión física
+ * Los DAO preparan siempre el mismo puñado de SQL: en lugar de que el driver los
+ * vuelva a parsear en cada llamada, close() devuelve la sentencia a esta caché
+ * y el próximo prepareStatement con el mismo SQL y flags la reutiliza
+ */
+public class CacheSentencias {
+
+    public static final int CAPACIDAD_POR_DEFECTO = 64;
+
+    // Contadores globales (todas las conexiones)
+    private static final AtomicLong aciertosTotales = new AtomicLong();
+    private static final AtomicLong fallosTotales = new AtomicLong();
+
+    private final Connection conexion;
+    private final Map<String, PreparedStatement> libres;
+    private long aciertos = 0;
+    private long fallos = 0;
+    private boolean cerrada = false;
+
+    public CacheSentencias(Connection conexion, int capacidad) {
+        this.conexion = conexion;
+        // accessOrder=true: el orden de iteración es de menos a más usado
+        this.libres = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacidad) {
+                    cerrarFisica(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtiene una sentencia preparada de la caché o la prepara en la conexión física
+     * @param conexionLogica Conexión que verá el código llamador en getConnection()
+     * @param clavesGeneradas Statement.RETURN_GENERATED_KEYS / NO_GENERATED_KEYS, o -1 si no se indicó
+     */
+    public PreparedStatement preparar(Connection conexionLogica, String sql, int tipo, int concurrencia,
+                                      int holdability, int clavesGeneradas) throws SQLException {
+        String clave = tipo + ":" + concurrencia + ":" + holdability + ":" + clavesGeneradas + ":" + sql;
+
+        PreparedStatement real;
+        synchronized (this) {
+            real = libres.remove(clave); // Se retira mientras está en uso
+        }
+
+        if (real != null && !real.isClosed()) {
+            aciertosTotales.incrementAndGet();
+            synchronized (this) { aciertos++; }
+        } else {
+            fallosTotales.incrementAndGet();
+            synchronized (this) { fallos++; }
+            real = prepararFisica(sql, tipo, concurrencia, holdability, clavesGeneradas);
+        }
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new SentenciaCacheada(this, clave, real, conexionLogica));
+    }
+
+    private PreparedStatement prepararFisica(String sql, int tipo, int concurrencia, int holdability, int clavesGeneradas) throws SQLException {
+        if (clavesGeneradas >= 0) {
+            return conexion.prepareStatement(sql, clavesGeneradas);
+        }
+        if (holdability >= 0) {
+            return conexion.prepareStatement(sql, tipo, concurrencia, holdability);
+        }
+        if (tipo != ResultSet.TYPE_FORWARD_ONLY || concurrencia != ResultSet.CONCUR_READ_ONLY) {
+            return conexion.prepareStatement(sql, tipo, concurrencia);
+        }
+        return conexion.prepareStatement(sql);
+    }
+
+    /**
+     * Vuelve a dejar la sentencia disponible (llamado desde el close() lógico)
+     */
+    private void devolver(String clave, PreparedStatement real) {
+        try {
+            real.clearParameters();
+            real.clearBatch();
+            real.clearWarnings();
+        } catch (SQLException e) {
+            cerrarFisica(real);
+            return;
+        }
+
+        PreparedStatement desplazada;
+        synchronized (this) {
+            if (cerrada) {
+                desplazada = real;
+            } else {
+                // Si ya hay otra instancia libre con el mismo SQL, se conserva esa
+                desplazada = libres.putIfAbsent(clave, real) == null ? null : real;
+            }
+        }
+        if (desplazada != null) cerrarFisica(desplazada);
+    }
+
+    /**
+     * Cierra todas las sentencias libres (al cerrar la conexión física)
+     */
+    public void cerrar() {
+        List<PreparedStatement> aCerrar;
+        synchronized (this) {
+            cerrada = true;
+            aCerrar = new ArrayList<>(libres.values());
+            libres.clear();
+        }
+        for (PreparedStatement ps : aCerrar) cerrarFisica(ps);
+    }
+
+    public synchronized long getAciertos() { return aciertos; }
+    public synchronized long getFallos() { return fallos; }
+    public synchronized int getTamanio() { return libres.size(); }
+
+    public static long getAciertosTotales() { return aciertosTotales.get(); }
+    public static long getFallosTotales() { return fallosTotales.get(); }
+
+    private static void cerrarFisica(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            // Ignorar: la sentencia se descarta de todas formas
+        }
+    }
+
+    /**
+     * Envoltorio de la sentencia real entregado al DAO
+     * Intercepta close() para devolverla a la caché y cierra los ResultSet abiertos
+     * (una sentencia física cerrada los cerraba implícitamente)
+     */
+    private static class SentenciaCacheada implements InvocationHandler {
+
+        private final CacheSentencias cache;
+        private final String clave;
+        private final PreparedStatement real;
+        private final Connection conexionLogica;
+        private final List<ResultSet> resultados = new ArrayList<>(2);
+        private boolean cerrada = false;
+
+        SentenciaCacheada(CacheSentencias cache, String clave, PreparedStatement real, Connection conexionLogica) {
+            this.cache = cache;
+            this.clave = clave;
+            this.real = real;
+            this.conexionLogica = conexionLogica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        cerrarResultados();
+                        cache.devolver(clave, real);
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || real.isClosed();
+                case "getConnection":
+                    return conexionLogica;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CacheSentencias[" + real + "]";
+                default:
+                    break;
+            }
+
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada");
+            }
+
+            Object resultado;
+            try {
+                resultado = method.invoke(real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultado instanceof ResultSet) {
+                resultados.add((ResultSet) resultado);
+            }
+            return resultado;
+        }
+
+        private void cerrarResultados() {
+            for (ResultSet rs : resultados) {
+                try {
+                    rs.close();
+                } catch (SQLException e) {
+                    // Ignorar
+                }
+            }
+            resultados.clear();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package modelo;
+
+import java.time.LocalDate;
+
+/**
+ * Última foto del tablero de estadísticas, compartida entre el panel y los DAO
+ * El panel la muestra al instante y pide una nueva en segundo plano cuando venció
+ * el TTL (estadisticas_ttl_segundos, 30 por defecto), cambió el día o alguien
+ * la invalidó (una venta confirmada, un ítem o una caja borrados en esta terminal)
+ */
+public class CacheTablero {
+
+    private static final CacheTablero instance = new CacheTablero();
+
+    private EstadisticasDAO.Tablero ultimo;
+    private long cargadoEn; // System.nanoTime() de la carga
+    private long generacion = 0; // Sube con cada invalidación
+    private long generacionUltimo = -1;
+
+    private CacheTablero() {}
+
+    public static CacheTablero getInstance() {
+        return instance;
+    }
+
+    /**
+     * Foto más reciente, vigente o no (null si todavía no se cargó ninguna)
+     */
+    public synchronized EstadisticasDAO.Tablero getUltimo() {
+        return ultimo;
+    }
+
+    public synchronized boolean estaVigente() {
+        if (ultimo == null || generacionUltimo != generacion) return false;
+        if (!ultimo.getFecha().equals(LocalDate.now())) return false;
+        long ttlMs = ServicioConfiguracion.obtener().getEntero("estadisticas_ttl_segundos", 30) * 1000L;
+        return (System.nanoTime() - cargadoEn) / 1_000_000 < ttlMs;
+    }
+
+    /**
+     * Generación vigente; tomarla antes de consultar y pasarla a guardar()
+     */
+    public synchronized long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Guarda una foto recién cargada; si hubo una invalidación mientras se consultaba
+     * se conserva pero queda vencida
+     */
+    public synchronized void guardar(EstadisticasDAO.Tablero tablero, long generacionAlConsultar) {
+        ultimo = tablero;
+        cargadoEn = System.nanoTime();
+        generacionUltimo = generacionAlConsultar;
+    }
+
+    /**
+     * Marca la foto como vencida (llamar después del commit que cambió las ventas)
+     */
+    public synchronized void invalidar() {
+        generacion++;
+    }
+}
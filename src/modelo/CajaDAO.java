@@ -1,13 +1,13 @@
 package modelo;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Properties;
 
 public class CajaDAO {
 
@@ -23,11 +23,13 @@ public class CajaDAO {
     }
 
     private int abrirNuevaCaja() {
-        String sql = "INSERT INTO cajas(fecha_apertura, estado, total_cierre, total_cigarrillos_efectivo, total_cigarrillos_transferencia) VALUES(?, 'ABIERTA', 0, 0, 0)";
+        String sql = "INSERT INTO cajas(fecha_apertura, estado, total_cierre, total_cigarrillos_efectivo, total_cigarrillos_transferencia, ts) VALUES(?, 'ABIERTA', 0, 0, 0, ?)";
         try (Connection conn = ConexionDB.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             
-            pstmt.setString(1, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+            LocalDateTime ahora = LocalDateTime.now();
+            pstmt.setString(1, ahora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+            pstmt.setLong(2, MarcaTiempo.de(ahora));
             pstmt.executeUpdate();
             
             ResultSet rs = pstmt.getGeneratedKeys();
@@ -37,58 +39,24 @@ public class CajaDAO {
     }
 
     // 2. CÁLCULO DESGLOSADO INTELIGENTE (CON OPCIÓN DE CIGARRILLOS)
+    //    Lee los totales acumulados de caja_totales: una fila, sin recorrer las ventas
     public double[] calcularDesgloseCaja(int idCaja) {
-        double brutoEfectivo = 0, brutoDigital = 0;
-        double cigaEfectivo = 0, cigaDigital = 0;
-
-        Connection conn = null;
-        try {
-            conn = ConexionDB.conectar();
-            
-            // A. Totales Brutos
-            String sqlBruto = "SELECT medio_pago, SUM(total) FROM ventas WHERE id_caja = ? GROUP BY medio_pago";
-            PreparedStatement pstBruto = conn.prepareStatement(sqlBruto);
-            pstBruto.setInt(1, idCaja);
-            ResultSet rsBruto = pstBruto.executeQuery();
-            while(rsBruto.next()) {
-                String medio = rsBruto.getString(1);
-                double monto = rsBruto.getDouble(2);
-                if ("Efectivo".equalsIgnoreCase(medio)) brutoEfectivo += monto;
-                else brutoDigital += monto;
-            }
-
-            // B. Solo Cigarrillos
-            String sqlCiga = """
-                SELECT v.medio_pago, SUM(d.subtotal) 
-                FROM detalle_ventas d 
-                JOIN ventas v ON d.id_venta = v.id 
-                JOIN productos p ON d.nombre_producto = p.nombre 
-                WHERE v.id_caja = ? AND p.es_cigarrillo = 1 
-                GROUP BY v.medio_pago
-                """;
-            PreparedStatement pstCiga = conn.prepareStatement(sqlCiga);
-            pstCiga.setInt(1, idCaja);
-            ResultSet rsCiga = pstCiga.executeQuery();
-            while(rsCiga.next()) {
-                String medio = rsCiga.getString(1);
-                double monto = rsCiga.getDouble(2);
-                if ("Efectivo".equalsIgnoreCase(medio)) cigaEfectivo += monto;
-                else cigaDigital += monto;
-            }
-
+        double[] totales = new double[6];
+        try (Connection conn = ConexionDB.conectar()) {
+            totales = TotalesCaja.leer(conn, idCaja);
         } catch (Exception e) { Logger.error("Error calculando desglose de caja: " + idCaja, e); }
-        finally { try { if(conn!=null) conn.close(); } catch(Exception e){} }
+        return desglosar(totales);
+    }
+
+    /**
+     * Arma el desglose a partir de los totales acumulados (ver TotalesCaja)
+     */
+    private double[] desglosar(double[] t) {
+        double brutoEfectivo = t[TotalesCaja.BRUTO_EFECTIVO], brutoDigital = t[TotalesCaja.BRUTO_DIGITAL];
+        double cigaEfectivo = t[TotalesCaja.CIGA_EFECTIVO], cigaDigital = t[TotalesCaja.CIGA_DIGITAL];
 
         // C. Leer Preferencia del Usuario
-        boolean separarCigarros = true; 
-        try {
-            File f = new File("db_config.properties");
-            if (f.exists()) {
-                Properties prop = new Properties();
-                prop.load(new FileInputStream(f));
-                separarCigarros = prop.getProperty("separar_cigarros", "true").equals("true");
-            }
-        } catch (Exception e) {}
+        boolean separarCigarros = ServicioConfiguracion.obtener().isSepararCigarros();
 
         double netoEfectivo, netoDigital;
 
@@ -115,25 +83,25 @@ public class CajaDAO {
         try (Connection conn = ConexionDB.conectar()) {
             String sql = "UPDATE cajas SET estado='CERRADA', fecha_cierre=?, total_cierre=?, total_efectivo=?, total_transferencia=?, total_cigarrillos_efectivo=?, total_cigarrillos_transferencia=?, usuario_cierre=? WHERE id=?";
             
-            PreparedStatement pst = conn.prepareStatement(sql);
+            try (PreparedStatement pst = conn.prepareStatement(sql)) {
+                pst.setString(1, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+                pst.setDouble(2, totales[0]);
+                pst.setDouble(3, totales[1]);
+                pst.setDouble(4, totales[2]);
+                pst.setDouble(5, totales[3]); 
+                pst.setDouble(6, totales[4]); 
             
-            pst.setString(1, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
-            pst.setDouble(2, totales[0]);
-            pst.setDouble(3, totales[1]);
-            pst.setDouble(4, totales[2]);
-            pst.setDouble(5, totales[3]); 
-            pst.setDouble(6, totales[4]); 
+                // Usuario que cierra
+                String quienCierra = modelo.Sesion.getUsuario();
+                if (quienCierra == null || quienCierra.equals("Desconocido")) {
+                    quienCierra = "Sistema";
+                }
+                pst.setString(7, quienCierra); 
             
-            // Usuario que cierra
-            String quienCierra = modelo.Sesion.getUsuario();
-            if (quienCierra == null || quienCierra.equals("Desconocido")) {
-                quienCierra = "Sistema";
-            }
-            pst.setString(7, quienCierra); 
-            
-            pst.setInt(8, idCaja);
+                pst.setInt(8, idCaja);
             
-            return pst.executeUpdate() > 0;
+                return pst.executeUpdate() > 0;
+            }
             
         } catch (Exception e) { 
             Logger.error("Error cerrando caja: " + idCaja, e);
@@ -144,7 +112,9 @@ public class CajaDAO {
     // 4. LISTAR CAJAS (PARA EL PANEL DE HISTORIAL)
     public List<Object[]> listarCajasCerradas() {
         List<Object[]> lista = new ArrayList<>();
-        String sql = "SELECT id, fecha_apertura, fecha_cierre, estado, usuario_cierre FROM cajas ORDER BY id DESC";
+        String sql = "SELECT c.id, c.fecha_apertura, c.fecha_cierre, c.estado, c.usuario_cierre, " +
+                     "t.bruto_efectivo, t.bruto_digital, t.ciga_efectivo, t.ciga_digital, t.cantidad_items, t.gastos " +
+                     "FROM cajas c LEFT JOIN caja_totales t ON t.id_caja = c.id ORDER BY c.id DESC";
         
         try (Connection conn = ConexionDB.conectar();
              Statement st = conn.createStatement();
@@ -152,7 +122,9 @@ public class CajaDAO {
             
             while(rs.next()) {
                 int id = rs.getInt("id");
-                double[] desglose = calcularDesgloseCaja(id);
+                rs.getDouble("bruto_efectivo");
+                double[] totales = rs.wasNull() ? TotalesCaja.reconstruir(conn, id) : TotalesCaja.desdeFila(rs, 6);
+                double[] desglose = desglosar(totales);
                 double totalCigarros = desglose[3] + desglose[4];
                 
                 String usuario = rs.getString("usuario_cierre");
@@ -238,39 +210,85 @@ public class CajaDAO {
             conn.setAutoCommit(false); // Transacción segura
 
             // A. Recuperar datos para devolver stock
-            String sqlGet = "SELECT nombre_producto, cantidad, id_venta, subtotal FROM detalle_ventas WHERE id = ?";
-            PreparedStatement psGet = conn.prepareStatement(sqlGet);
-            psGet.setInt(1, idDetalle);
-            ResultSet rs = psGet.executeQuery();
+            String sqlGet = "SELECT d.nombre_producto, d.codigo_producto, d.es_cigarrillo, d.cantidad, d.id_venta, d.subtotal, " +
+                            "v.id_caja, v.medio_pago, v.ts, v.fecha, v.hora FROM detalle_ventas d JOIN ventas v ON d.id_venta = v.id WHERE d.id = ?";
             
-            if (rs.next()) {
-                String prod = rs.getString("nombre_producto");
-                int cant = rs.getInt("cantidad");
-                int idVenta = rs.getInt("id_venta");
-                double subtotal = rs.getDouble("subtotal");
+            long codigo = 0;
+            int cant = 0;
+            String prod = null;
+            long tsVenta = 0;
+            boolean porNombre = false;
+            try (PreparedStatement psGet = conn.prepareStatement(sqlGet)) {
+                psGet.setInt(1, idDetalle);
+                try (ResultSet rs = psGet.executeQuery()) {
+                    if (rs.next()) {
+                        prod = rs.getString("nombre_producto");
+                        codigo = rs.getLong("codigo_producto");
+                        boolean sinRellenar = rs.wasNull();
+                        porNombre = sinRellenar;
+                        cant = rs.getInt("cantidad");
+                        int idVenta = rs.getInt("id_venta");
+                        double subtotal = rs.getDouble("subtotal");
+                        boolean esCigarrillo = rs.getInt("es_cigarrillo") == 1;
+                        if (sinRellenar) esCigarrillo = esCigarrilloPorNombre(conn, prod);
+                        int idCaja = rs.getInt("id_caja");
+                        String medioPago = rs.getString("medio_pago");
+                        tsVenta = rs.getLong("ts");
+                        if (tsVenta <= 0) { // Venta que RellenoMarcasTiempo todavía no alcanzó
+                            Long ts = MarcaTiempo.deVenta(rs.getString("fecha"), rs.getString("hora"));
+                            tsVenta = ts == null ? 0 : ts;
+                        }
 
-                // B. Devolver Stock
-                String sqlStock = "UPDATE productos SET stock = stock + ? WHERE nombre = ?";
-                PreparedStatement psStock = conn.prepareStatement(sqlStock);
-                psStock.setInt(1, cant);
-                psStock.setString(2, prod);
-                psStock.executeUpdate();
+                        // B. Devolver Stock por código (0 = ítem manual, sin stock)
+                        //    Un detalle viejo que el relleno todavía no alcanzó se busca por nombre
+                        if (codigo > 0 || sinRellenar) {
+                            String sqlStock = sinRellenar
+                                    ? "UPDATE productos SET stock = stock + ? WHERE nombre = ?"
+                                    : "UPDATE productos SET stock = stock + ? WHERE codigo = ?";
+                            try (PreparedStatement psStock = conn.prepareStatement(sqlStock)) {
+                                psStock.setInt(1, cant);
+                                if (sinRellenar) psStock.setString(2, prod);
+                                else psStock.setLong(2, codigo);
+                                psStock.executeUpdate();
+                            }
+                        }
 
-                // C. Borrar el detalle
-                String sqlDel = "DELETE FROM detalle_ventas WHERE id = ?";
-                PreparedStatement psDel = conn.prepareStatement(sqlDel);
-                psDel.setInt(1, idDetalle);
-                psDel.executeUpdate();
+                        // C. Borrar el detalle
+                        String sqlDel = "DELETE FROM detalle_ventas WHERE id = ?";
+                        try (PreparedStatement psDel = conn.prepareStatement(sqlDel)) {
+                            psDel.setInt(1, idDetalle);
+                            psDel.executeUpdate();
+                        }
 
-                // D. Restar plata a la venta original
-                String sqlUpdVenta = "UPDATE ventas SET total = total - ? WHERE id = ?";
-                PreparedStatement psUpd = conn.prepareStatement(sqlUpdVenta);
-                psUpd.setDouble(1, subtotal);
-                psUpd.setInt(2, idVenta);
-                psUpd.executeUpdate();
+                        // D. Restar plata a la venta original
+                        String sqlUpdVenta = "UPDATE ventas SET total = total - ? WHERE id = ?";
+                        try (PreparedStatement psUpd = conn.prepareStatement(sqlUpdVenta)) {
+                            psUpd.setDouble(1, subtotal);
+                            psUpd.setInt(2, idVenta);
+                            psUpd.executeUpdate();
+                        }
+
+                        // E. Descontar de los totales acumulados de la caja
+                        TotalesCaja.sumarMovimiento(conn, idCaja, medioPago, -subtotal, esCigarrillo ? -subtotal : 0, -cant);
+                        ResumenVentas.restarItem(conn, tsVenta, prod, cant, subtotal);
+                    }
+                }
             }
             
             conn.commit();
+            // El stock ya volvió en la BD: el catálogo en memoria se ajusta igual (el escaneo lee de ahí)
+            CatalogoProductos catalogo = CatalogoProductos.getInstance();
+            if (codigo > 0) {
+                catalogo.ajustarStock(codigo, cant);
+            } else if (porNombre) {
+                Producto p = catalogo.buscarPorNombre(prod); // Detalle sin relleno: se devolvió por nombre
+                if (p != null) catalogo.ajustarStock(p.getCodigo(), cant);
+            }
+            if (tsVenta > 0) {
+                LocalDate diaVenta = Instant.ofEpochMilli(tsVenta).atZone(ZoneId.systemDefault()).toLocalDate();
+                TopProductos.getInstance().descontar(diaVenta, prod, cant);
+            }
+            CacheTablero.getInstance().invalidar();
             return true;
 
         } catch (Exception e) {
@@ -281,6 +299,16 @@ public class CajaDAO {
         }
     }
 
+    // Misma clasificación que TotalesCaja para detalles todavía sin código
+    private boolean esCigarrilloPorNombre(Connection conn, String nombre) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM productos WHERE nombre = ? AND es_cigarrillo = 1")) {
+            ps.setString(1, nombre);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
     // 8. ELIMINAR CAJA COMPLETA (ADMIN)
     public boolean eliminarCaja(int idCaja) {
         Connection conn = null;
@@ -288,25 +316,34 @@ public class CajaDAO {
             conn = ConexionDB.conectar();
             conn.setAutoCommit(false);
 
+            // Sacar sus ventas de los resúmenes de estadísticas
+            ResumenVentas.restarCaja(conn, idCaja);
+
             // Borrar detalles de ventas de esa caja
             String sql1 = "DELETE FROM detalle_ventas WHERE id_venta IN (SELECT id FROM ventas WHERE id_caja = ?)";
-            PreparedStatement ps1 = conn.prepareStatement(sql1);
-            ps1.setInt(1, idCaja);
-            ps1.executeUpdate();
+            try (PreparedStatement ps1 = conn.prepareStatement(sql1)) {
+                ps1.setInt(1, idCaja);
+                ps1.executeUpdate();
+            }
 
             // Borrar ventas de esa caja
             String sql2 = "DELETE FROM ventas WHERE id_caja = ?";
-            PreparedStatement ps2 = conn.prepareStatement(sql2);
-            ps2.setInt(1, idCaja);
-            ps2.executeUpdate();
+            try (PreparedStatement ps2 = conn.prepareStatement(sql2)) {
+                ps2.setInt(1, idCaja);
+                ps2.executeUpdate();
+            }
 
             // Borrar la caja
             String sql3 = "DELETE FROM cajas WHERE id = ?";
-            PreparedStatement ps3 = conn.prepareStatement(sql3);
-            ps3.setInt(1, idCaja);
-            ps3.executeUpdate();
+            try (PreparedStatement ps3 = conn.prepareStatement(sql3)) {
+                ps3.setInt(1, idCaja);
+                ps3.executeUpdate();
+            }
+            TotalesCaja.borrar(conn, idCaja);
 
             conn.commit();
+            TopProductos.getInstance().resincronizar();
+            CacheTablero.getInstance().invalidar();
             return true;
         } catch (Exception e) {
             try { if(conn!=null) conn.rollback(); } catch(Exception ex){}
@@ -2,60 +2,106 @@ package modelo;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * DAO para manejo seguro del carrito compartido con control de concurrencia
+ * Cada cambio suma uno a la versión del carrito (tabla carrito_version, una fila)
+ * en la misma transacción: el ítem agregado queda marcado con esa versión y el
+ * removido deja una baja en carrito_bajas. Así una terminal que ya leyó la versión N
+ * pregunta solo por lo que cambió después (obtenerCambiosDesde) y, si nada cambió,
+ * la respuesta es una lectura por clave primaria
+ * Sacar lo cobrado registra la versión como vaciado: quien haya leído antes relee todo
  */
 public class CarritoCompartidoDAO {
     
+    private static final String SQL_VERSION = "SELECT version, vaciado FROM carrito_version WHERE id = 1";
+    
     public static class ItemCarrito {
+        public final long id;
         public final String nombreProducto;
         public final double precio;
         public final String origen;
         
-        public ItemCarrito(String nombreProducto, double precio, String origen) {
+        public ItemCarrito(long id, String nombreProducto, double precio, String origen) {
+            this.id = id;
             this.nombreProducto = nombreProducto;
             this.precio = precio;
             this.origen = origen;
         }
     }
     
+    /**
+     * Lo que cambió en el carrito desde una versión dada
+     */
+    public static class CambiosCarrito {
+        public final long version;
+        /** El carrito se vació (o es la primera lectura): descartar lo leído antes de aplicar las altas */
+        public final boolean reinicio;
+        public final List<ItemCarrito> altas;
+        public final List<Long> bajas; // ids de ítems removidos
+        
+        CambiosCarrito(long version, boolean reinicio, List<ItemCarrito> altas, List<Long> bajas) {
+            this.version = version;
+            this.reinicio = reinicio;
+            this.altas = altas;
+            this.bajas = bajas;
+        }
+    }
+    
     /**
      * Agrega un item al carrito compartido de forma thread-safe
+     * @return id del ítem agregado, o -1 si no se pudo agregar
      */
-    public boolean agregarItem(String nombreProducto, double precio, String origen) {
-        String sql = "INSERT INTO carrito_compartido(nombre_producto, precio, origen) VALUES(?,?,?)";
+    public long agregarItem(String nombreProducto, double precio, String origen) {
+        // Sin validar contra el patrón de nombres de producto: los ítems manuales llevan "(Manual)"
+        if (!Validador.esTextoValido(nombreProducto) || nombreProducto.length() > 255) {
+            Logger.warn("Intento de agregar producto con nombre inválido al carrito compartido: " + nombreProducto);
+            return -1;
+        }
         
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            if (!Validador.esNombreValido(nombreProducto)) {
-                Logger.warn("Intento de agregar producto con nombre inválido al carrito compartido: " + nombreProducto);
-                return false;
-            }
+        if (!Validador.esPrecioValido(precio)) {
+            Logger.warn("Intento de agregar producto con precio inválido al carrito compartido: " + precio);
+            return -1;
+        }
+        
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
             
-            if (!Validador.esPrecioValido(precio)) {
-                Logger.warn("Intento de agregar producto con precio inválido al carrito compartido: " + precio);
-                return false;
+            long version = incrementarVersion(conn, false);
+            long idItem = -1;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO carrito_compartido(nombre_producto, precio, origen, version) VALUES(?,?,?,?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, nombreProducto.trim());
+                ps.setDouble(2, precio);
+                ps.setString(3, origen != null ? origen.trim() : "Puesto");
+                ps.setLong(4, version);
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (rs.next()) idItem = rs.getLong(1);
+                }
             }
+            if (idItem < 0) throw new SQLException("El alta en carrito_compartido no devolvió su id");
             
-            ps.setString(1, Validador.sanitizarTexto(nombreProducto));
-            ps.setDouble(2, precio);
-            ps.setString(3, Validador.sanitizarTexto(origen));
-            
-            boolean exito = ps.executeUpdate() > 0;
-            if (exito) {
-                Logger.debug("Item agregado al carrito compartido: " + nombreProducto + " por " + origen);
-            }
-            return exito;
+            conn.commit();
+            AvisoCarrito.getInstance().avisar(version);
+            Logger.debug("Item agregado al carrito compartido: " + nombreProducto + " por " + origen);
+            return idItem;
             
         } catch (SQLException e) {
+            deshacer(conn);
             Logger.error("Error SQL al agregar item al carrito compartido", e);
-            return false;
+            return -1;
         } catch (Exception e) {
+            deshacer(conn);
             Logger.error("Error inesperado al agregar item al carrito compartido", e);
-            return false;
+            return -1;
+        } finally {
+            cerrar(conn);
         }
     }
     
@@ -64,18 +110,14 @@ public class CarritoCompartidoDAO {
      */
     public List<ItemCarrito> obtenerItems() {
         List<ItemCarrito> items = new ArrayList<>();
-        String sql = "SELECT nombre_producto, precio, origen FROM carrito_compartido ORDER BY id";
+        String sql = "SELECT id, nombre_producto, precio, origen FROM carrito_compartido ORDER BY id";
         
-        try (Connection conn = ConexionDB.conectar();
+        try (Connection conn = ConexionDB.conectarLectura();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
-                items.add(new ItemCarrito(
-                    rs.getString("nombre_producto"),
-                    rs.getDouble("precio"),
-                    rs.getString("origen")
-                ));
+                items.add(leerItem(rs));
             }
             
         } catch (SQLException e) {
@@ -88,139 +130,226 @@ public class CarritoCompartidoDAO {
     }
     
     /**
-     * Remueve un item específico del carrito compartido
+     * Remueve un ítem del carrito compartido
+     * Por id y no por nombre: así se saca el que ve esta terminal y no uno igual recién agregado en otra
+     * @return false si el ítem ya no estaba (otra terminal lo sacó o se cobró)
      */
-    public boolean removerItem(String nombreProducto) {
-        String sql = "DELETE FROM carrito_compartido WHERE nombre_producto = ? LIMIT 1";
-        
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setString(1, nombreProducto);
-            boolean exito = ps.executeUpdate() > 0;
+    public boolean removerItem(long idItem) {
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
             
-            if (exito) {
-                Logger.debug("Item removido del carrito compartido: " + nombreProducto);
+            // Primero la versión: en MySQL bloquea su fila y ordena a las terminales que remueven a la vez
+            long version = incrementarVersion(conn, false);
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM carrito_compartido WHERE id = ?")) {
+                ps.setLong(1, idItem);
+                if (ps.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO carrito_bajas(version, id_item) VALUES(?,?)")) {
+                ps.setLong(1, version);
+                ps.setLong(2, idItem);
+                ps.executeUpdate();
             }
-            return exito;
+            
+            conn.commit();
+            AvisoCarrito.getInstance().avisar(version);
+            Logger.debug("Item removido del carrito compartido: " + idItem);
+            return true;
             
         } catch (SQLException e) {
+            deshacer(conn);
             Logger.error("Error SQL al remover item del carrito compartido", e);
             return false;
         } catch (Exception e) {
+            deshacer(conn);
             Logger.error("Error inesperado al remover item del carrito compartido", e);
             return false;
+        } finally {
+            cerrar(conn);
         }
     }
     
     /**
-     * Limpia completamente el carrito compartido
+     * Saca del carrito compartido los ítems cobrados
+     * Solo esos ids: lo que otra terminal agregó después de la última lectura de esta
+     * sigue en el carrito para la próxima venta
+     * @param ids Los ítems que mostraba esta terminal al cobrar
      */
-    public boolean limpiarCarrito() {
-        String sql = "DELETE FROM carrito_compartido";
+    public boolean limpiarCarrito(Collection<Long> ids) {
+        if (ids.isEmpty()) return true;
         
-        try (Connection conn = ConexionDB.conectar();
-             Statement stmt = conn.createStatement()) {
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+            
+            // Se registra como vaciado: las demás terminales releen lo que quede
+            long version = incrementarVersion(conn, true);
+            StringBuilder sql = new StringBuilder("DELETE FROM carrito_compartido WHERE id IN (");
+            for (int i = 0; i < ids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+            sql.append(')');
+            int filasAfectadas;
+            try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                int i = 1;
+                for (Long id : ids) ps.setLong(i++, id);
+                filasAfectadas = ps.executeUpdate();
+            }
             
-            int filasAfectadas = stmt.executeUpdate(sql);
+            conn.commit();
+            AvisoCarrito.getInstance().avisar(version);
             Logger.info("Carrito compartido limpiado. Items removidos: " + filasAfectadas);
             return true;
             
         } catch (SQLException e) {
+            deshacer(conn);
             Logger.error("Error SQL al limpiar carrito compartido", e);
             return false;
         } catch (Exception e) {
+            deshacer(conn);
             Logger.error("Error inesperado al limpiar carrito compartido", e);
             return false;
+        } finally {
+            cerrar(conn);
         }
     }
     
     /**
-     * Obtiene el hash del contenido del carrito para detectar cambios
+     * Versión actual del carrito (una lectura por clave primaria)
+     * @return -1 si no se pudo leer
      */
-    public String obtenerHashCarrito() {
-        StringBuilder contenido = new StringBuilder();
-        List<ItemCarrito> items = obtenerItems();
-        
-        for (ItemCarrito item : items) {
-            contenido.append(item.nombreProducto)
-                    .append("|")
-                    .append(item.precio)
-                    .append("|");
+    public long obtenerVersion() {
+        try (Connection conn = ConexionDB.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SQL_VERSION)) {
+            return rs.next() ? rs.getLong("version") : -1;
+        } catch (SQLException e) {
+            Logger.error("Error SQL al leer la versión del carrito compartido", e);
+            return -1;
         }
-        
-        return String.valueOf(contenido.toString().hashCode());
     }
     
     /**
-     * Transfiere todos los items del carrito compartido a una venta
+     * Cambios del carrito posteriores a la versión dada
+     * Si la versión no cambió se resuelve con una sola lectura por clave primaria;
+     * si cambió, las altas y bajas salen de los índices por versión
+     * @param desde Última versión leída por quien pregunta (-1 la primera vez)
+     * @return null si no hubo cambios o no se pudo leer
      */
-    public boolean transferirAVenta(int idCaja, String medioPago) {
-        List<ItemCarrito> items = obtenerItems();
-        if (items.isEmpty()) {
-            return true; // No hay nada que transferir
-        }
-        
+    public CambiosCarrito obtenerCambiosDesde(long desde) {
         Connection conn = null;
         try {
-            conn = ConexionDB.conectar();
-            conn.setAutoCommit(false); // Iniciar transacción
-            
-            // Calcular total
-            double total = items.stream().mapToDouble(item -> item.precio).sum();
-            
-            // Crear venta
-            String sqlVenta = "INSERT INTO ventas(id_caja, fecha, hora, total, medio_pago) VALUES(?,?,?,?,?)";
-            PreparedStatement psVenta = conn.prepareStatement(sqlVenta, Statement.RETURN_GENERATED_KEYS);
-            psVenta.setInt(1, idCaja);
-            psVenta.setString(2, java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")));
-            psVenta.setString(3, java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss")));
-            psVenta.setDouble(4, total);
-            psVenta.setString(5, medioPago);
-            psVenta.executeUpdate();
-            
-            ResultSet rs = psVenta.getGeneratedKeys();
-            int idVenta = 0;
-            if (rs.next()) idVenta = rs.getInt(1);
-            
-            // Crear detalles
-            String sqlDetalle = "INSERT INTO detalle_ventas(id_venta, nombre_producto, precio_unitario, cantidad, subtotal) VALUES(?,?,?,?,?)";
-            PreparedStatement psDetalle = conn.prepareStatement(sqlDetalle);
-            
-            for (ItemCarrito item : items) {
-                psDetalle.setInt(1, idVenta);
-                psDetalle.setString(2, item.nombreProducto);
-                psDetalle.setDouble(3, item.precio);
-                psDetalle.setInt(4, 1);
-                psDetalle.setDouble(5, item.precio);
-                psDetalle.executeUpdate();
+            conn = ConexionDB.conectarLectura();
+            conn.setAutoCommit(false); // Versión, altas y bajas de la misma foto
+            
+            long version;
+            long vaciado;
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(SQL_VERSION)) {
+                if (!rs.next()) {
+                    conn.commit();
+                    return null;
+                }
+                version = rs.getLong("version");
+                vaciado = rs.getLong("vaciado");
+            }
+            if (version == desde) {
+                conn.commit();
+                return null;
             }
             
-            // Limpiar carrito compartido
-            Statement stmtLimpiar = conn.createStatement();
-            stmtLimpiar.executeUpdate("DELETE FROM carrito_compartido");
+            // Desde antes del último vaciado (o versión desconocida) las bajas ya no alcanzan: se relee todo
+            boolean reinicio = desde < vaciado || desde > version;
+            long base = reinicio ? -1 : desde;
             
-            conn.commit();
-            Logger.info("Carrito compartido transferido a venta exitosamente. ID Venta: " + idVenta);
-            return true;
+            List<ItemCarrito> altas = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, nombre_producto, precio, origen FROM carrito_compartido WHERE version > ? ORDER BY id")) {
+                ps.setLong(1, base);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) altas.add(leerItem(rs));
+                }
+            }
             
-        } catch (Exception e) {
-            try {
-                if (conn != null) conn.rollback();
-            } catch (SQLException ex) {
-                Logger.error("Error en rollback de transferencia de carrito", ex);
+            List<Long> bajas = new ArrayList<>();
+            if (!reinicio) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id_item FROM carrito_bajas WHERE version > ?")) {
+                    ps.setLong(1, base);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) bajas.add(rs.getLong(1));
+                    }
+                }
             }
-            Logger.error("Error al transferir carrito compartido a venta", e);
-            return false;
+            
+            conn.commit();
+            return new CambiosCarrito(version, reinicio, altas, bajas);
+            
+        } catch (SQLException e) {
+            deshacer(conn);
+            Logger.error("Error SQL al leer cambios del carrito compartido", e);
+            return null;
         } finally {
-            try {
-                if (conn != null) {
-                    conn.setAutoCommit(true);
-                    conn.close();
-                }
-            } catch (SQLException e) {
-                Logger.error("Error al cerrar conexión en transferencia de carrito", e);
+            cerrar(conn);
+        }
+    }
+    
+    /**
+     * Suma uno a la versión del carrito dentro de la transacción en curso
+     * @param vaciar true si el cambio vacía el carrito: las bajas anteriores ya no hacen falta
+     * @return La versión nueva
+     */
+    private static long incrementarVersion(Connection conn, boolean vaciar) throws SQLException {
+        long version;
+        try (Statement stmt = conn.createStatement()) {
+            if (stmt.executeUpdate("UPDATE carrito_version SET version = version + 1 WHERE id = 1") == 0) {
+                throw new SQLException("Falta la fila de carrito_version (migración v12)");
+            }
+            try (ResultSet rs = stmt.executeQuery(SQL_VERSION)) {
+                rs.next();
+                version = rs.getLong("version");
             }
         }
+        if (vaciar) {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE carrito_version SET vaciado = ? WHERE id = 1")) {
+                ps.setLong(1, version);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM carrito_bajas WHERE version <= ?")) {
+                ps.setLong(1, version);
+                ps.executeUpdate();
+            }
+        }
+        return version;
+    }
+    
+    private static ItemCarrito leerItem(ResultSet rs) throws SQLException {
+        return new ItemCarrito(
+            rs.getLong("id"),
+            rs.getString("nombre_producto"),
+            rs.getDouble("precio"),
+            rs.getString("origen")
+        );
+    }
+    
+    private static void deshacer(Connection conn) {
+        try {
+            if (conn != null) conn.rollback();
+        } catch (SQLException e) {
+            Logger.error("Error en rollback del carrito compartido", e);
+        }
+    }
+    
+    private static void cerrar(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+                conn.close();
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al cerrar conexión del carrito compartido", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Catálogo de productos residente en memoria, indexado por código de barras
+ * Tabla hash de direccionamiento abierto (sondeo lineal) sobre el long primitivo:
+ * un escaneo se resuelve en O(1) sin boxing, sin Strings y sin tocar la BD
+ * También mantiene el índice de trigramas que usa la búsqueda por texto
+ */
+public class CatalogoProductos {
+
+    private static final long VACIO = Long.MIN_VALUE; // Marca de celda libre (no es un código válido)
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private static final CatalogoProductos instance = new CatalogoProductos();
+
+    private long[] claves;
+    private Producto[] valores;
+    private int cantidad = 0;
+    private IndiceTrigramas indiceTexto = new IndiceTrigramas();
+    private Map<String, Long> codigosPorNombre = new HashMap<>(); // El carrito identifica por nombre
+    private volatile boolean cargado = false;
+    private final AtomicBoolean recargando = new AtomicBoolean();
+
+    private CatalogoProductos() {
+        inicializarTablas(CAPACIDAD_INICIAL);
+    }
+
+    public static CatalogoProductos getInstance() {
+        return instance;
+    }
+
+    /**
+     * Carga el catálogo completo desde la BD
+     * Se arma en tablas e índice nuevos, sin tomar el lock, y se reemplaza de una vez al
+     * terminar: las búsquedas siguen usando el catálogo anterior mientras tanto y, si la
+     * lectura falla, ese catálogo queda intacto
+     */
+    public void cargar() {
+        String sql = "SELECT codigo, nombre, precio, stock, es_cigarrillo FROM productos";
+        CatalogoProductos nuevo = new CatalogoProductos();
+        try (Connection conn = ConexionDB.conectarLectura();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                nuevo.poner(new Producto(
+                    rs.getLong("codigo"),
+                    rs.getString("nombre"),
+                    rs.getDouble("precio"),
+                    rs.getInt("stock"),
+                    rs.getInt("es_cigarrillo") == 1
+                ));
+            }
+
+        } catch (SQLException e) {
+            Logger.error("Error cargando catálogo de productos en memoria", e);
+            return;
+        }
+
+        synchronized (this) {
+            claves = nuevo.claves;
+            valores = nuevo.valores;
+            cantidad = nuevo.cantidad;
+            indiceTexto = nuevo.indiceTexto;
+            codigosPorNombre = nuevo.codigosPorNombre;
+        }
+        cargado = true;
+        Logger.info("Catálogo de productos cargado en memoria: " + nuevo.cantidad + " productos");
+    }
+
+    /**
+     * cargar() en un hilo aparte (refresco periódico en RED); si ya hay una recarga en curso no hace nada
+     */
+    public void recargarEnSegundoPlano() {
+        if (!recargando.compareAndSet(false, true)) return;
+        Thread hilo = new Thread(() -> {
+            try {
+                cargar();
+            } finally {
+                recargando.set(false);
+            }
+        }, "kiosco-catalogo");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public boolean estaCargado() {
+        return cargado;
+    }
+
+    /**
+     * Busca un producto por código sin asignar memoria
+     * @return El producto o null si no está en el catálogo
+     */
+    public synchronized Producto buscar(long codigo) {
+        if (codigo == VACIO) return null;
+        int mascara = claves.length - 1;
+        int i = indice(codigo, mascara);
+        while (claves[i] != VACIO) {
+            if (claves[i] == codigo) return valores[i];
+            i = (i + 1) & mascara;
+        }
+        return null;
+    }
+
+    /**
+     * Inserta o reemplaza un producto en el catálogo
+     */
+    public synchronized void poner(Producto p) {
+        if (p == null || p.getCodigo() == VACIO) return;
+        if ((cantidad + 1) * 4 > claves.length * 3) { // Factor de carga máximo 0.75
+            redimensionar(claves.length * 2);
+        }
+        long codigo = p.getCodigo();
+        int mascara = claves.length - 1;
+        int i = indice(codigo, mascara);
+        while (claves[i] != VACIO) {
+            if (claves[i] == codigo) {
+                if (!java.util.Objects.equals(valores[i].getNombre(), p.getNombre())) {
+                    indiceTexto.agregar(codigo, p.getNombre()); // Cambió el nombre: reindexar
+                    codigosPorNombre.remove(valores[i].getNombre(), codigo);
+                    if (p.getNombre() != null) codigosPorNombre.put(p.getNombre(), codigo);
+                }
+                valores[i] = p;
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+        claves[i] = codigo;
+        valores[i] = p;
+        cantidad++;
+        indiceTexto.agregar(codigo, p.getNombre());
+        if (p.getNombre() != null) codigosPorNombre.put(p.getNombre(), codigo);
+    }
+
+    /**
+     * Elimina un producto usando borrado con desplazamiento hacia atrás
+     * (no deja lápidas, así las búsquedas siguen siendo cortas)
+     */
+    public synchronized void quitar(long codigo) {
+        if (codigo == VACIO) return;
+        int mascara = claves.length - 1;
+        int i = indice(codigo, mascara);
+        while (claves[i] != codigo) {
+            if (claves[i] == VACIO) return; // No estaba
+            i = (i + 1) & mascara;
+        }
+
+        int libre = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            if (claves[j] == VACIO) break;
+            int ideal = indice(claves[j], mascara);
+            // Mover la entrada j al hueco si su posición ideal no está entre (libre, j]
+            boolean moverAlHueco = (libre <= j) ? (ideal <= libre || ideal > j) : (ideal <= libre && ideal > j);
+            if (moverAlHueco) {
+                claves[libre] = claves[j];
+                valores[libre] = valores[j];
+                libre = j;
+            }
+        }
+        claves[libre] = VACIO;
+        valores[libre] = null;
+        cantidad--;
+        indiceTexto.quitar(codigo);
+        codigosPorNombre.values().remove(codigo);
+    }
+
+    /**
+     * Busca un producto por su nombre exacto (el carrito de ventas guarda nombres)
+     * @return El producto o null si no hay ninguno con ese nombre
+     */
+    public synchronized Producto buscarPorNombre(String nombre) {
+        Long codigo = codigosPorNombre.get(nombre);
+        return codigo == null ? null : buscar(codigo);
+    }
+
+    /**
+     * Búsqueda por nombre o código usando el índice de trigramas
+     * @return Productos ordenados por relevancia (todos, por código, si el filtro está vacío)
+     */
+    public synchronized List<Producto> buscarTexto(String filtro) {
+        long[] codigos = indiceTexto.buscar(filtro);
+        List<Producto> lista = new ArrayList<>(codigos.length);
+        for (long codigo : codigos) {
+            Producto p = buscar(codigo);
+            if (p != null) lista.add(p);
+        }
+        return lista;
+    }
+
+    /**
+     * Ajusta el stock en memoria de un producto existente (delta negativo = venta)
+     */
+    public synchronized void ajustarStock(long codigo, int delta) {
+        Producto p = buscar(codigo);
+        if (p != null) {
+            poner(new Producto(p.getCodigo(), p.getNombre(), p.getPrecio(), p.getStock() + delta, p.isEsCigarrillo()));
+        }
+    }
+
+    public synchronized int tamanio() {
+        return cantidad;
+    }
+
+    private void inicializarTablas(int capacidad) {
+        claves = new long[capacidad];
+        valores = new Producto[capacidad];
+        java.util.Arrays.fill(claves, VACIO);
+        cantidad = 0;
+    }
+
+    private void redimensionar(int nuevaCapacidad) {
+        long[] clavesViejas = claves;
+        Producto[] valoresViejos = valores;
+        inicializarTablas(nuevaCapacidad);
+        int mascara = claves.length - 1;
+        for (int k = 0; k < clavesViejas.length; k++) {
+            if (clavesViejas[k] == VACIO) continue;
+            // Reubicar sin pasar por poner(): el índice de texto no cambia
+            int i = indice(clavesViejas[k], mascara);
+            while (claves[i] != VACIO) i = (i + 1) & mascara;
+            claves[i] = clavesViejas[k];
+            valores[i] = valoresViejos[k];
+            cantidad++;
+        }
+    }
+
+    /**
+     * Mezcla los bits del código (los EAN-13 comparten prefijos de país/empresa)
+     */
+    private static int indice(long codigo, int mascara) {
+        long h = codigo * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
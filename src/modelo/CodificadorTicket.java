@@ -0,0 +1,268 @@
+package modelo;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.text.DecimalFormatSymbols;
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Arma tickets ESC/POS directo en un ByteBuffer reutilizable
+ * El encabezado (inicialización, nombre del local centrado a doble tamaño) y el
+ * pie (avance y corte) se precompilan; el texto pasa a bytes en una sola pasada
+ * con una tabla de transliteración hacia la página de códigos de la impresora
+ * No es thread-safe: TicketImpresora usa una instancia bajo su propio lock
+ */
+public final class CodificadorTicket {
+
+    /**
+     * Página de códigos del texto (clave ticket_codigos en la configuración)
+     * ASCII: acentos y eñes se escriben sin marcas, anda en cualquier térmica
+     * CP850: se selecciona con ESC t 2 y se imprimen acentos y eñes
+     */
+    public enum PaginaCodigos { ASCII, CP850 }
+
+    private static final byte ESC = 0x1B;
+    private static final byte GS = 0x1D;
+    private static final byte[] SEPARADOR = "--------------------------------\n".getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    private static final byte[] PIE = { '\n', '\n', '\n', '\n', '\n', GS, 'V', 66, 0 }; // Avanzar papel y CORTAR PAPEL
+    private static final int CAPACIDAD_INICIAL = 2048;
+
+    private static final byte[] TABLA_ASCII = armarTablaAscii();
+    private static final byte[] TABLA_CP850 = armarTablaCp850();
+
+    // Mismos separadores que usaba String.format("%,.0f") con el locale del equipo
+    private static final char SEPARADOR_MILES =
+            DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getGroupingSeparator();
+
+    private ByteBuffer buffer = ByteBuffer.allocate(CAPACIDAD_INICIAL);
+    private byte[] tabla = TABLA_ASCII;
+    private final char[] digitos = new char[32];
+
+    private String localEnCache;
+    private PaginaCodigos paginaEnCache;
+    private byte[] encabezado;
+
+    /**
+     * Empieza un ticket nuevo con el encabezado del local
+     */
+    public CodificadorTicket iniciar(String nombreLocal, PaginaCodigos pagina) {
+        if (encabezado == null || pagina != paginaEnCache || !nombreLocal.equals(localEnCache)) {
+            tabla = pagina == PaginaCodigos.CP850 ? TABLA_CP850 : TABLA_ASCII;
+            encabezado = armarEncabezado(nombreLocal, pagina);
+            localEnCache = nombreLocal;
+            paginaEnCache = pagina;
+        }
+        buffer.clear();
+        bytes(encabezado);
+        return this;
+    }
+
+    /**
+     * Texto transliterado con la tabla de la página de códigos
+     */
+    public CodificadorTicket texto(String s) {
+        if (s == null) s = "null";
+        int n = s.length();
+        asegurar(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 256) {
+                buffer.put(tabla[c]);
+            } else {
+                buffer.put((byte) '?');
+                if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) i++; // Emoji: un solo '?'
+            }
+        }
+        return this;
+    }
+
+    public CodificadorTicket linea(String s) {
+        return texto(s).salto();
+    }
+
+    public CodificadorTicket salto() {
+        asegurar(1);
+        buffer.put((byte) '\n');
+        return this;
+    }
+
+    /**
+     * Texto alineado a la izquierda y completado con espacios, como %-Ns
+     */
+    public CodificadorTicket columna(String s, int ancho) {
+        texto(s);
+        return espacios(ancho - (s == null ? 4 : s.length()));
+    }
+
+    /**
+     * Entero alineado a la derecha, como %Nd
+     */
+    public CodificadorTicket entero(long n, int ancho) {
+        int largo = aDigitos(Math.abs(n), false) + (n < 0 ? 1 : 0);
+        espacios(ancho - largo);
+        if (n < 0) bytes('-');
+        return volcarDigitos(largo - (n < 0 ? 1 : 0));
+    }
+
+    /**
+     * Importe sin decimales y con separador de miles, como %,.0f
+     */
+    public CodificadorTicket montoEntero(double v) {
+        return redondear(v, true);
+    }
+
+    /**
+     * Número sin decimales ni separador de miles, como %.0f
+     */
+    public CodificadorTicket redondeado(double v) {
+        return redondear(v, false);
+    }
+
+    /**
+     * Agrega el pie (avance y corte) y deja el buffer listo para leer
+     * El buffer devuelto es válido hasta el próximo iniciar()
+     */
+    public ByteBuffer terminar() {
+        bytes(PIE);
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    // ===== Internos =====
+
+    private CodificadorTicket redondear(double v, boolean agrupar) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= 1e15) {
+            return texto(String.format(agrupar ? "%,.0f" : "%.0f", v));
+        }
+        // Redondeo hacia arriba en el medio sobre la representación decimal más corta, igual que String.format
+        // Con long; BigDecimal solo cuando la fracción cae pegada a .5
+        double x = Math.abs(v);
+        double piso = Math.floor(x);
+        double fraccion = x - piso;
+        long entero;
+        if (Math.abs(fraccion - 0.5) > Math.max(1e-9, 4 * Math.ulp(x))) {
+            entero = (long) piso + (fraccion > 0.5 ? 1 : 0);
+        } else {
+            entero = BigDecimal.valueOf(x).setScale(0, RoundingMode.HALF_UP).longValue();
+        }
+
+        if (Double.compare(v, 0.0) < 0) bytes('-');
+        return volcarDigitos(aDigitos(entero, agrupar));
+    }
+
+    /**
+     * Escribe los dígitos de n (con separador de miles si se pide) al final de 'digitos'
+     * @return Cantidad de caracteres escritos
+     */
+    private int aDigitos(long n, boolean agrupar) {
+        int pos = digitos.length;
+        int enGrupo = 0;
+        do {
+            if (agrupar && enGrupo == 3) {
+                digitos[--pos] = SEPARADOR_MILES;
+                enGrupo = 0;
+            }
+            digitos[--pos] = (char) ('0' + n % 10);
+            n /= 10;
+            enGrupo++;
+        } while (n > 0);
+        return digitos.length - pos;
+    }
+
+    private CodificadorTicket volcarDigitos(int largo) {
+        asegurar(largo);
+        for (int i = digitos.length - largo; i < digitos.length; i++) {
+            char c = digitos[i];
+            buffer.put(c < 256 ? tabla[c] : (byte) '?');
+        }
+        return this;
+    }
+
+    private CodificadorTicket espacios(int n) {
+        if (n <= 0) return this;
+        asegurar(n);
+        for (int i = 0; i < n; i++) buffer.put((byte) ' ');
+        return this;
+    }
+
+    private void bytes(byte[] b) {
+        asegurar(b.length);
+        buffer.put(b);
+    }
+
+    private void bytes(char c) {
+        asegurar(1);
+        buffer.put((byte) c);
+    }
+
+    private void asegurar(int n) {
+        if (buffer.remaining() >= n) return;
+        ByteBuffer mayor = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n));
+        buffer.flip();
+        mayor.put(buffer);
+        buffer = mayor;
+    }
+
+    private byte[] armarEncabezado(String nombreLocal, PaginaCodigos pagina) {
+        buffer.clear();
+        bytes(new byte[] { ESC, '@' }); // Inicializar impresora
+        if (pagina == PaginaCodigos.CP850) bytes(new byte[] { ESC, 't', 2 }); // Tabla PC850
+        bytes(new byte[] { ESC, 'a', 1 });  // Centrar
+        bytes(new byte[] { ESC, '!', 48 }); // Doble alto y Doble ancho
+        linea(nombreLocal.toUpperCase());
+        bytes(new byte[] { ESC, '!', 0 });  // Volver a letra normal
+        bytes(SEPARADOR);
+        bytes(new byte[] { ESC, 'a', 0 });  // Alinear Izquierda
+
+        byte[] resultado = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(resultado);
+        return resultado;
+    }
+
+    /**
+     * ASCII tal cual; el resto de Latin-1 sin acentos (á -> a, ñ -> n) o por un equivalente
+     */
+    private static byte[] armarTablaAscii() {
+        byte[] t = new byte[256];
+        for (int c = 0; c < 256; c++) {
+            if (c < 128) {
+                t[c] = (byte) c;
+                continue;
+            }
+            char base = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD).charAt(0);
+            t[c] = base < 128 ? (byte) base : (byte) '?';
+        }
+        t['°'] = ' ';
+        t['º'] = 'o';
+        t['ª'] = 'a';
+        t['¡'] = '!';
+        t['¿'] = '?';
+        t['«'] = '"';
+        t['»'] = '"';
+        t[' '] = ' '; // Espacio duro
+        return t;
+    }
+
+    /**
+     * Latin-1 codificado en IBM850; lo que esa página no tiene cae en la tabla ASCII
+     */
+    private static byte[] armarTablaCp850() {
+        byte[] t = armarTablaAscii();
+        try {
+            CharsetEncoder cp850 = Charset.forName("IBM850").newEncoder();
+            for (int c = 128; c < 256; c++) {
+                if (c == 0xA0 || !cp850.canEncode((char) c)) continue;
+                t[c] = cp850.encode(CharBuffer.wrap(new char[] { (char) c })).get();
+            }
+        } catch (Exception e) {
+            Logger.warn("Página de códigos IBM850 no disponible en esta JVM, los tickets salen sin acentos");
+        }
+        return t;
+    }
+}
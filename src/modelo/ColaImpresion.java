@@ -0,0 +1,301 @@
+package modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cola de impresión de tickets con un hilo por impresora
+ * Con una sola impresora los tickets salen de a uno y en orden (no se mezclan
+ * en el papel); con varias (clave "impresoras", ver BackendImpresora) cada una
+ * toma el siguiente ticket libre. Cada trabajo se reintenta con espera creciente;
+ * el que falla vuelve al frente de la cola para que lo tome otra impresora
+ * Antes de encolarlo, cada ticket se guarda en tickets_pendientes/; se borra al
+ * imprimirse. Si el programa se corta, al volver a iniciar se imprimen los que quedaron
+ */
+public class ColaImpresion {
+
+    public static final String DIRECTORIO = "tickets_pendientes";
+    public static final int CAPACIDAD = 64;
+
+    private static final String EXTENSION = ".ticket";
+    private static final String EXTENSION_FALLIDO = ".fallido";
+    private static final int MAX_INTENTOS = 5;
+    private static final long ESPERA_INICIAL_MS = 1000;
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+
+    private static final ColaImpresion instance = new ColaImpresion();
+
+    private final BlockingDeque<Trabajo> cola = new LinkedBlockingDeque<>(CAPACIDAD);
+    private final File directorio = new File(DIRECTORIO);
+    private final AtomicLong secuencia = new AtomicLong();
+    private volatile Consumer<String> avisoError = mensaje -> {};
+    private final List<Despachador> despachadores = new ArrayList<>();
+    private volatile boolean iniciada = false;
+    private volatile boolean detenido = false;
+
+    // Métricas
+    private final AtomicLong impresos = new AtomicLong();
+    private final AtomicLong reintentos = new AtomicLong();
+    private final AtomicLong fallidos = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+    private volatile int profundidadMaxima = 0;
+
+    private ColaImpresion() {}
+
+    public static ColaImpresion getInstance() {
+        return instance;
+    }
+
+    /**
+     * Arranca con las impresoras de la configuración (clave "impresoras")
+     */
+    public void iniciar() {
+        iniciar(BackendImpresora.desdeConfiguracion(ServicioConfiguracion.obtener().getTexto("impresoras", "sistema")));
+    }
+
+    /**
+     * Arranca un hilo por impresora y vuelve a encolar los tickets que quedaron del arranque anterior
+     * Si ya estaba iniciada no hace nada
+     */
+    public synchronized void iniciar(List<BackendImpresora> impresoras) {
+        if (iniciada) return;
+        if (!directorio.exists() && !directorio.mkdirs()) {
+            Logger.warn("No se pudo crear " + DIRECTORIO + ": los tickets no sobreviven a un corte");
+        }
+
+        File[] pendientes = directorio.listFiles((dir, nombre) -> nombre.endsWith(EXTENSION));
+        if (pendientes != null && pendientes.length > 0) {
+            Arrays.sort(pendientes); // El nombre empieza con el momento de encolado
+            int recuperados = 0;
+            for (File f : pendientes) {
+                if (cola.offer(new Trabajo(f))) recuperados++;
+            }
+            Logger.info("Tickets pendientes recuperados de " + DIRECTORIO + ": " + recuperados);
+        }
+
+        for (BackendImpresora impresora : impresoras) {
+            Despachador d = new Despachador(impresora, despachadores.size() + 1);
+            despachadores.add(d);
+            d.start();
+            Logger.info("Impresora de tickets: " + impresora.getNombre());
+        }
+        iniciada = true;
+    }
+
+    /**
+     * Quién muestra los errores de impresión (en la UI, un toast vía invokeLater)
+     * Se invoca desde un hilo de impresión
+     */
+    public void setAvisoError(Consumer<String> avisoError) {
+        this.avisoError = avisoError != null ? avisoError : mensaje -> {};
+    }
+
+    /**
+     * Guarda el ticket en el diario y lo encola
+     * @param bytes Ticket ya codificado (ESC/POS)
+     * @return false si la cola está llena o no se pudo guardar el ticket
+     */
+    public boolean encolar(byte[] bytes) {
+        return encolar(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Igual que encolar(byte[]); los bytes se copian al diario antes de volver
+     * (el buffer queda libre para el siguiente ticket)
+     */
+    public boolean encolar(ByteBuffer bytes) {
+        if (!iniciada) iniciar();
+        if (detenido || cola.remainingCapacity() == 0) {
+            rechazados.incrementAndGet();
+            return false;
+        }
+
+        File archivo = new File(directorio, String.format("%013d_%06d%s",
+                System.currentTimeMillis(), secuencia.incrementAndGet() % 1_000_000, EXTENSION));
+        try {
+            File temporal = new File(directorio, archivo.getName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(temporal.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer lectura = bytes.duplicate();
+                while (lectura.hasRemaining()) canal.write(lectura);
+            }
+            Files.move(temporal.toPath(), archivo.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.error("No se pudo guardar el ticket en " + DIRECTORIO, e);
+            rechazados.incrementAndGet();
+            return false;
+        }
+
+        if (!cola.offer(new Trabajo(archivo))) { // Se llenó entre la verificación y ahora
+            archivo.delete();
+            rechazados.incrementAndGet();
+            return false;
+        }
+        int profundidad = cola.size();
+        if (profundidad > profundidadMaxima) profundidadMaxima = profundidad;
+        return true;
+    }
+
+    public int getPendientes() {
+        return cola.size();
+    }
+
+    public int getProfundidadMaxima() {
+        return profundidadMaxima;
+    }
+
+    public long getImpresos() {
+        return impresos.get();
+    }
+
+    public long getReintentos() {
+        return reintentos.get();
+    }
+
+    public long getFallidos() {
+        return fallidos.get();
+    }
+
+    public long getRechazados() {
+        return rechazados.get();
+    }
+
+    /**
+     * Espera que se vacíe la cola y detiene los hilos; lo que no llegó a salir queda en el diario
+     */
+    public void detener(long esperaMaximaMs) {
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+        while (!cola.isEmpty() && System.currentTimeMillis() < limite) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        detenido = true;
+        StringBuilder porImpresora = new StringBuilder();
+        synchronized (this) {
+            for (Despachador d : despachadores) {
+                d.interrupt();
+                d.impresora.cerrar();
+                porImpresora.append(", ").append(d.impresora.getNombre()).append(": ").append(d.impresos);
+            }
+        }
+        Logger.info(String.format("Cola de impresión: %d impresos, %d reintentos, %d fallidos, %d rechazados, máximo en cola %d, pendientes %d%s",
+                impresos.get(), reintentos.get(), fallidos.get(), rechazados.get(), profundidadMaxima, cola.size(), porImpresora));
+    }
+
+    /**
+     * Agotados los intentos: el ticket queda como .fallido para reimprimirlo a mano
+     */
+    private void fallar(Trabajo trabajo, Exception e) {
+        fallidos.incrementAndGet();
+        Logger.error("No se pudo imprimir el ticket " + trabajo.archivo.getName() + " tras " + MAX_INTENTOS + " intentos", e);
+        File fallido = new File(directorio, trabajo.archivo.getName().replace(EXTENSION, EXTENSION_FALLIDO));
+        if (!trabajo.archivo.renameTo(fallido)) trabajo.archivo.delete();
+        try {
+            avisoError.accept("Error al imprimir: " + e.getMessage());
+        } catch (Exception ex) {
+            Logger.error("No se pudo avisar el error de impresión", ex);
+        }
+    }
+
+    /**
+     * Un ticket del diario y cuántas veces falló (entre todas las impresoras)
+     */
+    private static class Trabajo {
+        final File archivo;
+        int intentos = 0;
+
+        Trabajo(File archivo) {
+            this.archivo = archivo;
+        }
+    }
+
+    /**
+     * Hilo de una impresora: toma tickets de la cola compartida y los imprime
+     * Tras una falla espera antes de tomar otro (1 s, 2 s, 4 s... hasta 30 s)
+     */
+    private class Despachador extends Thread {
+        final BackendImpresora impresora;
+        volatile long impresos = 0;
+        private long espera = 0; // 0 = sin fallas recientes
+
+        Despachador(BackendImpresora impresora, int numero) {
+            super("kiosco-impresion-" + numero);
+            this.impresora = impresora;
+            setDaemon(true); // Lo pendiente queda en el diario
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!detenido) {
+                    Trabajo trabajo = cola.take();
+                    if (!imprimir(trabajo)) Thread.sleep(espera);
+                }
+            } catch (InterruptedException e) {
+                // Detenido: el ticket en curso sigue en el diario
+            }
+        }
+
+        /**
+         * @return false si falló y el hilo tiene que esperar antes de seguir
+         */
+        private boolean imprimir(Trabajo trabajo) {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(trabajo.archivo.toPath());
+            } catch (IOException e) {
+                Logger.error("Ticket ilegible en el diario, se descarta: " + trabajo.archivo.getName(), e);
+                fallidos.incrementAndGet();
+                trabajo.archivo.delete();
+                return true;
+            }
+
+            try {
+                impresora.imprimir(bytes);
+                espera = 0;
+                impresos++;
+                ColaImpresion.this.impresos.incrementAndGet();
+                if (!trabajo.archivo.delete()) Logger.warn("No se pudo borrar del diario el ticket impreso " + trabajo.archivo.getName());
+                return true;
+            } catch (Exception e) {
+                impresora.reiniciar();
+                espera = espera == 0 ? ESPERA_INICIAL_MS : Math.min(espera * 2, ESPERA_MAXIMA_MS);
+                if (++trabajo.intentos >= MAX_INTENTOS) {
+                    fallar(trabajo, e);
+                    return false;
+                }
+                reintentos.incrementAndGet();
+                Logger.warn("Fallo al imprimir en " + impresora.getNombre() + " (intento " + trabajo.intentos + " de "
+                        + MAX_INTENTOS + "), reintento en " + espera + " ms: " + e.getMessage());
+
+                // Al frente de la cola: otra impresora libre lo toma ya; si no hay, este hilo tras la espera
+                if (!cola.offerFirst(trabajo)) {
+                    try {
+                        Thread.sleep(espera);
+                    } catch (InterruptedException ie) {
+                        interrupt();
+                        return true;
+                    }
+                    return imprimir(trabajo);
+                }
+                return false;
+            }
+        }
+    }
+}
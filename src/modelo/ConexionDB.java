@@ -1,12 +1,9 @@
 package modelo;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Properties;
 
 public class ConexionDB {
 
@@ -21,81 +18,69 @@ public class ConexionDB {
     public static String licencia = "FULL";
 
     /**
-     * Carga la configuración desde db_config.properties
+     * Toma la configuración de la instantánea de ServicioConfiguracion
      * Determina el tipo de BD y licencia del sistema
      */
     private static void cargarConfiguracion() {
-        File f = new File("db_config.properties");
-        if (f.exists()) {
-            try (FileInputStream fis = new FileInputStream(f)) {
-                Properties prop = new Properties();
-                prop.load(fis);
-                
-                tipoBase = prop.getProperty("tipo", "mysql").trim().toLowerCase();
-                licencia = prop.getProperty("licencia", "FULL").trim().toUpperCase();
-                
-                ip = prop.getProperty("ip", "localhost").trim();
-                puerto = prop.getProperty("puerto", "3306").trim();
-                usuario = prop.getProperty("usuario", "root").trim();
-                password = prop.getProperty("password", "").trim();
-                
-                String ticketConfig = prop.getProperty("imprimir_ticket", "true").trim();
-                imprimirTicket = Boolean.parseBoolean(ticketConfig);
-                
-                String carroConfig = prop.getProperty("carrito_compartido", "false").trim();
-                carritoCompartido = Boolean.parseBoolean(carroConfig);
-                
-            } catch (Exception e) {
-                System.out.println("⚠️ No se pudo leer config, usando valores por defecto.");
-            }
-        }
+        ServicioConfiguracion.Configuracion config = ServicioConfiguracion.obtener();
+        
+        tipoBase = config.getTipoBase();
+        licencia = config.getLicencia();
+        
+        ip = config.getTexto("ip", "localhost");
+        puerto = config.getTexto("puerto", "3306");
+        usuario = config.getTexto("usuario", "root");
+        password = config.getTexto("password", "");
+        
+        imprimirTicket = config.isImprimirTicket();
+        carritoCompartido = config.isCarritoCompartido();
     }
 
     public static Connection conectar() throws SQLException {
-        // Para SQLite, usar conexión directa para evitar bloqueos
         if (tipoBase.equals("sqlite")) {
-            return conectarDirecto();
+            // Para SQLite, el único escritor de larga vida (serializado, sin SQLITE_BUSY)
+            return GestorSQLite.getInstance().conectarEscritura();
         } else {
             // Para MySQL, usar pool de conexiones para mejor performance
             return ConnectionPool.getInstance().getConnection();
         }
     }
     
+    /**
+     * Conexión para consultas que solo leen (búsqueda de productos, estadísticas)
+     * En SQLite sale del pool de lectores WAL y no compite con las ventas
+     */
+    public static Connection conectarLectura() throws SQLException {
+        if (tipoBase.equals("sqlite")) {
+            return GestorSQLite.getInstance().conectarLectura();
+        } else {
+            return ConnectionPool.getInstance().getConnection();
+        }
+    }
+    
+    /**
+     * Cierra el pool o las conexiones SQLite al salir del sistema
+     */
+    public static void cerrarConexiones() {
+        if (tipoBase.equals("sqlite")) {
+            GestorSQLite.getInstance().cerrar();
+        } else {
+            ConnectionPool.getInstance().closeAll();
+        }
+    }
+    
     /**
      * Conexión directa sin pool (usado internamente por el pool)
+     * La configuración ya se cargó en inicializarBD(); no se relee el archivo por conexión
      * @return Conexión según el tipo configurado (SQLite/MySQL)
      */
     public static Connection conectarDirecto() throws SQLException {
-        cargarConfiguracion(); 
-
         if (tipoBase.equals("sqlite")) {
-            try {
-                Class.forName("org.sqlite.JDBC");
-                String url = "jdbc:sqlite:kiosco_lite.db?journal_mode=WAL&synchronous=NORMAL&cache_size=10000&temp_store=memory";
-                Connection conn = DriverManager.getConnection(url);
-                
-                // Configurar SQLite para evitar bloqueos
-                try (var stmt = conn.createStatement()) {
-                    stmt.execute("PRAGMA busy_timeout = 30000"); // 30 segundos de timeout
-                    stmt.execute("PRAGMA journal_mode = WAL");    // Write-Ahead Logging
-                    stmt.execute("PRAGMA synchronous = NORMAL");  // Balance entre seguridad y performance
-                    stmt.execute("PRAGMA cache_size = 10000");    // Cache más grande
-                    stmt.execute("PRAGMA temp_store = memory");   // Tablas temporales en memoria
-                }
-                
-                Logger.debug("Conexión SQLite directa establecida con configuración optimizada");
-                return conn;
-            } catch (ClassNotFoundException e) {
-                Logger.error("Driver de SQLite no encontrado", e);
-                throw new SQLException("Driver SQLite no disponible", e);
-            } catch (SQLException e) {
-                Logger.error("Error al conectar con SQLite", e);
-                throw e;
-            }
+            return abrirSQLite(false);
         } else {
-            String url = "jdbc:mysql://" + ip + ":" + puerto + "/tienda_db?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&createDatabaseIfNotExist=true";
+            String url = "jdbc:mysql://" + ip + ":" + puerto + "/tienda_db?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&createDatabaseIfNotExist=true&rewriteBatchedStatements=true";
             try {
-                Class.forName("com.mysql.cj.jdbc.Driver");
+                cargarDriver("com.mysql.cj.jdbc.Driver");
                 Connection conn = DriverManager.getConnection(url, usuario, password);
                 Logger.debug("Conexión MySQL directa establecida");
                 return conn;
@@ -109,6 +94,58 @@ public class ConexionDB {
         }
     }
 
+    /**
+     * Abre una conexión física a SQLite y le aplica los PRAGMA una única vez
+     * @param soloLectura true para los lectores WAL (query_only impide escrituras accidentales)
+     */
+    static Connection abrirSQLite(boolean soloLectura) throws SQLException {
+        try {
+            cargarDriver("org.sqlite.JDBC");
+            String url = "jdbc:sqlite:kiosco_lite.db";
+            Connection conn = DriverManager.getConnection(url);
+            
+            // Configurar SQLite para evitar bloqueos
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA busy_timeout = 30000"); // 30 segundos de timeout
+                stmt.execute("PRAGMA journal_mode = WAL");    // Write-Ahead Logging
+                stmt.execute("PRAGMA synchronous = NORMAL");  // Balance entre seguridad y performance
+                stmt.execute("PRAGMA cache_size = 10000");    // Cache más grande
+                stmt.execute("PRAGMA temp_store = memory");   // Tablas temporales en memoria
+                if (soloLectura) {
+                    stmt.execute("PRAGMA query_only = 1");
+                }
+            }
+            
+            Logger.debug("Conexión SQLite " + (soloLectura ? "de lectura" : "de escritura") + " establecida con configuración optimizada");
+            return conn;
+        } catch (ClassNotFoundException e) {
+            Logger.error("Driver de SQLite no encontrado", e);
+            throw new SQLException("Driver SQLite no disponible", e);
+        } catch (SQLException e) {
+            Logger.error("Error al conectar con SQLite", e);
+            throw e;
+        }
+    }
+    
+    private static volatile String driverCargado = null;
+    
+    /**
+     * Registra el driver JDBC una sola vez (no en cada conexión)
+     */
+    private static void cargarDriver(String clase) throws ClassNotFoundException {
+        if (!clase.equals(driverCargado)) {
+            Class.forName(clase);
+            driverCargado = clase;
+        }
+    }
+
+    private static final java.util.function.Consumer<ServicioConfiguracion.Configuracion> OYENTE_CONFIG = ConexionDB::aplicarCambios;
+    
+    private static void aplicarCambios(ServicioConfiguracion.Configuracion config) {
+        imprimirTicket = config.isImprimirTicket();
+        carritoCompartido = config.isCarritoCompartido();
+    }
+
     /**
      * Inicializa la base de datos creando las tablas necesarias
      * Incluye detección automática de migración de datos
@@ -116,6 +153,12 @@ public class ConexionDB {
     public static void inicializarBD() {
         cargarConfiguracion();
         
+        // El tipo de BD y la conexión solo cambian al reiniciar; el resto se aplica en caliente
+        ServicioConfiguracion servicio = ServicioConfiguracion.getInstance();
+        servicio.desuscribir(OYENTE_CONFIG); // inicializarBD() se repite al reiniciar sesión
+        servicio.suscribir(OYENTE_CONFIG);
+        servicio.iniciarVigilancia();
+        
         if (necesitaMigracion()) {
             mostrarDialogoMigracion();
         }
@@ -123,8 +166,6 @@ public class ConexionDB {
         try (Connection conn = conectar()) {
             if (conn == null) return;
             
-            Statement stmt = conn.createStatement();
-            
             String SQL_AUTO_INC;
             String SQL_BIGINT; 
             
@@ -137,15 +178,23 @@ public class ConexionDB {
             }
 
             // Crear todas las tablas del sistema
-            crearTablaProductos(stmt, SQL_BIGINT);
-            crearTablaCajas(stmt, SQL_AUTO_INC);
-            crearTablaVentas(stmt, SQL_AUTO_INC);
-            crearTablaDetalleVentas(stmt, SQL_AUTO_INC);
-            crearTablaProveedores(stmt, SQL_AUTO_INC);
-            crearTablaGastos(stmt, SQL_AUTO_INC);
-            crearTablaConfiguracion(stmt);
-            crearTablaCarritoCompartido(stmt, SQL_AUTO_INC);
-            crearTablaUsuarios(stmt, SQL_AUTO_INC);
+            try (Statement stmt = conn.createStatement()) {
+                crearTablaProductos(stmt, SQL_BIGINT);
+                crearTablaCajas(stmt, SQL_AUTO_INC);
+                crearTablaVentas(stmt, SQL_AUTO_INC);
+                crearTablaDetalleVentas(stmt, SQL_AUTO_INC);
+                crearTablaProveedores(stmt, SQL_AUTO_INC);
+                crearTablaGastos(stmt, SQL_AUTO_INC);
+                crearTablaConfiguracion(stmt);
+                crearTablaCarritoCompartido(stmt, SQL_AUTO_INC);
+                crearTablaUsuarios(stmt, SQL_AUTO_INC);
+            }
+            
+            // Índices y cambios de estructura posteriores, en orden y una sola vez
+            MigradorEsquema.migrar(conn, tipoBase);
+            RellenoMarcasTiempo.iniciar();
+            RellenoCodigosProducto.iniciar();
+            TopProductos.getInstance().iniciar();
 
             System.out.println("✅ BD Inicializada (" + tipoBase + ")");
             
@@ -2,153 +2,492 @@ package modelo;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Pool de conexiones básico para mejorar performance
+ * Pool de conexiones con contabilidad atómica y mantenimiento en segundo plano
+ * - Si no hay conexiones libres crece en el acto hasta el máximo (no espera antes de crear)
+ * - Devolver una conexión no hace round-trips: la validación (keep-alive) y el cierre
+ *   de conexiones ociosas los hace un hilo de mantenimiento; mientras valida una, quien pide
+ *   conexión la espera en vez de abrir otra
+ * - Exporta métricas: préstamos, histograma de espera y fugas (con el stack del préstamo
+ *   si se activa kiosco.pool.rastrearFugas)
  */
 public class ConnectionPool {
-    
+
+    private static final long INTERVALO_MANTENIMIENTO_MS = 30_000;
+    private static final long KEEPALIVE_MS = 60_000;          // Validar conexiones ociosas más de 1 minuto
+    private static final long INACTIVIDAD_MAXIMA_MS = 300_000; // Cerrar las ociosas más de 5 minutos (sobre el mínimo)
+    private static final long UMBRAL_FUGA_MS = 30_000;         // Préstamo más largo que esto = posible fuga
+    // El stack del préstamo cuesta un Throwable por préstamo: solo a pedido (-Dkiosco.pool.rastrearFugas=true)
+    // y, si se indica -Dkiosco.pool.muestreoFugas=N, en uno de cada N préstamos
+    private static final boolean RASTREAR_FUGAS =
+            Boolean.parseBoolean(System.getProperty("kiosco.pool.rastrearFugas", "false"));
+    private static final int MUESTREO_FUGAS = Math.max(1, Integer.getInteger("kiosco.pool.muestreoFugas", 1));
+
+    // Límites superiores (ms) de los baldes del histograma de espera; el último es "más que eso"
+    private static final long[] LIMITES_HISTOGRAMA_MS = { 1, 5, 20, 100, 500, 2000 };
+
     private static ConnectionPool instance;
-    private final BlockingQueue<Connection> pool;
+
+    /**
+     * Abre una conexión física nueva (MySQL directo, SQLite de solo lectura, etc.)
+     */
+    @FunctionalInterface
+    public interface FabricaConexiones {
+        Connection crear() throws SQLException;
+    }
+
+    private final String nombre;
+    private final int minConexiones;
     private final int maxConnections;
-    private int activeConnections = 0;
-    
-    private ConnectionPool(int maxConnections) {
+    private final long esperaMaximaMs;
+    private final FabricaConexiones fabrica;
+    // LIFO: las conexiones calientes se reutilizan primero y las ociosas quedan al final
+    private final LinkedBlockingDeque<Inactiva> libres = new LinkedBlockingDeque<>();
+    private final AtomicInteger totalConexiones = new AtomicInteger(); // Abiertas + en creación
+    private final AtomicInteger enValidacion = new AtomicInteger();    // Libres sacadas por el keep-alive
+    private final Map<Connection, Prestamo> prestamos = new ConcurrentHashMap<>();
+    // Caché de sentencias por conexión física (sobrevive entre préstamos)
+    private final Map<Connection, CacheSentencias> cachesSentencias = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado = false;
+
+    // Métricas
+    private final LongAdder prestamosTotales = new LongAdder();
+    private final LongAdder conexionesCreadas = new LongAdder();
+    private final LongAdder conexionesDescartadas = new LongAdder();
+    private final LongAdder esperasAgotadas = new LongAdder();
+    private final LongAdder fugasDetectadas = new LongAdder();
+    private final LongAdder[] histogramaEspera = new LongAdder[LIMITES_HISTOGRAMA_MS.length + 1];
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+
+    /**
+     * @param nombre Identifica al pool en logs y en el hilo de mantenimiento
+     * @param esperaMaximaMs Cuánto esperar una conexión con el pool lleno antes de fallar
+     */
+    public ConnectionPool(String nombre, int minConexiones, int maxConnections, long esperaMaximaMs, FabricaConexiones fabrica) {
+        this.nombre = nombre;
+        this.minConexiones = minConexiones;
         this.maxConnections = maxConnections;
-        this.pool = new ArrayBlockingQueue<>(maxConnections);
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.fabrica = fabrica;
+        for (int i = 0; i < histogramaEspera.length; i++) histogramaEspera[i] = new LongAdder();
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kiosco-pool-" + nombre);
+            t.setDaemon(true);
+            return t;
+        });
+
         initializePool();
+        mantenimiento.scheduleWithFixedDelay(this::mantener,
+                INTERVALO_MANTENIMIENTO_MS, INTERVALO_MANTENIMIENTO_MS, TimeUnit.MILLISECONDS);
     }
-    
+
     public static synchronized ConnectionPool getInstance() {
         if (instance == null) {
-            instance = new ConnectionPool(15); // Aumentado a 15 conexiones máximo
+            // Aumentado a 15 conexiones máximo
+            instance = new ConnectionPool("mysql", 2, 15, 5000, ConexionDB::conectarDirecto);
         }
         return instance;
     }
-    
+
     private void initializePool() {
-        try {
-            for (int i = 0; i < 5; i++) { // Crear 5 conexiones iniciales (más que antes)
-                Connection conn = createNewConnection();
-                if (conn != null) {
-                    pool.offer(conn);
-                    activeConnections++;
-                }
-            }
-            Logger.info("Pool de conexiones inicializado con " + activeConnections + " conexiones");
-        } catch (Exception e) {
-            Logger.error("Error al inicializar pool de conexiones", e);
+        for (int i = 0; i < minConexiones; i++) {
+            Connection conn = crearReservada();
+            if (conn == null) break;
+            libres.offerLast(new Inactiva(conn));
         }
+        Logger.info("Pool de conexiones '" + nombre + "' inicializado con " + totalConexiones.get() + " conexiones");
     }
-    
-    private Connection createNewConnection() {
+
+    /**
+     * Reserva un lugar en el contador (CAS) y abre la conexión física
+     * @return La conexión, o null si el pool está lleno o falló la creación
+     */
+    private Connection crearReservada() {
+        int actual;
+        do {
+            actual = totalConexiones.get();
+            if (actual >= maxConnections) return null;
+        } while (!totalConexiones.compareAndSet(actual, actual + 1));
+
         try {
-            return ConexionDB.conectarDirecto(); // Método directo sin pool
+            Connection conn = fabrica.crear(); // Método directo sin pool
+            conexionesCreadas.increment();
+            Logger.debug("Nueva conexión creada. Total: " + totalConexiones.get());
+            return conn;
         } catch (SQLException e) {
+            totalConexiones.decrementAndGet();
             Logger.error("Error al crear nueva conexión", e);
             return null;
         }
     }
-    
+
     /**
      * Obtiene una conexión del pool
      */
     public Connection getConnection() throws SQLException {
-        try {
-            // Intentar obtener conexión del pool (timeout 5 segundos)
-            Connection conn = pool.poll(5, TimeUnit.SECONDS);
-            
-            if (conn == null || conn.isClosed()) {
-                // Si no hay conexiones disponibles o está cerrada, crear nueva
-                if (activeConnections < maxConnections) {
-                    conn = createNewConnection();
-                    if (conn != null) {
-                        activeConnections++;
-                        Logger.debug("Nueva conexión creada. Total activas: " + activeConnections);
-                    }
-                } else {
-                    throw new SQLException("Pool de conexiones agotado. Máximo: " + maxConnections);
+        if (cerrado) throw new SQLException("El pool de conexiones está cerrado");
+
+        long inicio = System.nanoTime();
+        Connection conn = tomarLibre();
+
+        if (conn == null && enValidacion.get() > 0) {
+            // El keep-alive tiene una libre en la mano: vuelve en milisegundos, no es motivo para crecer
+            conn = esperarValidadas();
+        }
+
+        if (conn == null) {
+            // Sin conexiones libres: crecer inmediatamente si hay lugar
+            conn = crearReservada();
+        }
+
+        if (conn == null) {
+            // Pool lleno: esperar a que alguien devuelva una
+            try {
+                long restanteNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs) - (System.nanoTime() - inicio);
+                while (conn == null && restanteNanos > 0) {
+                    // Esperas cortas: si otra conexión se descarta mientras tanto, se libera lugar para crear
+                    long tramo = Math.min(restanteNanos, TimeUnit.MILLISECONDS.toNanos(100));
+                    Inactiva inactiva = libres.pollFirst(tramo, TimeUnit.NANOSECONDS);
+                    conn = inactiva != null ? validarTomada(inactiva) : crearReservada();
+                    restanteNanos = TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs) - (System.nanoTime() - inicio);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrumpido mientras esperaba conexión", e);
             }
-            
-            if (conn == null) {
-                throw new SQLException("No se pudo obtener conexión del pool");
+        }
+
+        if (conn == null) {
+            esperasAgotadas.increment();
+            throw new SQLException("Pool de conexiones agotado. Máximo: " + maxConnections);
+        }
+
+        registrarEspera(System.nanoTime() - inicio);
+        prestamosTotales.increment();
+        boolean conStack = RASTREAR_FUGAS
+                && (MUESTREO_FUGAS == 1 || java.util.concurrent.ThreadLocalRandom.current().nextInt(MUESTREO_FUGAS) == 0);
+        prestamos.put(conn, new Prestamo(conStack ? new Throwable("Préstamo de conexión") : null));
+
+        return new PooledConnection(conn, this, obtenerCacheSentencias(conn));
+    }
+
+    /**
+     * Toma una conexión libre sin esperar (descarta las que el driver ya marcó cerradas)
+     */
+    private Connection tomarLibre() {
+        Inactiva inactiva;
+        while ((inactiva = libres.pollFirst()) != null) {
+            Connection conn = validarTomada(inactiva);
+            if (conn != null) return conn;
+        }
+        return null;
+    }
+
+    /**
+     * Espera a que el keep-alive devuelva las conexiones que está validando
+     * (a lo sumo lo que tarda isValid, 2 s)
+     * @return Una conexión libre, o null si las validadas se descartaron o se las llevó otro
+     */
+    private Connection esperarValidadas() throws SQLException {
+        try {
+            while (enValidacion.get() > 0) {
+                Inactiva inactiva = libres.pollFirst(10, TimeUnit.MILLISECONDS);
+                Connection conn = inactiva != null ? validarTomada(inactiva) : null;
+                if (conn != null) return conn;
             }
-            
-            return new PooledConnection(conn, this);
-            
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new SQLException("Interrumpido mientras esperaba conexión", e);
         }
+        return tomarLibre();
+    }
+
+    /**
+     * isClosed() es local (no va a la red); la validación real la hace el keep-alive
+     */
+    private Connection validarTomada(Inactiva inactiva) {
+        try {
+            if (!inactiva.conexion.isClosed()) return inactiva.conexion;
+        } catch (SQLException e) {
+            // Se descarta abajo
+        }
+        descartar(inactiva.conexion);
+        return null;
+    }
+
+    private CacheSentencias obtenerCacheSentencias(Connection conn) {
+        return cachesSentencias.computeIfAbsent(conn, c -> new CacheSentencias(c, CacheSentencias.CAPACIDAD_POR_DEFECTO));
+    }
+
+    /**
+     * Cierra la conexión física junto con sus sentencias cacheadas y libera su lugar
+     */
+    private void descartar(Connection conn) {
+        CacheSentencias cache = cachesSentencias.remove(conn);
+        if (cache != null) cache.cerrar();
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Ignorar errores al cerrar conexión inválida
+        }
+        totalConexiones.decrementAndGet();
+        conexionesDescartadas.increment();
+        Logger.debug("Conexión cerrada. Total: " + totalConexiones.get());
     }
-    
+
     /**
-     * Devuelve una conexión al pool
+     * Devuelve una conexión al pool (sin round-trips a la BD)
      */
     public void returnConnection(Connection conn) {
-        if (conn != null) {
-            try {
-                if (!conn.isClosed() && conn.isValid(1)) {
-                    // Resetear estado de la conexión
-                    conn.setAutoCommit(true);
-                    
-                    if (!pool.offer(conn)) {
-                        // Pool lleno, cerrar conexión
-                        conn.close();
-                        activeConnections--;
-                        Logger.debug("Conexión cerrada (pool lleno). Total activas: " + activeConnections);
-                    }
-                } else {
-                    // Conexión inválida, cerrar y decrementar contador
-                    try {
-                        conn.close();
-                    } catch (SQLException e) {
-                        // Ignorar errores al cerrar conexión inválida
-                    }
-                    activeConnections--;
-                    Logger.debug("Conexión inválida cerrada. Total activas: " + activeConnections);
-                }
-            } catch (SQLException e) {
-                Logger.error("Error al devolver conexión al pool", e);
-                try {
-                    conn.close();
-                } catch (SQLException ex) {
-                    // Ignorar
+        if (conn == null) return;
+        prestamos.remove(conn);
+
+        try {
+            if (cerrado || conn.isClosed()) {
+                descartar(conn);
+                return;
+            }
+            // getAutoCommit() es local: solo se va al servidor si quedó en modo transacción
+            if (!conn.getAutoCommit()) {
+                conn.setAutoCommit(true);
+            }
+            libres.offerFirst(new Inactiva(conn));
+        } catch (SQLException e) {
+            Logger.error("Error al devolver conexión al pool", e);
+            descartar(conn);
+        }
+    }
+
+    /**
+     * Tarea periódica: keep-alive, cierre de ociosas, mínimo de conexiones y detección de fugas
+     */
+    private void mantener() {
+        try {
+            long ahora = System.currentTimeMillis();
+
+            // Solo se sacan de libres las que se cierran o se validan; el resto no se mueve
+            for (Inactiva inactiva : new ArrayList<>(libres)) {
+                long ociosaMs = ahora - inactiva.desde;
+
+                if (ociosaMs > INACTIVIDAD_MAXIMA_MS && totalConexiones.get() > minConexiones) {
+                    if (libres.remove(inactiva)) descartar(inactiva.conexion); // Si no, alguien la tomó
+                } else if (ociosaMs > KEEPALIVE_MS) {
+                    validarOciosa(inactiva);
                 }
-                activeConnections--;
+            }
+
+            while (!cerrado && totalConexiones.get() < minConexiones) {
+                Connection conn = crearReservada();
+                if (conn == null) break;
+                libres.offerLast(new Inactiva(conn));
+            }
+
+            detectarFugas(ahora);
+        } catch (Exception e) {
+            Logger.error("Error en mantenimiento del pool de conexiones", e);
+        }
+    }
+
+    /**
+     * Keep-alive de una libre: getConnection cuenta las que están en validación y las espera
+     */
+    private void validarOciosa(Inactiva inactiva) {
+        enValidacion.incrementAndGet();
+        try {
+            if (!libres.remove(inactiva)) return; // Alguien la tomó mientras tanto
+            if (esValida(inactiva.conexion)) {
+                libres.offerLast(inactiva); // Conserva su marca de tiempo original
+            } else {
+                descartar(inactiva.conexion);
+            }
+        } finally {
+            enValidacion.decrementAndGet(); // Después de devolverla: quien espera ya la encuentra
+        }
+    }
+
+    private boolean esValida(Connection conn) {
+        try {
+            return conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void detectarFugas(long ahora) {
+        for (Prestamo prestamo : prestamos.values()) {
+            if (!prestamo.reportado && ahora - prestamo.desde > UMBRAL_FUGA_MS) {
+                prestamo.reportado = true;
+                fugasDetectadas.increment();
+                Logger.warn("Posible fuga de conexión: prestada hace " + (ahora - prestamo.desde) / 1000
+                        + "s al hilo " + prestamo.hilo + (prestamo.origen == null ? "" : " en " + resumirStack(prestamo.origen)));
             }
         }
     }
-    
+
+    private static String resumirStack(Throwable origen) {
+        StringBuilder sb = new StringBuilder();
+        for (StackTraceElement e : origen.getStackTrace()) {
+            String clase = e.getClassName();
+            if (clase.startsWith("modelo.ConnectionPool") || clase.startsWith("modelo.ConexionDB")) continue;
+            if (sb.length() > 0) sb.append(" <- ");
+            sb.append(clase).append('.').append(e.getMethodName()).append(':').append(e.getLineNumber());
+            if (sb.length() > 400) break;
+        }
+        return sb.toString();
+    }
+
+    private void registrarEspera(long nanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int balde = 0;
+        while (balde < LIMITES_HISTOGRAMA_MS.length && ms >= LIMITES_HISTOGRAMA_MS[balde]) balde++;
+        histogramaEspera[balde].increment();
+        esperaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
     /**
      * Cierra todas las conexiones del pool
      */
     public void closeAll() {
-        Logger.info("Cerrando pool de conexiones...");
-        
-        Connection conn;
-        while ((conn = pool.poll()) != null) {
-            try {
-                conn.close();
-                activeConnections--;
-            } catch (SQLException e) {
-                Logger.error("Error al cerrar conexión del pool", e);
-            }
+        Logger.info("Cerrando pool de conexiones '" + nombre + "'...");
+        cerrado = true;
+        mantenimiento.shutdownNow();
+
+        int cerradas = 0;
+        Inactiva inactiva;
+        while ((inactiva = libres.pollFirst()) != null) {
+            descartar(inactiva.conexion);
+            cerradas++;
         }
-        
-        Logger.info("Pool de conexiones cerrado. Conexiones cerradas: " + activeConnections);
-        activeConnections = 0;
+
+        // Las prestadas se cierran al devolverse (returnConnection ve el pool cerrado)
+        Logger.info("Pool de conexiones cerrado. Conexiones cerradas: " + cerradas + ", aún prestadas: " + prestamos.size());
     }
-    
+
     /**
      * Obtiene estadísticas del pool
      */
     public String getStats() {
-        return String.format("Pool Stats - Activas: %d/%d, Disponibles: %d", 
-                activeConnections, maxConnections, pool.size());
+        EstadisticasPool e = obtenerEstadisticas();
+        return String.format("Pool Stats [" + nombre + "] - Activas: %d/%d, Disponibles: %d, Prestadas: %d, Préstamos: %d, "
+                + "Espera máx: %dms, Agotadas: %d, Fugas: %d, Sentencias cacheadas: %d aciertos / %d fallos",
+                e.totalConexiones, e.maxConexiones, e.disponibles, e.prestadas, e.prestamosTotales,
+                e.esperaMaximaMs, e.esperasAgotadas, e.fugasDetectadas,
+                CacheSentencias.getAciertosTotales(), CacheSentencias.getFallosTotales());
+    }
+
+    /**
+     * Foto inmutable de las métricas del pool
+     */
+    public EstadisticasPool obtenerEstadisticas() {
+        long[] histograma = new long[histogramaEspera.length];
+        for (int i = 0; i < histograma.length; i++) histograma[i] = histogramaEspera[i].sum();
+
+        List<String> prestamosLargos = new ArrayList<>();
+        long ahora = System.currentTimeMillis();
+        for (Prestamo p : prestamos.values()) {
+            if (ahora - p.desde > UMBRAL_FUGA_MS) {
+                prestamosLargos.add(p.hilo + " (" + (ahora - p.desde) / 1000 + "s)"
+                        + (p.origen == null ? "" : ": " + resumirStack(p.origen)));
+            }
+        }
+
+        return new EstadisticasPool(totalConexiones.get(), maxConnections, libres.size(), prestamos.size(),
+                prestamosTotales.sum(), conexionesCreadas.sum(), conexionesDescartadas.sum(),
+                esperasAgotadas.sum(), fugasDetectadas.sum(),
+                TimeUnit.NANOSECONDS.toMillis(esperaMaximaNanos.get()), histograma, prestamosLargos);
+    }
+
+    /**
+     * Conexión libre con el momento en que quedó ociosa
+     */
+    private static class Inactiva {
+        final Connection conexion;
+        final long desde = System.currentTimeMillis();
+
+        Inactiva(Connection conexion) {
+            this.conexion = conexion;
+        }
+    }
+
+    /**
+     * Datos de un préstamo en curso (para detectar fugas)
+     */
+    private static class Prestamo {
+        final long desde = System.currentTimeMillis();
+        final String hilo = Thread.currentThread().getName();
+        final Throwable origen;
+        volatile boolean reportado = false;
+
+        Prestamo(Throwable origen) {
+            this.origen = origen;
+        }
+    }
+
+    /**
+     * Métricas exportadas del pool
+     */
+    public static class EstadisticasPool {
+        public final int totalConexiones;
+        public final int maxConexiones;
+        public final int disponibles;
+        public final int prestadas;
+        public final long prestamosTotales;
+        public final long conexionesCreadas;
+        public final long conexionesDescartadas;
+        public final long esperasAgotadas;
+        public final long fugasDetectadas;
+        public final long esperaMaximaMs;
+        private final long[] histogramaEspera;
+        private final List<String> prestamosLargos;
+
+        EstadisticasPool(int totalConexiones, int maxConexiones, int disponibles, int prestadas,
+                         long prestamosTotales, long conexionesCreadas, long conexionesDescartadas,
+                         long esperasAgotadas, long fugasDetectadas, long esperaMaximaMs,
+                         long[] histogramaEspera, List<String> prestamosLargos) {
+            this.totalConexiones = totalConexiones;
+            this.maxConexiones = maxConexiones;
+            this.disponibles = disponibles;
+            this.prestadas = prestadas;
+            this.prestamosTotales = prestamosTotales;
+            this.conexionesCreadas = conexionesCreadas;
+            this.conexionesDescartadas = conexionesDescartadas;
+            this.esperasAgotadas = esperasAgotadas;
+            this.fugasDetectadas = fugasDetectadas;
+            this.esperaMaximaMs = esperaMaximaMs;
+            this.histogramaEspera = histogramaEspera;
+            this.prestamosLargos = List.copyOf(prestamosLargos);
+        }
+
+        /**
+         * @return Cantidad de préstamos por balde de espera: &lt;1ms, &lt;5, &lt;20, &lt;100, &lt;500, &lt;2000, resto
+         */
+        public long[] getHistogramaEspera() {
+            return histogramaEspera.clone();
+        }
+
+        public static long[] getLimitesHistogramaMs() {
+            return LIMITES_HISTOGRAMA_MS.clone();
+        }
+
+        /**
+         * @return Préstamos que superan el umbral de fuga, con hilo, antigüedad y stack del préstamo
+         */
+        public List<String> getPrestamosLargos() {
+            return prestamosLargos;
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,16 @@
 package modelo;
 
 import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * DAO para obtener estadísticas y métricas del negocio
@@ -10,102 +18,66 @@ import java.util.List;
  */
 public class EstadisticasDAO {
     
+    private static final String[] PERIODOS = { "Mañana", "Tarde", "Noche", "Madrugada" };
+    
+    /**
+     * Mañana (6-11), Tarde (12-17), Noche (18-23) y Madrugada (0-5)
+     */
+    private static int periodoDeHora(int hora) {
+        return hora >= 6 && hora <= 11 ? 0 : hora >= 12 && hora <= 17 ? 1 : hora >= 18 ? 2 : 3;
+    }
+    
     /**
      * NUEVA FUNCIONALIDAD: Cuenta las ventas realizadas en una fecha específica
      */
     public int contarVentasDelDia(String fecha) {
-        String sql = "SELECT COUNT(*) FROM ventas WHERE fecha = ?";
-        
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setString(1, fecha);
-            ResultSet rs = ps.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-            
-        } catch (SQLException e) {
-            Logger.error("Error contando ventas del día: " + fecha, e);
-        }
-        
-        return 0;
+        return (int) leerDia(fecha, "cantidad_ventas");
     }
     
     /**
      * NUEVA FUNCIONALIDAD: Obtiene el total de ventas de una fecha específica
      */
     public double totalVentasDelDia(String fecha) {
-        String sql = "SELECT COALESCE(SUM(total), 0) FROM ventas WHERE fecha = ?";
-        
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setString(1, fecha);
-            ResultSet rs = ps.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble(1);
-            }
-            
-        } catch (SQLException e) {
-            Logger.error("Error obteniendo total de ventas del día: " + fecha, e);
-        }
-        
-        return 0.0;
+        return leerDia(fecha, "total");
     }
     
     /**
      * NUEVA FUNCIONALIDAD: Cuenta productos vendidos en una fecha específica
      */
     public int productosVendidosDelDia(String fecha) {
-        String sql = "SELECT COALESCE(SUM(dv.cantidad), 0) " +
-                    "FROM detalle_ventas dv " +
-                    "INNER JOIN ventas v ON dv.id_venta = v.id " +
-                    "WHERE v.fecha = ?";
-        
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            
-            ps.setString(1, fecha);
-            ResultSet rs = ps.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getInt(1);
-            }
-            
-        } catch (SQLException e) {
-            Logger.error("Error contando productos vendidos del día: " + fecha, e);
-        }
-        
-        return 0;
+        return (int) leerDia(fecha, "items");
     }
     
     /**
      * NUEVA FUNCIONALIDAD: Obtiene los productos más vendidos del día
      */
     public List<ProductoVendido> obtenerTopProductosDelDia(String fecha, int limite) {
+        try {
+            if (claveDia(fecha) == ResumenVentas.clave(LocalDate.now())) {
+                return TopProductos.getInstance().topDelDia(limite); // Hoy: en memoria
+            }
+        } catch (SQLException e) {
+            Logger.error("Error obteniendo top productos del día: " + fecha, e);
+            return new ArrayList<>();
+        }
+        
         List<ProductoVendido> topProductos = new ArrayList<>();
         
-        String sql = "SELECT dv.nombre_producto, SUM(dv.cantidad) as total_vendido " +
-                    "FROM detalle_ventas dv " +
-                    "INNER JOIN ventas v ON dv.id_venta = v.id " +
-                    "WHERE v.fecha = ? " +
-                    "GROUP BY dv.nombre_producto " +
-                    "ORDER BY total_vendido DESC " +
+        String sql = "SELECT nombre_producto, cantidad FROM producto_dia " +
+                    "WHERE dia = ? AND cantidad > 0 " +
+                    "ORDER BY cantidad DESC " +
                     "LIMIT ?";
         
-        try (Connection conn = ConexionDB.conectar();
+        try (Connection conn = ConexionDB.conectarLectura();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             
-            ps.setString(1, fecha);
+            ps.setInt(1, claveDia(fecha));
             ps.setInt(2, limite);
             ResultSet rs = ps.executeQuery();
             
             while (rs.next()) {
                 String nombre = rs.getString("nombre_producto");
-                int cantidadVendida = rs.getInt("total_vendido");
+                int cantidadVendida = rs.getInt("cantidad");
                 topProductos.add(new ProductoVendido(nombre, cantidadVendida));
             }
             
@@ -118,47 +90,37 @@ public class EstadisticasDAO {
     
     /**
      * NUEVA FUNCIONALIDAD: Obtiene estadísticas de ventas por hora del día actual
+     * Agrupa en Mañana (6-11), Tarde (12-17), Noche (18-23) y Madrugada (0-5)
      */
     public List<VentaPorHora> obtenerVentasPorHora(String fecha) {
-        List<VentaPorHora> ventasPorHora = new ArrayList<>();
+        int[] cantidades = new int[PERIODOS.length];
+        double[] totales = new double[PERIODOS.length];
+        boolean[] conVentas = new boolean[PERIODOS.length];
         
-        String sql = "SELECT " +
-                    "CASE " +
-                    "  WHEN CAST(SUBSTR(hora, 1, 2) AS INTEGER) BETWEEN 6 AND 11 THEN 'Mañana' " +
-                    "  WHEN CAST(SUBSTR(hora, 1, 2) AS INTEGER) BETWEEN 12 AND 17 THEN 'Tarde' " +
-                    "  WHEN CAST(SUBSTR(hora, 1, 2) AS INTEGER) BETWEEN 18 AND 23 THEN 'Noche' " +
-                    "  ELSE 'Madrugada' " +
-                    "END as periodo, " +
-                    "COUNT(*) as cantidad_ventas, " +
-                    "SUM(total) as total_periodo " +
-                    "FROM ventas " +
-                    "WHERE fecha = ? " +
-                    "GROUP BY periodo " +
-                    "ORDER BY " +
-                    "CASE periodo " +
-                    "  WHEN 'Mañana' THEN 1 " +
-                    "  WHEN 'Tarde' THEN 2 " +
-                    "  WHEN 'Noche' THEN 3 " +
-                    "  ELSE 4 " +
-                    "END";
-        
-        try (Connection conn = ConexionDB.conectar();
+        String sql = "SELECT hora, cantidad_ventas, total FROM ventas_hora WHERE dia = ?";
+        
+        try (Connection conn = ConexionDB.conectarLectura();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             
-            ps.setString(1, fecha);
+            ps.setInt(1, claveDia(fecha));
             ResultSet rs = ps.executeQuery();
             
             while (rs.next()) {
-                String periodo = rs.getString("periodo");
-                int cantidadVentas = rs.getInt("cantidad_ventas");
-                double totalPeriodo = rs.getDouble("total_periodo");
-                ventasPorHora.add(new VentaPorHora(periodo, cantidadVentas, totalPeriodo));
+                int hora = rs.getInt("hora");
+                int i = periodoDeHora(hora);
+                cantidades[i] += rs.getInt("cantidad_ventas");
+                totales[i] += rs.getDouble("total");
+                conVentas[i] |= rs.getInt("cantidad_ventas") > 0;
             }
             
         } catch (SQLException e) {
             Logger.error("Error obteniendo ventas por hora: " + fecha, e);
         }
         
+        List<VentaPorHora> ventasPorHora = new ArrayList<>();
+        for (int i = 0; i < PERIODOS.length; i++) {
+            if (conVentas[i]) ventasPorHora.add(new VentaPorHora(PERIODOS[i], cantidades[i], totales[i]));
+        }
         return ventasPorHora;
     }
     
@@ -168,35 +130,25 @@ public class EstadisticasDAO {
     public EstadisticasSemana obtenerEstadisticasSemana() {
         EstadisticasSemana stats = new EstadisticasSemana();
         
-        // Obtener fechas de la semana (últimos 7 días)
-        String sql;
-        if (ConexionDB.tipoBase.equals("sqlite")) {
-            // SQLite
-            sql = "SELECT " +
-                  "COUNT(*) as total_ventas, " +
-                  "COALESCE(SUM(total), 0) as total_monto, " +
-                  "COALESCE(AVG(total), 0) as promedio_venta " +
-                  "FROM ventas " +
-                  "WHERE fecha >= date('now', '-7 days')";
-        } else {
-            // MySQL
-            sql = "SELECT " +
-                  "COUNT(*) as total_ventas, " +
-                  "COALESCE(SUM(total), 0) as total_monto, " +
-                  "COALESCE(AVG(total), 0) as promedio_venta " +
-                  "FROM ventas " +
-                  "WHERE fecha >= DATE_SUB(CURDATE(), INTERVAL 7 DAY)";
-        }
+        // Últimos 7 días, incluido hoy (a lo sumo 7 filas de ventas_dia)
+        String sql = "SELECT " +
+                     "COALESCE(SUM(cantidad_ventas), 0) as total_ventas, " +
+                     "COALESCE(SUM(total), 0) as total_monto " +
+                     "FROM ventas_dia " +
+                     "WHERE dia >= ? AND dia <= ?";
+        java.time.LocalDate hoy = java.time.LocalDate.now();
         
-        try (Connection conn = ConexionDB.conectar();
+        try (Connection conn = ConexionDB.conectarLectura();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             
+            ps.setInt(1, ResumenVentas.clave(hoy.minusDays(6)));
+            ps.setInt(2, ResumenVentas.clave(hoy));
             ResultSet rs = ps.executeQuery();
             
             if (rs.next()) {
                 stats.totalVentas = rs.getInt("total_ventas");
                 stats.totalMonto = rs.getDouble("total_monto");
-                stats.promedioVenta = rs.getDouble("promedio_venta");
+                stats.promedioVenta = stats.totalVentas > 0 ? stats.totalMonto / stats.totalVentas : 0;
             }
             
         } catch (SQLException e) {
@@ -208,45 +160,135 @@ public class EstadisticasDAO {
     
     /**
      * NUEVA FUNCIONALIDAD: Obtiene el producto más vendido del mes
+     * Sale de TopProductos, que se mantiene en memoria con cada venta
      */
     public ProductoVendido obtenerProductoMasVendidoDelMes() {
-        String sql;
-        if (ConexionDB.tipoBase.equals("sqlite")) {
-            // SQLite
-            sql = "SELECT dv.nombre_producto, SUM(dv.cantidad) as total_vendido " +
-                  "FROM detalle_ventas dv " +
-                  "INNER JOIN ventas v ON dv.id_venta = v.id " +
-                  "WHERE v.fecha >= date('now', 'start of month') " +
-                  "GROUP BY dv.nombre_producto " +
-                  "ORDER BY total_vendido DESC " +
-                  "LIMIT 1";
-        } else {
-            // MySQL
-            sql = "SELECT dv.nombre_producto, SUM(dv.cantidad) as total_vendido " +
-                  "FROM detalle_ventas dv " +
-                  "INNER JOIN ventas v ON dv.id_venta = v.id " +
-                  "WHERE v.fecha >= DATE_FORMAT(CURDATE(), '%Y-%m-01') " +
-                  "GROUP BY dv.nombre_producto " +
-                  "ORDER BY total_vendido DESC " +
-                  "LIMIT 1";
+        List<ProductoVendido> top = TopProductos.getInstance().topDelMes(1);
+        return top.isEmpty() ? new ProductoVendido("Sin datos", 0) : top.get(0);
+    }
+    
+    /**
+     * Serie de ventas de un rango de fechas (ambas inclusive) con una sola consulta
+     * HORA lee ventas_hora; DIA, SEMANA y MES leen ventas_dia y se agrupan en memoria
+     * (semanas de lunes a domingo). Los períodos sin ventas no aparecen
+     */
+    public List<PuntoSerie> obtenerSerie(LocalDate desde, LocalDate hasta, Granularidad granularidad) {
+        String sql = granularidad == Granularidad.HORA
+                ? "SELECT dia, hora, cantidad_ventas, total, items FROM ventas_hora WHERE dia >= ? AND dia <= ? ORDER BY dia, hora"
+                : "SELECT dia, 0, cantidad_ventas, total, items FROM ventas_dia WHERE dia >= ? AND dia <= ? ORDER BY dia";
+        
+        Map<LocalDateTime, PuntoSerie> puntos = new LinkedHashMap<>();
+        try (Connection conn = ConexionDB.conectarLectura();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            
+            ps.setInt(1, ResumenVentas.clave(desde));
+            ps.setInt(2, ResumenVentas.clave(hasta));
+            ResultSet rs = ps.executeQuery();
+            
+            while (rs.next()) {
+                LocalDateTime inicio = granularidad.inicio(desdeClave(rs.getInt(1)), rs.getInt(2));
+                PuntoSerie previo = puntos.get(inicio);
+                PuntoSerie fila = new PuntoSerie(inicio, rs.getInt(3), rs.getDouble(4), rs.getInt(5));
+                puntos.put(inicio, previo == null ? fila : previo.sumar(fila));
+            }
+            
+        } catch (SQLException e) {
+            Logger.error("Error obteniendo serie de ventas " + desde + " a " + hasta, e);
         }
         
-        try (Connection conn = ConexionDB.conectar();
+        return new ArrayList<>(puntos.values());
+    }
+    
+    /**
+     * Todo el tablero de estadísticas en un solo viaje a la base
+     * Una consulta UNION ALL trae los días de la última semana, las horas de hoy y
+     * el conteo de stock bajo; los más vendidos salen de TopProductos, sin consultar
+     * @throws SQLException Si la consulta falla (un tablero en cero no es un dato válido)
+     */
+    public Tablero obtenerTablero(LocalDate hoy, int limiteTop, int umbralStockBajo) throws SQLException {
+        LocalDate desde = hoy.minusDays(6);
+        int claveHoy = ResumenVentas.clave(hoy);
+        boolean contarStock = !(ConexionDB.tipoBase.equals("sqlite") && ConexionDB.licencia.equals("LITE"));
+        
+        String sql =
+            "SELECT 'D' AS tipo, dia AS clave, NULL AS nombre, cantidad_ventas AS cantidad, total, items " +
+            "FROM ventas_dia WHERE dia >= ? AND dia <= ? " +
+            "UNION ALL SELECT 'H', hora, NULL, cantidad_ventas, total, items FROM ventas_hora WHERE dia = ?" +
+            (contarStock ? " UNION ALL SELECT 'S', COUNT(*), NULL, 0, 0, 0 FROM productos WHERE stock <= ?" : "");
+        
+        Tablero.Constructor t = new Tablero.Constructor(hoy);
+        try (Connection conn = ConexionDB.conectarLectura();
              PreparedStatement ps = conn.prepareStatement(sql)) {
             
+            ps.setInt(1, ResumenVentas.clave(desde));
+            ps.setInt(2, claveHoy);
+            ps.setInt(3, claveHoy);
+            if (contarStock) ps.setInt(4, umbralStockBajo);
+            
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String tipo = rs.getString(1);
+                    int clave = rs.getInt(2);
+                    int cantidad = rs.getInt(4);
+                    double total = rs.getDouble(5);
+                    int items = rs.getInt(6);
+                    switch (tipo) {
+                        case "D" -> t.dia(desdeClave(clave), cantidad, total, items);
+                        case "H" -> t.hora(clave, cantidad, total);
+                        case "S" -> t.stockBajo(clave);
+                        default -> { }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Logger.error("Error obteniendo tablero de estadísticas", e);
+            throw e;
+        }
+        
+        TopProductos top = TopProductos.getInstance();
+        for (ProductoVendido p : top.topDelDia(limiteTop)) t.topDia(p);
+        List<ProductoVendido> delMes = top.topDelMes(1);
+        if (!delMes.isEmpty()) t.productoMes(delMes.get(0));
+        return t.construir();
+    }
+    
+    private static LocalDate desdeClave(int clave) {
+        return LocalDate.of(clave / 10000, (clave / 100) % 100, clave % 100);
+    }
+    
+    /**
+     * Lee una columna de la fila de ventas_dia del día indicado (0 si no hubo ventas)
+     */
+    private double leerDia(String fecha, String columna) {
+        String sql = "SELECT " + columna + " FROM ventas_dia WHERE dia = ?";
+        
+        try (Connection conn = ConexionDB.conectarLectura();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            
+            ps.setInt(1, claveDia(fecha));
             ResultSet rs = ps.executeQuery();
             
             if (rs.next()) {
-                String nombre = rs.getString("nombre_producto");
-                int cantidadVendida = rs.getInt("total_vendido");
-                return new ProductoVendido(nombre, cantidadVendida);
+                return rs.getDouble(1);
             }
             
         } catch (SQLException e) {
-            Logger.error("Error obteniendo producto más vendido del mes", e);
+            Logger.error("Error leyendo " + columna + " de ventas del día: " + fecha, e);
         }
         
-        return new ProductoVendido("Sin datos", 0);
+        return 0;
+    }
+    
+    /**
+     * Clave de día de los resúmenes
+     * @param fecha ISO (yyyy-MM-dd) o dd/MM/yyyy
+     */
+    private static int claveDia(String fecha) throws SQLException {
+        try {
+            return ResumenVentas.clave(MarcaTiempo.parsearFecha(fecha));
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new SQLException("Fecha inválida: " + fecha, e);
+        }
     }
     
     /**
@@ -285,15 +327,17 @@ public class EstadisticasDAO {
     public List<String[]> obtenerVentasSemana() {
         List<String[]> resultado = new ArrayList<>();
         
-        // Obtener ventas de los últimos 7 días
+        // Últimos 7 días en una sola consulta; los días sin ventas van en cero
+        LocalDate hoy = LocalDate.now();
+        Map<LocalDate, Double> totales = new HashMap<>();
+        for (PuntoSerie p : obtenerSerie(hoy.minusDays(6), hoy, Granularidad.DIA)) {
+            totales.put(p.getInicio().toLocalDate(), p.getTotal());
+        }
         for (int i = 6; i >= 0; i--) {
-            java.time.LocalDate fecha = java.time.LocalDate.now().minusDays(i);
-            String fechaStr = fecha.toString();
-            double total = totalVentasDelDia(fechaStr);
-            
+            LocalDate fecha = hoy.minusDays(i);
             resultado.add(new String[]{
                 fecha.getDayOfWeek().toString().substring(0, 3), // Día de la semana
-                String.format("%.2f", total)
+                String.format("%.2f", totales.getOrDefault(fecha, 0.0))
             });
         }
         
@@ -302,6 +346,138 @@ public class EstadisticasDAO {
     
     // Clases auxiliares para encapsular datos
     
+    /**
+     * Agrupación de obtenerSerie
+     */
+    public enum Granularidad {
+        HORA, DIA, SEMANA, MES;
+        
+        LocalDateTime inicio(LocalDate dia, int hora) {
+            return switch (this) {
+                case HORA -> dia.atTime(hora, 0);
+                case DIA -> dia.atStartOfDay();
+                case SEMANA -> dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).atStartOfDay();
+                case MES -> dia.withDayOfMonth(1).atStartOfDay();
+            };
+        }
+    }
+    
+    /**
+     * Un período de una serie: cantidad de ventas, monto, promedio por venta e ítems
+     */
+    public static final class PuntoSerie {
+        private final LocalDateTime inicio;
+        private final int cantidadVentas;
+        private final double total;
+        private final int items;
+        
+        public PuntoSerie(LocalDateTime inicio, int cantidadVentas, double total, int items) {
+            this.inicio = inicio;
+            this.cantidadVentas = cantidadVentas;
+            this.total = total;
+            this.items = items;
+        }
+        
+        PuntoSerie sumar(PuntoSerie otro) {
+            return new PuntoSerie(inicio, cantidadVentas + otro.cantidadVentas, total + otro.total, items + otro.items);
+        }
+        
+        public LocalDateTime getInicio() { return inicio; }
+        public int getCantidadVentas() { return cantidadVentas; }
+        public double getTotal() { return total; }
+        public double getPromedio() { return cantidadVentas > 0 ? total / cantidadVentas : 0; }
+        public int getItems() { return items; }
+    }
+    
+    /**
+     * Foto inmutable de todos los datos del panel de estadísticas
+     */
+    public static final class Tablero {
+        private final LocalDate fecha;
+        private final double ventasHoy;
+        private final double ventasAyer;
+        private final int itemsHoy;
+        private final ProductoVendido productoMes;
+        private final EstadisticasSemana semana;
+        private final int stockBajo;
+        private final List<ProductoVendido> topDia;
+        private final List<PuntoSerie> ultimosSieteDias;
+        private final List<VentaPorHora> periodos;
+        
+        private Tablero(Constructor c) {
+            this.fecha = c.hoy;
+            PuntoSerie hoy = c.dias.get(c.hoy);
+            PuntoSerie ayer = c.dias.get(c.hoy.minusDays(1));
+            this.ventasHoy = hoy == null ? 0 : hoy.getTotal();
+            this.ventasAyer = ayer == null ? 0 : ayer.getTotal();
+            this.itemsHoy = hoy == null ? 0 : hoy.getItems();
+            this.productoMes = c.productoMes;
+            this.stockBajo = c.stockBajo;
+            this.topDia = Collections.unmodifiableList(new ArrayList<>(c.topDia));
+            
+            List<PuntoSerie> dias = new ArrayList<>();
+            EstadisticasSemana s = new EstadisticasSemana();
+            for (int i = 6; i >= 0; i--) {
+                LocalDate d = c.hoy.minusDays(i);
+                PuntoSerie p = c.dias.getOrDefault(d, new PuntoSerie(d.atStartOfDay(), 0, 0, 0));
+                dias.add(p);
+                s.totalVentas += p.getCantidadVentas();
+                s.totalMonto += p.getTotal();
+            }
+            s.promedioVenta = s.totalVentas > 0 ? s.totalMonto / s.totalVentas : 0;
+            this.semana = s;
+            this.ultimosSieteDias = Collections.unmodifiableList(dias);
+            
+            List<VentaPorHora> lista = new ArrayList<>();
+            for (int i = 0; i < PERIODOS.length; i++) {
+                if (c.ventasPeriodo[i] > 0) lista.add(new VentaPorHora(PERIODOS[i], c.ventasPeriodo[i], c.totalPeriodo[i]));
+            }
+            this.periodos = Collections.unmodifiableList(lista);
+        }
+        
+        public LocalDate getFecha() { return fecha; }
+        public double getVentasHoy() { return ventasHoy; }
+        public double getVentasAyer() { return ventasAyer; }
+        public int getItemsHoy() { return itemsHoy; }
+        public ProductoVendido getProductoMes() { return productoMes; }
+        public double getPromedioSemana() { return semana.promedioVenta; }
+        public int getVentasSemana() { return semana.totalVentas; }
+        public double getMontoSemana() { return semana.totalMonto; }
+        public int getStockBajo() { return stockBajo; }
+        public List<ProductoVendido> getTopDia() { return topDia; }
+        public List<PuntoSerie> getUltimosSieteDias() { return ultimosSieteDias; }
+        public List<VentaPorHora> getPeriodos() { return periodos; }
+        
+        /**
+         * Acumula las filas de obtenerTablero antes de congelarlas
+         */
+        static final class Constructor {
+            private final LocalDate hoy;
+            private final Map<LocalDate, PuntoSerie> dias = new HashMap<>();
+            private final int[] ventasPeriodo = new int[PERIODOS.length];
+            private final double[] totalPeriodo = new double[PERIODOS.length];
+            private final List<ProductoVendido> topDia = new ArrayList<>();
+            private ProductoVendido productoMes = new ProductoVendido("Sin datos", 0);
+            private int stockBajo = 0;
+            
+            Constructor(LocalDate hoy) { this.hoy = hoy; }
+            
+            void dia(LocalDate d, int cantidad, double total, int items) {
+                dias.put(d, new PuntoSerie(d.atStartOfDay(), cantidad, total, items));
+            }
+            void hora(int hora, int cantidad, double total) {
+                int i = periodoDeHora(hora);
+                ventasPeriodo[i] += cantidad;
+                totalPeriodo[i] += total;
+            }
+            void topDia(ProductoVendido p) { topDia.add(p); }
+            void productoMes(ProductoVendido p) { productoMes = p; }
+            void stockBajo(int cantidad) { stockBajo = cantidad; }
+            
+            Tablero construir() { return new Tablero(this); }
+        }
+    }
+    
     /**
      * Representa un producto vendido con su cantidad
      */
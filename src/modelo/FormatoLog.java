@@ -0,0 +1,118 @@
+package modelo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Arma las líneas del log sobre un buffer reutilizable, sin String.format
+ * La fecha y hora se formatea una vez por segundo; los números se agregan
+ * directo al buffer. Lo usa solo el hilo escritor del Logger (no es thread-safe)
+ */
+final class FormatoLog {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int CAPACIDAD_INICIAL = 256;
+    private static final int CAPACIDAD_MAXIMA = 64 * 1024; // Una línea enorme no deja el buffer inflado
+
+    // Mismo separador que usaba String.format("%.2f") con el locale del equipo
+    private static final char SEPARADOR_DECIMAL =
+            DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+
+    private final StringBuilder linea = new StringBuilder(CAPACIDAD_INICIAL);
+    private char[] copia = new char[CAPACIDAD_INICIAL];
+    private long segundoEnCache = Long.MIN_VALUE;
+    private String marcaEnCache = "";
+
+    FormatoLog reiniciar() {
+        if (linea.capacity() > CAPACIDAD_MAXIMA) {
+            linea.setLength(0);
+            linea.trimToSize();
+            linea.ensureCapacity(CAPACIDAD_INICIAL);
+        }
+        linea.setLength(0);
+        return this;
+    }
+
+    /**
+     * Fecha y hora (yyyy-MM-dd HH:mm:ss); solo se vuelve a formatear al cambiar el segundo
+     */
+    FormatoLog marcaTiempo(long epochMs) {
+        long segundo = Math.floorDiv(epochMs, 1000);
+        if (segundo != segundoEnCache) {
+            marcaEnCache = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault()).format(FORMATTER);
+            segundoEnCache = segundo;
+        }
+        linea.append(marcaEnCache);
+        return this;
+    }
+
+    FormatoLog texto(String s) {
+        linea.append(s); // null queda como "null", igual que %s
+        return this;
+    }
+
+    FormatoLog caracter(char c) {
+        linea.append(c);
+        return this;
+    }
+
+    FormatoLog entero(long n) {
+        linea.append(n);
+        return this;
+    }
+
+    /**
+     * Importe con dos decimales, igual que String.format("%.2f")
+     * (redondeo hacia arriba en el medio sobre la representación decimal más corta)
+     * Se redondea con long; BigDecimal solo cuando la fracción cae pegada al medio centavo
+     */
+    FormatoLog monto(double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Math.abs(v) >= 1e15) {
+            linea.append(String.format("%.2f", v)); // Fuera del rango de un long en centavos
+            return this;
+        }
+        double x = Math.abs(v) * 100;
+        double piso = Math.floor(x);
+        double fraccion = x - piso;
+        long centavos;
+        if (Math.abs(fraccion - 0.5) > Math.max(1e-9, 4 * Math.ulp(x))) {
+            centavos = (long) piso + (fraccion > 0.5 ? 1 : 0);
+        } else {
+            centavos = BigDecimal.valueOf(Math.abs(v)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        if (Double.compare(v, 0.0) < 0) linea.append('-');
+        linea.append(centavos / 100).append(SEPARADOR_DECIMAL);
+        int resto = (int) (centavos % 100);
+        if (resto < 10) linea.append('0');
+        linea.append(resto);
+        return this;
+    }
+
+    int largo() {
+        return linea.length();
+    }
+
+    /**
+     * Copia la línea al writer sin crear un String intermedio
+     */
+    void escribirEn(Writer writer) throws IOException {
+        int n = linea.length();
+        if (copia.length < n) copia = new char[Math.max(n, copia.length * 2)];
+        linea.getChars(0, n, copia, 0);
+        writer.write(copia, 0, n);
+    }
+
+    @Override
+    public String toString() {
+        return linea.toString();
+    }
+}
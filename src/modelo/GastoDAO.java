@@ -10,22 +10,32 @@ public class GastoDAO {
 
     // 1. REGISTRAR (Guardar en la BD)
     public boolean registrarGasto(int idCaja, String proveedor, String descripcion, double monto, double saldoRemanente) {
-        // Aseguramos que la columna exista antes de insertar (Parche de seguridad)
-        verificarColumnaSaldo();
-
-        String sql = "INSERT INTO gastos(id_caja, nombre_proveedor, descripcion, monto, saldo_remanente, fecha) VALUES(?,?,?,?,?,?)";
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, idCaja);
-            pstmt.setString(2, proveedor);
-            pstmt.setString(3, descripcion);
-            pstmt.setDouble(4, monto);
-            pstmt.setDouble(5, saldoRemanente); // Aquí guardamos el valor
-            pstmt.setString(6, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM HH:mm"))); 
-            return pstmt.executeUpdate() > 0;
+        // La columna saldo_remanente la garantiza MigradorEsquema (v1) al iniciar
+        String sql = "INSERT INTO gastos(id_caja, nombre_proveedor, descripcion, monto, saldo_remanente, fecha, ts) VALUES(?,?,?,?,?,?,?)";
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false); // El gasto y los totales de la caja van juntos
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, idCaja);
+                pstmt.setString(2, proveedor);
+                pstmt.setString(3, descripcion);
+                pstmt.setDouble(4, monto);
+                pstmt.setDouble(5, saldoRemanente); // Aquí guardamos el valor
+                LocalDateTime ahora = LocalDateTime.now();
+                pstmt.setString(6, ahora.format(DateTimeFormatter.ofPattern("dd/MM HH:mm"))); 
+                pstmt.setLong(7, MarcaTiempo.de(ahora));
+                pstmt.executeUpdate();
+            }
+            TotalesCaja.sumarGasto(conn, idCaja, monto);
+            conn.commit();
+            return true;
         } catch (Exception e) {
+            try { if (conn != null) conn.rollback(); } catch (SQLException ex) {}
             System.err.println("Error al registrar gasto: " + e.getMessage());
             return false;
+        } finally {
+            cerrar(conn);
         }
     }
 
@@ -73,36 +83,48 @@ public class GastoDAO {
     }
 
     public boolean eliminar(int id) {
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM gastos WHERE id = ?")) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
-        } catch (Exception e) { return false; }
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+            int idCaja;
+            double monto;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT id_caja, monto FROM gastos WHERE id = ?")) {
+                ps.setInt(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return false;
+                    idCaja = rs.getInt(1);
+                    monto = rs.getDouble(2);
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM gastos WHERE id = ?")) {
+                pstmt.setInt(1, id);
+                pstmt.executeUpdate();
+            }
+            TotalesCaja.sumarGasto(conn, idCaja, -monto); // El dinero vuelve a la caja
+            conn.commit();
+            return true;
+        } catch (Exception e) {
+            try { if (conn != null) conn.rollback(); } catch (SQLException ex) {}
+            return false;
+        } finally {
+            cerrar(conn);
+        }
     }
 
     public double obtenerTotalGastosCaja(int idCaja) {
-        String sql = "SELECT SUM(monto) FROM gastos WHERE id_caja = ?";
-        try (Connection conn = ConexionDB.conectar();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, idCaja);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) return rs.getDouble(1);
+        try (Connection conn = ConexionDB.conectar()) {
+            return TotalesCaja.leer(conn, idCaja)[TotalesCaja.GASTOS];
         } catch (Exception e) {}
         return 0.0;
     }
-    
-    // --- MÉTODO DE AYUDA: Crea la columna si no existe ---
-    // Esto soluciona si tu base de datos vieja no tenía la columna
-    private void verificarColumnaSaldo() {
-        try (Connection conn = ConexionDB.conectar();
-             Statement stmt = conn.createStatement()) {
-            try {
-                stmt.executeQuery("SELECT saldo_remanente FROM gastos LIMIT 1");
-            } catch (Exception e) {
-                // Si falla el select, es que no existe. La creamos.
-                stmt.executeUpdate("ALTER TABLE gastos ADD COLUMN saldo_remanente REAL DEFAULT 0");
-                System.out.println("Base de datos parcheada: Columna saldo_remanente creada.");
+
+    private void cerrar(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+                conn.close();
             }
-        } catch (Exception e) {}
+        } catch (SQLException e) {}
     }
 }
\ No newline at end of file
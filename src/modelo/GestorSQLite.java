@@ -0,0 +1,112 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Estrategia de conexiones para SQLite (LITE/PRO, una sola terminal)
+ * - Un único escritor de larga vida: SQLite admite un solo escritor a la vez, así que
+ *   las escrituras se serializan en una cola FIFO (lock justo) en lugar de chocar con SQLITE_BUSY
+ * - Un pool chico de lectores de solo lectura que en modo WAL leen sin bloquear al escritor
+ * Los PRAGMA se aplican una sola vez, al abrir cada conexión física
+ */
+public class GestorSQLite {
+
+    private static final long ESPERA_ESCRITOR_MS = 30_000; // Igual que el busy_timeout
+    private static final int MAX_LECTORES = 3;
+
+    private static GestorSQLite instance;
+
+    private final ReentrantLock candadoEscritor = new ReentrantLock(true); // Justo: orden de llegada
+    private final ConnectionPool lectores;
+    private Connection escritor;
+    private CacheSentencias cacheEscritor;
+
+    private GestorSQLite() {
+        this.lectores = new ConnectionPool("sqlite-lectura", 1, MAX_LECTORES, 5000, () -> ConexionDB.abrirSQLite(true));
+    }
+
+    public static synchronized GestorSQLite getInstance() {
+        if (instance == null) {
+            instance = new GestorSQLite();
+        }
+        return instance;
+    }
+
+    /**
+     * Presta la conexión de escritura; espera su turno si otro hilo la tiene
+     * Es reentrante: un DAO que pide otra conexión mientras tiene una recibe la misma
+     */
+    public Connection conectarEscritura() throws SQLException {
+        try {
+            if (!candadoEscritor.tryLock(ESPERA_ESCRITOR_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Tiempo de espera agotado esperando la conexión de escritura SQLite");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido mientras esperaba la conexión de escritura SQLite", e);
+        }
+
+        try {
+            if (escritor == null || escritor.isClosed()) {
+                if (cacheEscritor != null) cacheEscritor.cerrar();
+                escritor = ConexionDB.abrirSQLite(false);
+                cacheEscritor = new CacheSentencias(escritor, CacheSentencias.CAPACIDAD_POR_DEFECTO);
+                Logger.info("Conexión de escritura SQLite abierta");
+            }
+            return new PooledConnection(escritor, this::liberarEscritor, cacheEscritor);
+        } catch (SQLException e) {
+            candadoEscritor.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Presta una conexión de solo lectura (consultas de productos y estadísticas)
+     */
+    public Connection conectarLectura() throws SQLException {
+        return lectores.getConnection();
+    }
+
+    private void liberarEscritor(Connection conn) {
+        try {
+            // Solo al soltar el último préstamo: si era anidado la transacción sigue abierta
+            if (candadoEscritor.getHoldCount() == 1 && !conn.isClosed() && !conn.getAutoCommit()) {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al liberar la conexión de escritura SQLite", e);
+        } finally {
+            try {
+                candadoEscritor.unlock();
+            } catch (IllegalMonitorStateException e) {
+                Logger.error("La conexión de escritura SQLite se cerró desde un hilo que no la tenía", e);
+            }
+        }
+    }
+
+    public String getStats() {
+        return String.format("SQLite - Escritor: %s, en cola: %d | %s",
+                candadoEscritor.isLocked() ? "ocupado" : "libre",
+                candadoEscritor.getQueueLength(), lectores.getStats());
+    }
+
+    /**
+     * Cierra el escritor y los lectores (al salir del sistema)
+     */
+    public void cerrar() {
+        lectores.closeAll();
+        candadoEscritor.lock();
+        try {
+            if (cacheEscritor != null) cacheEscritor.cerrar();
+            if (escritor != null) escritor.close();
+            escritor = null;
+        } catch (SQLException e) {
+            Logger.error("Error cerrando la conexión de escritura SQLite", e);
+        } finally {
+            candadoEscritor.unlock();
+        }
+    }
+}
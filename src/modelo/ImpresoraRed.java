@@ -0,0 +1,77 @@
+package modelo;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Térmica de red por TCP crudo (puerto 9100, "JetDirect")
+ * Mantiene la conexión abierta entre tickets; la rehace tras una falla o si
+ * estuvo inactiva (muchas impresoras cierran las conexiones ociosas sin avisar)
+ */
+public class ImpresoraRed implements BackendImpresora {
+
+    public static final int PUERTO_POR_DEFECTO = 9100;
+
+    private static final int TIMEOUT_CONEXION_MS = 3000;
+    private static final int TIMEOUT_ESCRITURA_MS = 10_000;
+    private static final long MAX_INACTIVA_MS = 30_000;
+
+    private final String host;
+    private final int puerto;
+    private Socket socket;
+    private OutputStream salida;
+    private long ultimoUso = 0;
+
+    public ImpresoraRed(String host, int puerto) {
+        this.host = host;
+        this.puerto = puerto;
+    }
+
+    @Override
+    public String getNombre() {
+        return "red:" + host + ":" + puerto;
+    }
+
+    @Override
+    public synchronized void imprimir(byte[] ticket) throws IOException {
+        if (socket != null && System.currentTimeMillis() - ultimoUso > MAX_INACTIVA_MS) cerrar();
+        if (socket == null) conectar();
+        salida.write(ticket);
+        salida.flush();
+        ultimoUso = System.currentTimeMillis();
+    }
+
+    @Override
+    public void reiniciar() {
+        cerrar();
+    }
+
+    @Override
+    public synchronized void cerrar() {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ya estaba cortada
+        }
+        socket = null;
+        salida = null;
+    }
+
+    private void conectar() throws IOException {
+        Socket nuevo = new Socket();
+        try {
+            nuevo.connect(new InetSocketAddress(host, puerto), TIMEOUT_CONEXION_MS);
+            nuevo.setSoTimeout(TIMEOUT_ESCRITURA_MS);
+            nuevo.setTcpNoDelay(true);
+            salida = new BufferedOutputStream(nuevo.getOutputStream());
+            socket = nuevo;
+        } catch (IOException e) {
+            nuevo.close();
+            throw new IOException("No se pudo conectar con la impresora " + host + ":" + puerto + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package modelo;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Impresora de mentira para medir y probar sin hardware (por ejemplo en Linux o CI)
+ * Agrega cada ticket a un archivo o lo guarda en memoria, y puede simular la
+ * demora de una térmica real antes de devolver
+ */
+public class ImpresoraSimulada implements BackendImpresora {
+
+    private static final int MAX_EN_MEMORIA = 1000; // Los más viejos se descartan
+
+    private final String ruta; // null = solo memoria
+    private final int demoraMs;
+    private final List<byte[]> tickets = new ArrayList<>();
+    private final AtomicLong impresos = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private OutputStream archivo;
+
+    /**
+     * @param ruta Archivo donde agregar los bytes, o null para guardarlos en memoria
+     * @param demoraMs Demora simulada por ticket
+     */
+    public ImpresoraSimulada(String ruta, int demoraMs) {
+        this.ruta = ruta;
+        this.demoraMs = Math.max(0, demoraMs);
+    }
+
+    @Override
+    public String getNombre() {
+        return (ruta == null ? "memoria" : "archivo:" + ruta) + (demoraMs > 0 ? " (" + demoraMs + " ms)" : "");
+    }
+
+    @Override
+    public void imprimir(byte[] ticket) throws IOException {
+        if (demoraMs > 0) {
+            try {
+                Thread.sleep(demoraMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Impresión interrumpida");
+            }
+        }
+        synchronized (this) {
+            if (ruta != null) {
+                if (archivo == null) archivo = new FileOutputStream(ruta, true);
+                archivo.write(ticket);
+                archivo.flush();
+            } else {
+                if (tickets.size() >= MAX_EN_MEMORIA) tickets.remove(0);
+                tickets.add(ticket.clone());
+            }
+        }
+        impresos.incrementAndGet();
+        bytes.addAndGet(ticket.length);
+    }
+
+    public long getImpresos() {
+        return impresos.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * Copia de los últimos tickets guardados en memoria
+     */
+    public synchronized List<byte[]> getTickets() {
+        return new ArrayList<>(tickets);
+    }
+
+    @Override
+    public synchronized void cerrar() {
+        if (archivo == null) return;
+        try {
+            archivo.close();
+        } catch (IOException e) {
+            Logger.warn("No se pudo cerrar " + ruta + ": " + e.getMessage());
+        }
+        archivo = null;
+    }
+}
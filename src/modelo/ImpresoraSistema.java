@@ -0,0 +1,60 @@
+package modelo;
+
+import javax.print.*;
+import java.io.IOException;
+
+/**
+ * Impresora instalada en el sistema operativo (javax.print, modo RAW)
+ * El PrintService se busca una vez y se vuelve a buscar después de una falla
+ */
+public class ImpresoraSistema implements BackendImpresora {
+
+    private final String nombre; // null = predeterminada
+    private volatile PrintService servicio;
+
+    /**
+     * @param nombre Nombre de la impresora en el sistema, o null para la predeterminada
+     */
+    public ImpresoraSistema(String nombre) {
+        this.nombre = nombre;
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre == null ? "sistema (predeterminada)" : "sistema:" + nombre;
+    }
+
+    @Override
+    public void imprimir(byte[] ticket) throws IOException {
+        PrintService actual = buscar();
+        try {
+            Doc doc = new SimpleDoc(ticket, DocFlavor.BYTE_ARRAY.AUTOSENSE, null);
+            actual.createPrintJob().print(doc, null);
+        } catch (PrintException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void reiniciar() {
+        servicio = null; // Puede haber cambiado la impresora predeterminada
+    }
+
+    private PrintService buscar() throws IOException {
+        PrintService actual = servicio;
+        if (actual != null) return actual;
+
+        if (nombre == null) {
+            // La impresora PREDETERMINADA (la que tiene el check verde en Windows)
+            actual = PrintServiceLookup.lookupDefaultPrintService();
+            if (actual == null) throw new IOException("No se encontró una impresora predeterminada");
+        } else {
+            for (PrintService s : PrintServiceLookup.lookupPrintServices(null, null)) {
+                if (s.getName().equalsIgnoreCase(nombre)) actual = s;
+            }
+            if (actual == null) throw new IOException("No se encontró la impresora " + nombre);
+        }
+        servicio = actual;
+        return actual;
+    }
+}
@@ -0,0 +1,190 @@
+package modelo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice de trigramas sobre nombres y dígitos de código de los productos
+ * Reemplaza el "nombre LIKE '%x%'" (escaneo completo de la tabla) en cada tecla:
+ * la lista de trigramas más corta de la consulta acota los candidatos y luego
+ * se verifica la subcadena solo sobre esos pocos productos
+ *
+ * No es thread-safe: lo sincroniza CatalogoProductos, que es su único dueño
+ */
+class IndiceTrigramas {
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Long, String[]> documentos = new HashMap<>(); // codigo -> {nombreNormalizado, digitosCodigo}
+
+    /**
+     * Indexa (o reindexa) un producto
+     */
+    void agregar(long codigo, String nombre) {
+        quitar(codigo);
+        String[] doc = { normalizar(nombre), Long.toString(codigo) };
+        documentos.put(codigo, doc);
+        for (Long clave : trigramasDistintos(doc)) {
+            postings.computeIfAbsent(clave, k -> new Postings()).agregar(codigo);
+        }
+    }
+
+    /**
+     * Quita un producto del índice (no hace nada si no estaba)
+     */
+    void quitar(long codigo) {
+        String[] doc = documentos.remove(codigo);
+        if (doc == null) return;
+        for (Long clave : trigramasDistintos(doc)) {
+            Postings lista = postings.get(clave);
+            if (lista != null && lista.quitar(codigo) && lista.tamanio == 0) {
+                postings.remove(clave);
+            }
+        }
+    }
+
+    void limpiar() {
+        postings.clear();
+        documentos.clear();
+    }
+
+    /**
+     * Busca productos cuyo nombre o código contenga el filtro
+     * @return Códigos ordenados por relevancia (código exacto, prefijo de código,
+     *         prefijo de nombre, inicio de palabra y luego el resto, por nombre)
+     */
+    long[] buscar(String filtro) {
+        String consulta = normalizar(filtro);
+
+        long[] candidatos;
+        int cantidadCandidatos;
+        if (consulta.length() < 3) {
+            // Consultas de 1-2 letras: no hay trigramas, se recorre el índice en memoria
+            candidatos = new long[documentos.size()];
+            cantidadCandidatos = 0;
+            for (Long codigo : documentos.keySet()) candidatos[cantidadCandidatos++] = codigo;
+        } else {
+            Postings menor = null;
+            for (int i = 0; i + 3 <= consulta.length(); i++) {
+                Postings lista = postings.get(trigrama(consulta, i));
+                if (lista == null) return new long[0]; // Algún trigrama no existe: no hay coincidencias
+                if (menor == null || lista.tamanio < menor.tamanio) menor = lista;
+            }
+            candidatos = menor.ids;
+            cantidadCandidatos = menor.tamanio;
+        }
+
+        List<Coincidencia> resultado = new ArrayList<>();
+        for (int i = 0; i < cantidadCandidatos; i++) {
+            long codigo = candidatos[i];
+            String[] doc = documentos.get(codigo);
+            int rango = clasificar(doc, consulta);
+            if (rango >= 0) resultado.add(new Coincidencia(codigo, doc[0], rango));
+        }
+
+        if (consulta.isEmpty()) {
+            resultado.sort(Comparator.comparingLong(c -> c.codigo));
+        } else {
+            resultado.sort(Comparator.comparingInt((Coincidencia c) -> c.rango)
+                    .thenComparing(c -> c.nombre)
+                    .thenComparingLong(c -> c.codigo));
+        }
+
+        long[] ids = new long[resultado.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = resultado.get(i).codigo;
+        return ids;
+    }
+
+    /**
+     * @return Rango de relevancia (menor es mejor) o -1 si no coincide
+     */
+    private static int clasificar(String[] doc, String consulta) {
+        String nombre = doc[0];
+        String digitos = doc[1];
+        if (consulta.isEmpty()) return 0;
+        if (digitos.equals(consulta)) return 0;
+        if (digitos.startsWith(consulta)) return 1;
+        if (nombre.startsWith(consulta)) return 2;
+        int pos = nombre.indexOf(consulta);
+        if (pos > 0 && nombre.charAt(pos - 1) == ' ') return 3;
+        if (pos > 0 || digitos.contains(consulta)) return 4;
+        return -1;
+    }
+
+    /**
+     * Minúsculas y sin acentos, para que "azucar" encuentre "Azúcar"
+     */
+    static String normalizar(String texto) {
+        if (texto == null) return "";
+        StringBuilder sb = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = Character.toLowerCase(texto.charAt(i));
+            switch (c) {
+                case 'á': case 'à': case 'ä': case 'â': c = 'a'; break;
+                case 'é': case 'è': case 'ë': case 'ê': c = 'e'; break;
+                case 'í': case 'ì': case 'ï': case 'î': c = 'i'; break;
+                case 'ó': case 'ò': case 'ö': case 'ô': c = 'o'; break;
+                case 'ú': case 'ù': case 'ü': case 'û': c = 'u'; break;
+                case 'ñ': c = 'n'; break;
+                default: break;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static Set<Long> trigramasDistintos(String[] doc) {
+        Set<Long> claves = new HashSet<>();
+        for (String campo : doc) {
+            for (int i = 0; i + 3 <= campo.length(); i++) {
+                claves.add(trigrama(campo, i));
+            }
+        }
+        return claves;
+    }
+
+    private static Long trigrama(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static class Coincidencia {
+        final long codigo;
+        final String nombre;
+        final int rango;
+
+        Coincidencia(long codigo, String nombre, int rango) {
+            this.codigo = codigo;
+            this.nombre = nombre;
+            this.rango = rango;
+        }
+    }
+
+    /**
+     * Lista de códigos que contienen un trigrama
+     * Sin repetidos: cada producto se agrega una vez por trigrama distinto
+     */
+    private static class Postings {
+        long[] ids = new long[4];
+        int tamanio = 0;
+
+        void agregar(long codigo) {
+            if (tamanio == ids.length) ids = Arrays.copyOf(ids, tamanio * 2);
+            ids[tamanio++] = codigo;
+        }
+
+        boolean quitar(long codigo) {
+            for (int i = 0; i < tamanio; i++) {
+                if (ids[i] == codigo) {
+                    ids[i] = ids[--tamanio];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
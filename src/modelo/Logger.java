@@ -1,246 +1,328 @@
 package modelo;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Sistema de logging mejorado con auditoría y seguridad
  * Incluye rotación de logs, niveles de seguridad y auditoría de acciones críticas
+ *
+ * Asincrónico: quien loguea solo deja el evento en una cola circular sin locks;
+ * un único hilo escritor arma las líneas, las escribe con los archivos abiertos
+ * y rota por tamaño. Con la cola llena, DEBUG/INFO/WARN se descartan y
+ * ERROR/AUDIT/SECURITY esperan lugar. Al terminar la JVM se vacía la cola
+ *
+ * Los casilleros de la cola se reutilizan y los logs de venta, producto y caja
+ * guardan sus valores sin formatear: el escritor arma la línea con FormatoLog,
+ * así el camino habitual no genera basura
  */
 public class Logger {
-    
+
     private static final String LOG_FILE = "kiosco.log";
     private static final String AUDIT_FILE = "auditoria.log";
     private static final String SECURITY_FILE = "seguridad.log";
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final long MAX_LOG_SIZE = 10 * 1024 * 1024; // 10MB
-    
+    private static final int CAPACIDAD_COLA = 8192; // Potencia de 2
+    private static final long ESPERA_MAXIMA_NS = TimeUnit.SECONDS.toNanos(2); // Cola llena, niveles que no se descartan
+    private static final long ESPERA_CIERRE_MS = 3000;
+
+    private static final Anillo cola = new Anillo(CAPACIDAD_COLA);
+    private static final AtomicLong descartados = new AtomicLong();
+    private static final Escritor escritor = new Escritor();
+
+    static {
+        escritor.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Logger::cerrar, "kiosco-logger-cierre"));
+    }
+
     public enum Level {
         INFO, WARN, ERROR, DEBUG, AUDIT, SECURITY
     }
-    
+
     /**
      * MEJORADO: Log principal con rotación automática
      */
     public static void log(Level level, String message) {
         log(level, message, null);
     }
-    
+
     /**
      * MEJORADO: Log con manejo de excepciones y rotación
+     * Solo encola: el momento y el usuario se toman acá, la línea la arma el escritor
      */
     public static void log(Level level, String message, Throwable throwable) {
-        String timestamp = LocalDateTime.now().format(FORMATTER);
-        String usuario = obtenerUsuarioActual();
-        String logEntry = String.format("[%s] [%s] %s: %s", timestamp, usuario, level, message);
-        
-        if (throwable != null) {
-            logEntry += " - " + throwable.getClass().getSimpleName() + ": " + throwable.getMessage();
-        }
-        
-        // Escribir a consola (solo en desarrollo)
-        if (level == Level.ERROR || level == Level.SECURITY) {
-            System.out.println(logEntry);
+        Evento e = reservar(level);
+        if (e == null) return;
+        e.texto = message;
+        e.error = throwable;
+        publicar(e);
+    }
+
+    /**
+     * Vacía la cola, escribe lo pendiente y cierra los archivos
+     * Se llama sola al terminar la JVM; invocarla antes no causa problemas
+     */
+    public static void cerrar() {
+        escritor.cerrando = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(ESPERA_CIERRE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        
-        // Determinar archivo de destino
-        String archivo = determinarArchivoLog(level);
-        
-        // Verificar rotación de logs
-        verificarRotacionLog(archivo);
-        
-        // Escribir a archivo
-        escribirLog(archivo, logEntry, throwable);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Auditoría de acciones críticas
      */
     public static void auditoria(String accion, String detalles) {
-        String mensaje = String.format("ACCION: %s | DETALLES: %s", accion, detalles);
-        log(Level.AUDIT, mensaje);
+        Evento e = reservar(Level.AUDIT);
+        if (e == null) return;
+        e.tipo = Evento.ACCION;
+        e.texto = accion;
+        e.texto2 = detalles;
+        publicar(e);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Log de seguridad
      */
     public static void seguridad(String evento, String detalles) {
-        String mensaje = String.format("EVENTO_SEGURIDAD: %s | DETALLES: %s", evento, detalles);
-        log(Level.SECURITY, mensaje);
+        Evento e = reservar(Level.SECURITY);
+        if (e == null) return;
+        e.tipo = Evento.SEGURIDAD;
+        e.texto = evento;
+        e.texto2 = detalles;
+        publicar(e);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Log de venta con detalles completos
      */
     public static void logVenta(double total, String medioPago, int cantidadItems, int idCaja) {
-        String detalles = String.format("Total: $%.2f, Medio: %s, Items: %d, Caja: %d", 
-                                       total, medioPago, cantidadItems, idCaja);
-        auditoria("VENTA_PROCESADA", detalles);
+        Evento e = reservar(Level.AUDIT);
+        if (e == null) return;
+        e.tipo = Evento.VENTA;
+        e.monto = total;
+        e.texto = medioPago;
+        e.numero = cantidadItems;
+        e.numero2 = idCaja;
+        publicar(e);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Log de acceso de usuario
      */
     public static void logAcceso(String usuario, String accion, boolean exitoso) {
         String resultado = exitoso ? "EXITOSO" : "FALLIDO";
         String detalles = String.format("Usuario: %s, Resultado: %s", usuario, resultado);
-        
+
         if (exitoso) {
             auditoria("LOGIN_" + accion, detalles);
         } else {
             seguridad("INTENTO_ACCESO_FALLIDO", detalles);
         }
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Log de cambios en productos
      */
     public static void logCambioProducto(String accion, long codigo, String nombre, String cambios) {
-        String detalles = String.format("Codigo: %d, Producto: %s, Cambios: %s", codigo, nombre, cambios);
-        auditoria("PRODUCTO_" + accion, detalles);
+        Evento e = reservar(Level.AUDIT);
+        if (e == null) return;
+        e.tipo = Evento.PRODUCTO;
+        e.texto = accion;
+        e.numero = codigo;
+        e.texto2 = nombre;
+        e.texto3 = cambios;
+        publicar(e);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Log de operaciones de caja
      */
     public static void logOperacionCaja(String operacion, int idCaja, double monto) {
-        String detalles = String.format("Caja: %d, Monto: $%.2f", idCaja, monto);
-        auditoria("CAJA_" + operacion, detalles);
+        Evento e = reservar(Level.AUDIT);
+        if (e == null) return;
+        e.tipo = Evento.CAJA;
+        e.texto = operacion;
+        e.numero = idCaja;
+        e.monto = monto;
+        publicar(e);
     }
-    
+
     // Métodos de conveniencia existentes
     public static void info(String message) {
         log(Level.INFO, message);
     }
-    
+
     public static void warn(String message) {
         log(Level.WARN, message);
     }
-    
+
     public static void error(String message) {
         log(Level.ERROR, message);
     }
-    
+
     public static void error(String message, Throwable throwable) {
         log(Level.ERROR, message, throwable);
     }
-    
+
     public static void debug(String message) {
         log(Level.DEBUG, message);
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Obtener usuario actual de forma segura
      */
     private static String obtenerUsuarioActual() {
         try {
-            String usuario = Sesion.getUsuario();
+            String usuario = Sesion.usuarioActual();
             return usuario != null ? usuario : "SISTEMA";
         } catch (Exception e) {
             return "DESCONOCIDO";
         }
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Determinar archivo según nivel de log
+     * @return Posición en el arreglo de archivos del escritor
      */
-    private static String determinarArchivoLog(Level level) {
+    private static int determinarArchivoLog(Level level) {
         switch (level) {
             case AUDIT:
-                return AUDIT_FILE;
+                return 1;
             case SECURITY:
-                return SECURITY_FILE;
+                return 2;
             default:
-                return LOG_FILE;
+                return 0;
         }
     }
-    
+
     /**
-     * NUEVA FUNCIONALIDAD: Verificar si necesita rotación de logs
+     * Toma un casillero libre de la cola y lo prepara con momento, usuario y nivel
+     * @return null si se descartó por cola llena
      */
-    private static void verificarRotacionLog(String archivo) {
-        try {
-            File file = new File(archivo);
-            if (file.exists() && file.length() > MAX_LOG_SIZE) {
-                rotarLog(archivo);
-            }
-        } catch (Exception e) {
-            System.err.println("Error verificando rotación de log: " + e.getMessage());
+    private static Evento reservar(Level level) {
+        if (escritor.cerrando || !escritor.isAlive()) {
+            return new Evento().preparar(level, obtenerUsuarioActual()); // Fuera de la cola: se escribe directo
+        }
+        Evento e = cola.reservar();
+        if (e == null && esperaLugar(level)) e = esperarLugar();
+        if (e == null) {
+            descartados.incrementAndGet();
+            return null;
+        }
+        return e.preparar(level, obtenerUsuarioActual());
+    }
+
+    private static void publicar(Evento e) {
+        if (e.posicion < 0) {
+            escritor.escribirDirecto(e); // Durante el cierre ya no hay quien vacíe la cola
+            return;
         }
+        cola.publicar(e);
+        escritor.despertar();
     }
-    
+
     /**
-     * NUEVA FUNCIONALIDAD: Rotar logs cuando son muy grandes
+     * Política con la cola llena: lo de diagnóstico se descarta, errores y auditoría esperan
      */
-    private static void rotarLog(String archivo) {
-        try {
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String archivoBackup = archivo.replace(".log", "_" + timestamp + ".log");
-            
-            Files.move(Paths.get(archivo), Paths.get(archivoBackup));
-            
-            // Crear nuevo archivo
-            new File(archivo).createNewFile();
-            
-            info("Log rotado: " + archivo + " -> " + archivoBackup);
-            
-        } catch (Exception e) {
-            System.err.println("Error rotando log: " + e.getMessage());
-        }
+    private static boolean esperaLugar(Level level) {
+        return level == Level.ERROR || level == Level.AUDIT || level == Level.SECURITY;
     }
-    
+
+    private static Evento esperarLugar() {
+        long limite = System.nanoTime() + ESPERA_MAXIMA_NS;
+        do {
+            LockSupport.unpark(escritor);
+            LockSupport.parkNanos(100_000);
+            Evento e = cola.reservar();
+            if (e != null) return e;
+        } while (System.nanoTime() < limite && escritor.isAlive());
+        return null;
+    }
+
     /**
-     * MEJORADO: Escribir log de forma segura
+     * Arma la línea de un evento (en el hilo escritor), con el mismo formato de siempre:
+     * [fecha hora] [usuario] NIVEL: mensaje
      */
-    private static void escribirLog(String archivo, String logEntry, Throwable throwable) {
-        try (FileWriter writer = new FileWriter(archivo, true)) {
-            writer.write(logEntry + System.lineSeparator());
-            if (throwable != null) {
-                writer.write("Stack trace: " + getStackTrace(throwable) + System.lineSeparator());
-            }
-        } catch (IOException e) {
-            System.err.println("Error escribiendo log en " + archivo + ": " + e.getMessage());
+    private static void formatear(Evento e, FormatoLog f) {
+        f.reiniciar().caracter('[').marcaTiempo(e.momento).texto("] [").texto(e.usuario)
+         .texto("] ").texto(e.nivel.name()).texto(": ");
+
+        switch (e.tipo) {
+            case Evento.ACCION:
+                f.texto("ACCION: ").texto(e.texto).texto(" | DETALLES: ").texto(e.texto2);
+                break;
+            case Evento.SEGURIDAD:
+                f.texto("EVENTO_SEGURIDAD: ").texto(e.texto).texto(" | DETALLES: ").texto(e.texto2);
+                break;
+            case Evento.VENTA:
+                f.texto("ACCION: VENTA_PROCESADA | DETALLES: Total: $").monto(e.monto)
+                 .texto(", Medio: ").texto(e.texto).texto(", Items: ").entero(e.numero)
+                 .texto(", Caja: ").entero(e.numero2);
+                break;
+            case Evento.PRODUCTO:
+                f.texto("ACCION: PRODUCTO_").texto(e.texto).texto(" | DETALLES: Codigo: ").entero(e.numero)
+                 .texto(", Producto: ").texto(e.texto2).texto(", Cambios: ").texto(e.texto3);
+                break;
+            case Evento.CAJA:
+                f.texto("ACCION: CAJA_").texto(e.texto).texto(" | DETALLES: Caja: ").entero(e.numero)
+                 .texto(", Monto: $").monto(e.monto);
+                break;
+            default:
+                f.texto(e.texto);
+        }
+
+        if (e.error != null) {
+            f.texto(" - ").texto(e.error.getClass().getSimpleName()).texto(": ").texto(e.error.getMessage());
         }
     }
-    
+
     /**
      * MEJORADO: Stack trace más legible
      */
-    private static String getStackTrace(Throwable throwable) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(throwable.getClass().getSimpleName()).append(": ").append(throwable.getMessage()).append(" | ");
-        
+    private static void resumirPila(Throwable throwable, FormatoLog f) {
+        f.texto(throwable.getClass().getSimpleName()).texto(": ").texto(throwable.getMessage()).texto(" | ");
+
         StackTraceElement[] elements = throwable.getStackTrace();
         int maxElements = Math.min(5, elements.length); // Limitar a 5 elementos más relevantes
-        
+
         for (int i = 0; i < maxElements; i++) {
             StackTraceElement element = elements[i];
             if (element.getClassName().startsWith("modelo.") || element.getClassName().startsWith("controlador.")) {
-                sb.append(element.getClassName()).append(".").append(element.getMethodName())
-                  .append(":").append(element.getLineNumber()).append(" | ");
+                f.texto(element.getClassName()).caracter('.').texto(element.getMethodName())
+                 .caracter(':').entero(element.getLineNumber()).texto(" | ");
             }
         }
-        
-        return sb.toString();
     }
-    
+
     /**
      * NUEVA FUNCIONALIDAD: Limpiar logs antiguos (mantener últimos 30 días)
      */
     public static void limpiarLogsAntiguos() {
         try {
             File directorio = new File(".");
-            File[] archivos = directorio.listFiles((dir, name) -> 
+            File[] archivos = directorio.listFiles((dir, name) ->
                 name.matches(".*_\\d{8}_\\d{6}\\.log"));
-            
+
             if (archivos != null) {
                 long tiempoLimite = System.currentTimeMillis() - (30L * 24 * 60 * 60 * 1000); // 30 días
-                
+
                 for (File archivo : archivos) {
                     if (archivo.lastModified() < tiempoLimite) {
                         if (archivo.delete()) {
@@ -253,4 +335,304 @@ public class Logger {
             error("Error limpiando logs antiguos", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Un pedido de log tal como lo dejó quien llamó
+     * Es un casillero reutilizable de la cola: tipo indica cómo armar la línea
+     */
+    private static class Evento {
+        static final int MENSAJE = 0;   // texto
+        static final int ACCION = 1;    // texto = acción, texto2 = detalles
+        static final int SEGURIDAD = 2; // texto = evento, texto2 = detalles
+        static final int VENTA = 3;     // monto = total, texto = medio, numero = items, numero2 = caja
+        static final int PRODUCTO = 4;  // texto = acción, numero = código, texto2 = nombre, texto3 = cambios
+        static final int CAJA = 5;      // texto = operación, numero = caja, monto
+
+        long posicion = -1; // En la cola; -1 si se escribe directo
+        int tipo;
+        long momento;
+        String usuario;
+        Level nivel;
+        String texto;
+        String texto2;
+        String texto3;
+        long numero;
+        long numero2;
+        double monto;
+        Throwable error;
+
+        Evento preparar(Level nivel, String usuario) {
+            this.tipo = MENSAJE;
+            this.momento = System.currentTimeMillis();
+            this.usuario = usuario;
+            this.nivel = nivel;
+            return this;
+        }
+
+        /**
+         * Suelta las referencias para no retener objetos hasta la próxima vuelta
+         */
+        void limpiar() {
+            usuario = null;
+            texto = null;
+            texto2 = null;
+            texto3 = null;
+            error = null;
+        }
+    }
+
+    /**
+     * Cola circular acotada, muchos productores y un solo consumidor, sin locks
+     * Cada casillero lleva un número de secuencia: igual a la posición del productor
+     * si está libre, posición + 1 si ya tiene un evento para el consumidor
+     * Los eventos se crean una sola vez y se reutilizan en cada vuelta
+     */
+    private static class Anillo {
+        private final Evento[] elementos;
+        private final AtomicLongArray secuencias;
+        private final int mascara;
+        private final AtomicLong escritura = new AtomicLong();
+        private long lectura = 0; // Solo lo toca el hilo escritor
+
+        Anillo(int capacidad) {
+            elementos = new Evento[capacidad];
+            secuencias = new AtomicLongArray(capacidad);
+            mascara = capacidad - 1;
+            for (int i = 0; i < capacidad; i++) {
+                elementos[i] = new Evento();
+                secuencias.set(i, i);
+            }
+        }
+
+        /**
+         * Reserva el próximo casillero; el productor lo completa y llama a publicar()
+         * @return null si la cola está llena
+         */
+        Evento reservar() {
+            long pos = escritura.get();
+            while (true) {
+                int i = (int) (pos & mascara);
+                long diferencia = secuencias.get(i) - pos;
+                if (diferencia == 0) {
+                    if (escritura.compareAndSet(pos, pos + 1)) {
+                        Evento e = elementos[i];
+                        e.posicion = pos;
+                        return e;
+                    }
+                    pos = escritura.get();
+                } else if (diferencia < 0) {
+                    return null; // El casillero todavía tiene el evento de la vuelta anterior
+                } else {
+                    pos = escritura.get(); // Otro productor ganó esta posición
+                }
+            }
+        }
+
+        void publicar(Evento e) {
+            secuencias.set((int) (e.posicion & mascara), e.posicion + 1);
+        }
+
+        /**
+         * @return El siguiente evento (sigue ocupado hasta liberar()), o null si no hay
+         */
+        Evento siguiente() {
+            int i = (int) (lectura & mascara);
+            return secuencias.get(i) == lectura + 1 ? elementos[i] : null;
+        }
+
+        void liberar() {
+            int i = (int) (lectura & mascara);
+            elementos[i].limpiar();
+            secuencias.set(i, lectura + elementos.length); // Libre para la próxima vuelta
+            lectura++;
+        }
+
+        boolean estaVacio() {
+            return siguiente() == null;
+        }
+    }
+
+    /**
+     * Hilo único que escribe los tres archivos; los mantiene abiertos y rota por tamaño
+     */
+    private static class Escritor extends Thread {
+        private final Archivo[] archivos = { new Archivo(LOG_FILE), new Archivo(AUDIT_FILE), new Archivo(SECURITY_FILE) };
+        private final FormatoLog formato = new FormatoLog();
+        volatile boolean cerrando = false;
+        private volatile boolean durmiendo = false;
+
+        Escritor() {
+            super("kiosco-logger");
+            setDaemon(true);
+        }
+
+        void despertar() {
+            if (durmiendo) LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                if (vaciarCola()) continue;
+                if (cerrando) break;
+                durmiendo = true;
+                if (cola.estaVacio() && !cerrando) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                }
+                durmiendo = false;
+            }
+            vaciarCola(); // Lo que entró mientras se cerraba
+            synchronized (this) {
+                for (Archivo a : archivos) a.cerrar();
+            }
+        }
+
+        /**
+         * Escribe todo lo que haya en la cola y baja los buffers a disco
+         * @return true si había algo
+         */
+        private boolean vaciarCola() {
+            Evento evento = cola.siguiente();
+            if (evento == null) return false;
+            synchronized (this) {
+                while (evento != null) {
+                    escribir(evento);
+                    cola.liberar();
+                    evento = cola.siguiente();
+                }
+                long perdidos = descartados.getAndSet(0);
+                if (perdidos > 0) {
+                    Evento aviso = new Evento().preparar(Level.WARN, "SISTEMA");
+                    aviso.texto = perdidos + " líneas de log descartadas por cola llena";
+                    escribir(aviso);
+                }
+                for (Archivo a : archivos) a.bajar();
+            }
+            return true;
+        }
+
+        /**
+         * Escritura sincrónica para lo que se loguea durante el cierre (otros hooks de apagado)
+         */
+        synchronized void escribirDirecto(Evento evento) {
+            escribir(evento);
+            for (Archivo a : archivos) a.bajar();
+        }
+
+        private void escribir(Evento evento) {
+            try {
+                formatear(evento, formato);
+
+                // Escribir a consola (solo en desarrollo)
+                if (evento.nivel == Level.ERROR || evento.nivel == Level.SECURITY) {
+                    System.out.println(formato);
+                }
+
+                Archivo archivo = archivos[determinarArchivoLog(evento.nivel)];
+                archivo.escribir(formato);
+                if (evento.error != null) {
+                    formato.reiniciar().texto("Stack trace: ");
+                    resumirPila(evento.error, formato);
+                    archivo.escribir(formato);
+                }
+
+                // Verificar rotación de logs (el tamaño se lleva en memoria)
+                if (archivo.tamano > MAX_LOG_SIZE) {
+                    String respaldo = archivo.rotar();
+                    if (respaldo != null) {
+                        Evento aviso = new Evento().preparar(Level.INFO, "SISTEMA");
+                        aviso.texto = "Log rotado: " + archivo.nombre + " -> " + respaldo;
+                        formatear(aviso, formato);
+                        archivos[0].escribir(formato);
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error escribiendo log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Un archivo de log abierto en modo append
+     * El tamaño se estima en caracteres para no consultar el disco en cada línea
+     */
+    private static class Archivo {
+        private static final String SALTO = System.lineSeparator();
+
+        final String nombre;
+        private Writer writer;
+        long tamano;
+
+        Archivo(String nombre) {
+            this.nombre = nombre; // Se abre con la primera línea
+        }
+
+        private void abrir() {
+            try {
+                tamano = new File(nombre).length();
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(nombre, true), Charset.defaultCharset()));
+            } catch (IOException e) {
+                writer = null;
+                System.err.println("Error abriendo log " + nombre + ": " + e.getMessage());
+            }
+        }
+
+        void escribir(FormatoLog linea) {
+            if (writer == null) abrir(); // Primera línea, o reintento si antes no se pudo abrir
+            if (writer == null) return;
+            try {
+                linea.escribirEn(writer);
+                writer.write(SALTO);
+                tamano += linea.largo() + SALTO.length();
+            } catch (IOException e) {
+                System.err.println("Error escribiendo log en " + nombre + ": " + e.getMessage());
+                cerrar();
+            }
+        }
+
+        void bajar() {
+            if (writer == null) return;
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                System.err.println("Error escribiendo log en " + nombre + ": " + e.getMessage());
+                cerrar();
+            }
+        }
+
+        /**
+         * Renombra el archivo actual con fecha y hora y empieza uno nuevo
+         * @return Nombre del respaldo, o null si no se pudo rotar
+         */
+        String rotar() {
+            cerrar();
+            String respaldo = null;
+            try {
+                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+                String archivoBackup = nombre.replace(".log", "_" + timestamp + ".log");
+                // Dos rotaciones en el mismo segundo: numerar (sigue coincidiendo con limpiarLogsAntiguos)
+                for (int i = 1; new File(archivoBackup).exists(); i++) {
+                    archivoBackup = nombre.replace(".log", "_" + i + "_" + timestamp + ".log");
+                }
+                Files.move(Paths.get(nombre), Paths.get(archivoBackup));
+                respaldo = archivoBackup;
+            } catch (Exception e) {
+                System.err.println("Error rotando log: " + e.getMessage());
+            }
+            abrir();
+            if (respaldo == null) tamano = 0; // No reintentar en cada línea: recién tras otro MAX_LOG_SIZE
+            return respaldo;
+        }
+
+        void cerrar() {
+            if (writer == null) return;
+            try {
+                writer.close();
+            } catch (IOException e) {
+                System.err.println("Error cerrando log " + nombre + ": " + e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
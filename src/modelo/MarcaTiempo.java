@@ -0,0 +1,109 @@
+package modelo;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conversión entre las fechas en texto que guarda el sistema y la columna ts
+ * (milisegundos epoch, hora local del equipo). ts es numérica y ordenable:
+ * los rangos por día, semana o mes se resuelven con el índice
+ */
+public final class MarcaTiempo {
+
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter FECHA_HORA = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private MarcaTiempo() {}
+
+    public static long de(LocalDateTime momento) {
+        return momento.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static long inicioDelDia(LocalDate dia) {
+        return de(dia.atStartOfDay());
+    }
+
+    /**
+     * Rango [desde, hasta) en ts que cubre un día completo
+     */
+    public static long[] rangoDelDia(LocalDate dia) {
+        return new long[] { inicioDelDia(dia), inicioDelDia(dia.plusDays(1)) };
+    }
+
+    /**
+     * Interpreta una fecha ISO (yyyy-MM-dd) o en el formato guardado (dd/MM/yyyy)
+     */
+    public static LocalDate parsearFecha(String fecha) {
+        String f = fecha.trim();
+        if (f.indexOf('/') >= 0) return LocalDate.parse(f, FECHA);
+        return LocalDate.parse(f);
+    }
+
+    /**
+     * ts de una venta a partir de sus columnas fecha y hora
+     * @return null si el texto no se puede interpretar
+     */
+    public static Long deVenta(String fecha, String hora) {
+        try {
+            LocalDate dia = parsearFecha(fecha);
+            LocalTime momento = (hora == null || hora.isBlank()) ? LocalTime.MIDNIGHT : LocalTime.parse(hora.trim());
+            return de(dia.atTime(momento));
+        } catch (DateTimeParseException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ts de una caja a partir de fecha_apertura (dd/MM/yyyy HH:mm:ss)
+     */
+    public static Long deCaja(String fechaApertura) {
+        try {
+            return de(LocalDateTime.parse(fechaApertura.trim(), FECHA_HORA));
+        } catch (DateTimeParseException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Día de apertura de una caja, o null si el texto no se puede interpretar
+     */
+    public static LocalDate diaDeCaja(String fechaApertura) {
+        try {
+            return LocalDateTime.parse(fechaApertura.trim(), FECHA_HORA).toLocalDate();
+        } catch (DateTimeParseException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * ts de un gasto a partir de su fecha "dd/MM HH:mm", que no guarda el año
+     * El gasto es posterior a la apertura de su caja: se toma el año de la apertura
+     * (o el siguiente si cruzó fin de año); sin caja, el último año que no quede en el futuro
+     */
+    public static Long deGasto(String fecha, LocalDate aperturaCaja) {
+        try {
+            String[] partes = fecha.trim().split("\\s+");
+            String[] diaMes = partes[0].split("/");
+            LocalTime hora = partes.length > 1 ? LocalTime.parse(partes[1]) : LocalTime.MIDNIGHT;
+            int dia = Integer.parseInt(diaMes[0]);
+            int mes = Integer.parseInt(diaMes[1]);
+
+            LocalDate fechaGasto;
+            if (aperturaCaja != null) {
+                fechaGasto = LocalDate.of(aperturaCaja.getYear(), mes, dia);
+                if (fechaGasto.isBefore(aperturaCaja)) fechaGasto = fechaGasto.plusYears(1);
+            } else {
+                LocalDate hoy = LocalDate.now();
+                fechaGasto = LocalDate.of(hoy.getYear(), mes, dia);
+                if (fechaGasto.isAfter(hoy)) fechaGasto = fechaGasto.minusYears(1);
+            }
+            return de(fechaGasto.atTime(hora));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
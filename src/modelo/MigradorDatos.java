@@ -42,6 +42,7 @@ public class MigradorDatos {
             migrarConfiguracion(sqliteConn, mysqlConn);
             
             crearBackupSQLite();
+            actualizarResumenes(mysqlConn);
             
             Logger.info(String.format("Migración completada: %d productos, %d usuarios, %d ventas, %d detalles, %d cajas", 
                        productosM, usuariosM, ventasM, detallesM, cajasM));
@@ -135,7 +136,7 @@ public class MigradorDatos {
      */
     private static int migrarVentas(Connection origen, Connection destino) throws SQLException {
         String selectSQL = "SELECT * FROM ventas";
-        String insertSQL = "INSERT IGNORE INTO ventas (id, id_caja, fecha, hora, total, medio_pago) VALUES (?, ?, ?, ?, ?, ?)";
+        String insertSQL = "INSERT IGNORE INTO ventas (id, id_caja, fecha, hora, total, medio_pago, ts) VALUES (?, ?, ?, ?, ?, ?, ?)";
         
         int migrados = 0;
         
@@ -143,6 +144,7 @@ public class MigradorDatos {
              PreparedStatement insert = destino.prepareStatement(insertSQL);
              ResultSet rs = select.executeQuery()) {
             
+            boolean conTs = tieneColumna(rs, "ts"); // Bases anteriores a la v7 no la tienen
             while (rs.next()) {
                 insert.setInt(1, rs.getInt("id"));
                 insert.setInt(2, rs.getInt("id_caja"));
@@ -150,6 +152,7 @@ public class MigradorDatos {
                 insert.setString(4, rs.getString("hora"));
                 insert.setDouble(5, rs.getDouble("total"));
                 insert.setString(6, rs.getString("medio_pago"));
+                insert.setObject(7, conTs ? rs.getObject("ts") : null, Types.BIGINT); // NULL: lo completa RellenoMarcasTiempo
                 
                 if (insert.executeUpdate() > 0) {
                     migrados++;
@@ -266,6 +269,28 @@ public class MigradorDatos {
         }
     }
     
+    /**
+     * Las ventas copiadas no pasaron por los resúmenes (la reconstrucción del esquema corrió con MySQL vacío):
+     * se reconstruyen y se recarga el top; lo que falle acá se puede rehacer con "Reconstruir"
+     */
+    private static void actualizarResumenes(Connection destino) {
+        try {
+            ResumenVentas.reconstruir(destino);
+        } catch (SQLException e) {
+            Logger.error("Error reconstruyendo resúmenes tras la migración", e);
+        }
+        TopProductos.getInstance().resincronizar();
+        RellenoMarcasTiempo.iniciar(); // ts de cajas y gastos, y de ventas que no lo traían
+    }
+    
+    private static boolean tieneColumna(ResultSet rs, String columna) throws SQLException {
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+            if (meta.getColumnName(i).equalsIgnoreCase(columna)) return true;
+        }
+        return false;
+    }
+    
     /**
      * Crea un backup del archivo SQLite original
      */
@@ -0,0 +1,272 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migraciones de esquema versionadas (SQLite y MySQL)
+ * Cada paso tiene un número de versión; al iniciar se aplican en orden los que
+ * todavía no figuran en schema_version. Los pasos son idempotentes: si dos
+ * terminales arrancan a la vez o el programa se corta a mitad, volver a
+ * correrlos no rompe nada
+ *
+ * Para agregar un cambio de esquema: sumar un paso al final de pasos() con la
+ * versión siguiente. Nunca modificar ni reordenar un paso ya publicado
+ */
+public class MigradorEsquema {
+
+    private static final int MYSQL_INDICE_DUPLICADO = 1061;
+    private static final int MYSQL_COLUMNA_DUPLICADA = 1060;
+
+    private final Connection conn;
+    private final boolean sqlite;
+
+    /**
+     * Un paso de migración; recibe el migrador para usar sus utilidades de dialecto
+     */
+    interface Paso {
+        void aplicar(MigradorEsquema m) throws SQLException;
+    }
+
+    private static class Migracion {
+        final int version;
+        final String descripcion;
+        final Paso paso;
+
+        Migracion(int version, String descripcion, Paso paso) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.paso = paso;
+        }
+    }
+
+    private MigradorEsquema(Connection conn, String tipoBase) {
+        this.conn = conn;
+        this.sqlite = "sqlite".equals(tipoBase);
+    }
+
+    /**
+     * Lista ordenada de migraciones
+     */
+    private static List<Migracion> pasos() {
+        List<Migracion> lista = new ArrayList<>();
+        lista.add(new Migracion(1, "Columna saldo_remanente en gastos",
+                m -> m.agregarColumna("gastos", "saldo_remanente", "DOUBLE DEFAULT 0")));
+        lista.add(new Migracion(2, "Índices de ventas por caja y fecha", m -> {
+            m.crearIndice("idx_ventas_caja", "ventas", "id_caja");
+            m.crearIndice("idx_ventas_fecha", "ventas", "fecha");
+        }));
+        lista.add(new Migracion(3, "Índices de detalle_ventas por venta y producto", m -> {
+            m.crearIndice("idx_detalle_venta", "detalle_ventas", "id_venta");
+            m.crearIndice("idx_detalle_producto", "detalle_ventas", "nombre_producto");
+        }));
+        lista.add(new Migracion(4, "Índice de productos por nombre",
+                m -> m.crearIndice("idx_productos_nombre", "productos", "nombre")));
+        lista.add(new Migracion(5, "Índice de carrito_compartido por producto",
+                m -> m.crearIndice("idx_carrito_producto", "carrito_compartido", "nombre_producto")));
+        lista.add(new Migracion(6, "Índices de gastos por caja y cajas por estado", m -> {
+            m.crearIndice("idx_gastos_caja", "gastos", "id_caja");
+            m.crearIndice("idx_cajas_estado", "cajas", "estado");
+        }));
+        lista.add(new Migracion(7, "Columna ts (epoch ms) en ventas, gastos y cajas", m -> {
+            // Las filas viejas las completa RellenoMarcasTiempo en segundo plano
+            for (String tabla : new String[] { "ventas", "gastos", "cajas" }) {
+                m.agregarColumna(tabla, "ts", "BIGINT");
+                m.crearIndice("idx_" + tabla + "_ts", tabla, "ts");
+            }
+        }));
+        lista.add(new Migracion(8, "Código de producto y marca de cigarrillo en detalle_ventas", m -> {
+            // NULL = pendiente de RellenoCodigosProducto; 0 = ítem sin producto (manual)
+            m.agregarColumna("detalle_ventas", "codigo_producto", "BIGINT");
+            m.agregarColumna("detalle_ventas", "es_cigarrillo", "INT DEFAULT 0");
+            m.crearIndice("idx_detalle_codigo", "detalle_ventas", "codigo_producto");
+        }));
+        lista.add(new Migracion(9, "Tabla caja_totales (totales acumulados por caja)", m -> {
+            // Las cajas existentes se completan al leerlas por primera vez (TotalesCaja.leer)
+            m.ejecutar("CREATE TABLE IF NOT EXISTS caja_totales (" +
+                    "id_caja INT PRIMARY KEY, " +
+                    "bruto_efectivo DOUBLE DEFAULT 0, " +
+                    "bruto_digital DOUBLE DEFAULT 0, " +
+                    "ciga_efectivo DOUBLE DEFAULT 0, " +
+                    "ciga_digital DOUBLE DEFAULT 0, " +
+                    "cantidad_items INT DEFAULT 0, " +
+                    "gastos DOUBLE DEFAULT 0)");
+        }));
+        lista.add(new Migracion(10, "Resúmenes de ventas por día, hora y producto", m -> {
+            m.ejecutar("CREATE TABLE IF NOT EXISTS ventas_dia (" +
+                    "dia INT PRIMARY KEY, " +
+                    "cantidad_ventas INT DEFAULT 0, " +
+                    "total DOUBLE DEFAULT 0, " +
+                    "items INT DEFAULT 0)");
+            m.ejecutar("CREATE TABLE IF NOT EXISTS ventas_hora (" +
+                    "dia INT, " +
+                    "hora INT, " +
+                    "cantidad_ventas INT DEFAULT 0, " +
+                    "total DOUBLE DEFAULT 0, " +
+                    "items INT DEFAULT 0, " +
+                    "PRIMARY KEY (dia, hora))");
+            m.ejecutar("CREATE TABLE IF NOT EXISTS producto_dia (" +
+                    "dia INT, " +
+                    "nombre_producto VARCHAR(255), " +
+                    "cantidad INT DEFAULT 0, " +
+                    "total DOUBLE DEFAULT 0, " +
+                    "PRIMARY KEY (dia, nombre_producto))");
+            ResumenVentas.reconstruir(m.getConexion()); // Historial existente, una sola vez
+        }));
+        // v11 no se usa: su columna (ventas_hora.items) quedó dentro de v10 antes de publicarse
+        lista.add(new Migracion(12, "Versión del carrito compartido y bajas por versión", m -> {
+            // Una sola fila: versión actual y versión del último vaciado (ver CarritoCompartidoDAO)
+            m.ejecutar("CREATE TABLE IF NOT EXISTS carrito_version (" +
+                    "id INT PRIMARY KEY, " +
+                    "version BIGINT DEFAULT 0, " +
+                    "vaciado BIGINT DEFAULT 0)");
+            m.ejecutar((m.esSQLite() ? "INSERT OR IGNORE" : "INSERT IGNORE") +
+                    " INTO carrito_version(id, version, vaciado) VALUES(1, 0, 0)");
+            m.agregarColumna("carrito_compartido", "version", "BIGINT DEFAULT 0");
+            m.crearIndice("idx_carrito_version", "carrito_compartido", "version");
+            m.ejecutar("CREATE TABLE IF NOT EXISTS carrito_bajas (" +
+                    "version BIGINT PRIMARY KEY, " +
+                    "id_item BIGINT)");
+        }));
+        lista.add(new Migracion(13, "Cola de pedidos EMISOR -> RECEPTOR (pedidos y pedido_items)", m -> {
+            String autoInc = m.esSQLite() ? "INTEGER PRIMARY KEY AUTOINCREMENT" : "INT PRIMARY KEY AUTO_INCREMENT";
+            // estado: NUEVO -> TOMADO (token del receptor) -> ENTREGADO (ver PedidoDAO)
+            m.ejecutar("CREATE TABLE IF NOT EXISTS pedidos (" +
+                    "id " + autoInc + ", " +
+                    "estado VARCHAR(20) DEFAULT 'NUEVO', " +
+                    "origen VARCHAR(50), " +
+                    "token VARCHAR(64), " +
+                    "ts BIGINT, " +
+                    "ts_tomado BIGINT)");
+            m.crearIndice("idx_pedidos_estado", "pedidos", "estado, id");
+            m.crearIndice("idx_pedidos_token", "pedidos", "token");
+            m.ejecutar("CREATE TABLE IF NOT EXISTS pedido_items (" +
+                    "id " + autoInc + ", " +
+                    "id_pedido INT, " +
+                    "nombre_producto VARCHAR(255), " +
+                    "precio DOUBLE, " +
+                    "cantidad INT DEFAULT 1)");
+            m.crearIndice("idx_pedido_items_pedido", "pedido_items", "id_pedido");
+        }));
+        return lista;
+    }
+
+    /**
+     * Aplica las migraciones pendientes sobre la conexión dada
+     * @param tipoBase "sqlite" o "mysql"
+     */
+    public static void migrar(Connection conn, String tipoBase) {
+        MigradorEsquema m = new MigradorEsquema(conn, tipoBase);
+        try {
+            m.crearTablaVersiones();
+            int actual = m.versionActual();
+            int aplicadas = 0;
+
+            for (Migracion mig : pasos()) {
+                if (mig.version <= actual) continue;
+
+                long inicio = System.nanoTime();
+                mig.paso.aplicar(m);
+                long duracionMs = (System.nanoTime() - inicio) / 1_000_000;
+                m.registrarVersion(mig, duracionMs);
+                aplicadas++;
+
+                Logger.info(String.format("Migración de esquema v%d aplicada en %d ms: %s",
+                        mig.version, duracionMs, mig.descripcion));
+            }
+
+            if (aplicadas > 0) {
+                Logger.info("Esquema actualizado de v" + actual + " a v" + m.versionActual());
+            }
+        } catch (SQLException e) {
+            Logger.error("Error aplicando migraciones de esquema (" + tipoBase + ")", e);
+        }
+    }
+
+    private void crearTablaVersiones() throws SQLException {
+        ejecutar("CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INT PRIMARY KEY, " +
+                "descripcion VARCHAR(255), " +
+                "fecha_aplicada VARCHAR(50), " +
+                "duracion_ms BIGINT)");
+    }
+
+    private int versionActual() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void registrarVersion(Migracion mig, long duracionMs) throws SQLException {
+        String sql = (sqlite ? "INSERT OR IGNORE" : "INSERT IGNORE") +
+                " INTO schema_version(version, descripcion, fecha_aplicada, duracion_ms) VALUES(?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, mig.version);
+            ps.setString(2, mig.descripcion);
+            ps.setString(3, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")));
+            ps.setLong(4, duracionMs);
+            ps.executeUpdate();
+        }
+    }
+
+    // ===== Utilidades de dialecto para los pasos =====
+
+    boolean esSQLite() {
+        return sqlite;
+    }
+
+    Connection getConexion() {
+        return conn;
+    }
+
+    void ejecutar(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    /**
+     * Crea un índice si no existe (MySQL no admite IF NOT EXISTS en CREATE INDEX)
+     */
+    void crearIndice(String nombre, String tabla, String columnas) throws SQLException {
+        if (sqlite) {
+            ejecutar("CREATE INDEX IF NOT EXISTS " + nombre + " ON " + tabla + "(" + columnas + ")");
+            return;
+        }
+        try {
+            ejecutar("CREATE INDEX " + nombre + " ON " + tabla + "(" + columnas + ")");
+        } catch (SQLException e) {
+            if (e.getErrorCode() != MYSQL_INDICE_DUPLICADO) throw e;
+        }
+    }
+
+    /**
+     * Agrega una columna si la tabla todavía no la tiene
+     */
+    void agregarColumna(String tabla, String columna, String definicion) throws SQLException {
+        if (existeColumna(tabla, columna)) return;
+        try {
+            ejecutar("ALTER TABLE " + tabla + " ADD COLUMN " + columna + " " + definicion);
+        } catch (SQLException e) {
+            // Otra terminal la agregó entre la verificación y el ALTER
+            if (sqlite ? !existeColumna(tabla, columna) : e.getErrorCode() != MYSQL_COLUMNA_DUPLICADA) throw e;
+        }
+    }
+
+    boolean existeColumna(String tabla, String columna) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("SELECT " + columna + " FROM " + tabla + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
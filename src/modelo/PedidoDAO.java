@@ -0,0 +1,357 @@
+package modelo;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cola de pedidos del modo EMISOR hacia el modo RECEPTOR (tablas pedidos y pedido_items)
+ * Cada pedido pasa por NUEVO -> TOMADO -> ENTREGADO. Un receptor toma pedidos
+ * completos de forma atómica marcándolos con su token: dos receptores nunca se
+ * llevan el mismo pedido y lo que llega mientras tanto queda NUEVO para la próxima
+ * Si un receptor tomó pedidos y no confirmó la entrega (se cortó), vuelven a NUEVO
+ * pasado el plazo de TOMA_VENCIDA_MS, medido con el reloj de la base (los relojes de
+ * las terminales pueden diferir)
+ * La entrega se confirma por id de pedido (aunque la toma haya vencido) y, si falla,
+ * se reintenta antes de cada toma: el receptor no toma pedidos nuevos mientras tenga
+ * entregas sin confirmar, así nunca vuelve a recibir uno que ya cargó
+ */
+public class PedidoDAO {
+
+    public static final String NUEVO = "NUEVO";
+    public static final String TOMADO = "TOMADO";
+    public static final String ENTREGADO = "ENTREGADO";
+
+    private static final long TOMA_VENCIDA_MS = 120_000;
+    private static final long INTERVALO_LIBERAR_MS = 30_000;
+    private static final int MYSQL_ERROR_SINTAXIS = 1064;
+
+    // MySQL anterior a 8.0 no tiene SKIP LOCKED: se toma con UPDATE ... LIMIT
+    private static volatile boolean sinSkipLocked = false;
+
+    private long ultimaLiberacion = 0;
+    // Pedidos ya cargados en el carrito cuya confirmación todavía no llegó a la base
+    // (lo usa solo el hilo del receptor, igual que tomarPedidos)
+    private final Set<Long> entregadosSinConfirmar = new HashSet<>();
+
+    public static class ItemPedido {
+        public final String nombreProducto;
+        public final double precio; // Unitario
+        public final int cantidad;
+
+        public ItemPedido(String nombreProducto, double precio, int cantidad) {
+            this.nombreProducto = nombreProducto;
+            this.precio = precio;
+            this.cantidad = cantidad;
+        }
+    }
+
+    public static class Pedido {
+        public final long id;
+        public final String origen;
+        public final List<ItemPedido> items = new ArrayList<>();
+
+        Pedido(long id, String origen) {
+            this.id = id;
+            this.origen = origen;
+        }
+    }
+
+    /**
+     * Pedidos tomados por un receptor; se confirman juntos con confirmarEntrega
+     */
+    public static class PedidosTomados {
+        public final String token;
+        public final List<Pedido> pedidos;
+
+        PedidosTomados(String token, List<Pedido> pedidos) {
+            this.token = token;
+            this.pedidos = pedidos;
+        }
+
+        List<Long> ids() {
+            List<Long> ids = new ArrayList<>(pedidos.size());
+            for (Pedido p : pedidos) ids.add(p.id);
+            return ids;
+        }
+    }
+
+    /**
+     * Deja un pedido en la cola: cabecera e ítems en una transacción, los ítems en lote
+     * @return id del pedido, o -1 si no se pudo guardar
+     */
+    public long enviarPedido(String origen, List<ItemPedido> items) {
+        if (items.isEmpty()) return -1;
+
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+
+            long idPedido;
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO pedidos(estado, origen, ts) VALUES(?,?," + ahoraSQL() + ")", Statement.RETURN_GENERATED_KEYS)) {
+                ps.setString(1, NUEVO);
+                ps.setString(2, origen);
+                ps.executeUpdate();
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) throw new SQLException("No se obtuvo el id del pedido");
+                    idPedido = rs.getLong(1);
+                }
+            }
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO pedido_items(id_pedido, nombre_producto, precio, cantidad) VALUES(?,?,?,?)")) {
+                for (ItemPedido item : items) {
+                    ps.setLong(1, idPedido);
+                    ps.setString(2, item.nombreProducto);
+                    ps.setDouble(3, item.precio);
+                    ps.setInt(4, item.cantidad);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            conn.commit();
+            AvisoCarrito.getInstance().avisar();
+            Logger.debug("Pedido " + idPedido + " enviado a caja con " + items.size() + " ítems");
+            return idPedido;
+
+        } catch (SQLException e) {
+            deshacer(conn);
+            Logger.error("Error SQL al enviar pedido a caja", e);
+            return -1;
+        } finally {
+            cerrar(conn);
+        }
+    }
+
+    /**
+     * Toma de forma atómica hasta 'maximo' pedidos NUEVO, en orden de llegada y completos
+     * MySQL 8: SELECT ... FOR UPDATE SKIP LOCKED (un receptor no espera al otro)
+     * SQLite: UPDATE ... WHERE id IN (SELECT ... LIMIT), atómico porque las escrituras van de a una
+     * Antes reintenta las confirmaciones pendientes; si no salen, no toma nada
+     * @return null si no había pedidos o no se pudo leer
+     */
+    public PedidosTomados tomarPedidos(int maximo) {
+        String token = UUID.randomUUID().toString();
+        long ahora = System.currentTimeMillis(); // Solo para espaciar las liberaciones de esta terminal
+
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+
+            if (!entregadosSinConfirmar.isEmpty()) {
+                marcarEntregados(conn, entregadosSinConfirmar);
+                conn.commit();
+                entregadosSinConfirmar.clear();
+            }
+
+            if (ahora - ultimaLiberacion > INTERVALO_LIBERAR_MS) {
+                liberarVencidos(conn);
+                ultimaLiberacion = ahora;
+            }
+
+            int tomados = ConexionDB.tipoBase.equals("sqlite")
+                    ? marcarSQLite(conn, token, maximo)
+                    : marcarMySQL(conn, token, maximo);
+            if (tomados == 0) {
+                conn.commit();
+                return null;
+            }
+
+            Map<Long, Pedido> pedidos = new LinkedHashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT p.id, p.origen, i.nombre_producto, i.precio, i.cantidad " +
+                    "FROM pedidos p JOIN pedido_items i ON i.id_pedido = p.id " +
+                    "WHERE p.token = ? ORDER BY p.id, i.id")) {
+                ps.setString(1, token);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        Pedido pedido = pedidos.get(id);
+                        if (pedido == null) {
+                            pedido = new Pedido(id, rs.getString(2));
+                            pedidos.put(id, pedido);
+                        }
+                        pedido.items.add(new ItemPedido(rs.getString(3), rs.getDouble(4), rs.getInt(5)));
+                    }
+                }
+            }
+
+            conn.commit();
+            return new PedidosTomados(token, new ArrayList<>(pedidos.values()));
+
+        } catch (SQLException e) {
+            deshacer(conn);
+            Logger.error("Error SQL al tomar pedidos", e);
+            return null;
+        } finally {
+            cerrar(conn);
+        }
+    }
+
+    /**
+     * El receptor ya cargó los pedidos en su carrito
+     * Se confirma por id (aunque la toma haya vencido); si falla queda pendiente y se
+     * reintenta en el próximo tomarPedidos
+     * @return false si quedó pendiente
+     */
+    public boolean confirmarEntrega(PedidosTomados tomados) {
+        List<Long> ids = tomados.ids();
+        entregadosSinConfirmar.addAll(ids);
+        try (Connection conn = ConexionDB.conectar()) {
+            marcarEntregados(conn, ids);
+            entregadosSinConfirmar.removeAll(ids);
+            return true;
+        } catch (SQLException e) {
+            Logger.error("Error SQL al confirmar entrega de pedidos, se reintenta en la próxima revisión", e);
+            return false;
+        }
+    }
+
+    /**
+     * Borra los pedidos entregados hace más de los días indicados
+     */
+    public int purgarEntregados(int dias) {
+        long plazo = dias * 86_400_000L;
+        Connection conn = null;
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+            try (PreparedStatement psItems = conn.prepareStatement(
+                         "DELETE FROM pedido_items WHERE id_pedido IN (SELECT id FROM pedidos WHERE estado = ? AND ts < " + ahoraSQL() + " - ?)");
+                 PreparedStatement psPedidos = conn.prepareStatement("DELETE FROM pedidos WHERE estado = ? AND ts < " + ahoraSQL() + " - ?")) {
+                psItems.setString(1, ENTREGADO);
+                psItems.setLong(2, plazo);
+                psItems.executeUpdate();
+                psPedidos.setString(1, ENTREGADO);
+                psPedidos.setLong(2, plazo);
+                int borrados = psPedidos.executeUpdate();
+                conn.commit();
+                if (borrados > 0) Logger.info("Pedidos entregados purgados: " + borrados);
+                return borrados;
+            }
+        } catch (SQLException e) {
+            deshacer(conn);
+            Logger.error("Error SQL al purgar pedidos entregados", e);
+            return 0;
+        } finally {
+            cerrar(conn);
+        }
+    }
+
+    // ===== Internos =====
+
+    /**
+     * Epoch en ms según el reloj de la base: todas las terminales miden el vencimiento igual
+     */
+    private static String ahoraSQL() {
+        return ConexionDB.tipoBase.equals("sqlite")
+                ? "(CAST(strftime('%s','now') AS INTEGER) * 1000)"
+                : "(UNIX_TIMESTAMP() * 1000)";
+    }
+
+    private static void marcarEntregados(Connection conn, java.util.Collection<Long> ids) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE pedidos SET estado = ? WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            ps.setString(1, ENTREGADO);
+            int i = 2;
+            for (Long id : ids) ps.setLong(i++, id);
+            ps.executeUpdate();
+        }
+    }
+
+    private static int marcarSQLite(Connection conn, String token, int maximo) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE pedidos SET estado = ?, token = ?, ts_tomado = " + ahoraSQL() + " " +
+                "WHERE id IN (SELECT id FROM pedidos WHERE estado = ? ORDER BY id LIMIT ?)")) {
+            ps.setString(1, TOMADO);
+            ps.setString(2, token);
+            ps.setString(3, NUEVO);
+            ps.setInt(4, maximo);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static int marcarMySQL(Connection conn, String token, int maximo) throws SQLException {
+        if (!sinSkipLocked) {
+            try {
+                List<Long> ids = new ArrayList<>();
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id FROM pedidos WHERE estado = ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED")) {
+                    ps.setString(1, NUEVO);
+                    ps.setInt(2, maximo);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) ids.add(rs.getLong(1));
+                    }
+                }
+                if (ids.isEmpty()) return 0;
+
+                StringBuilder sql = new StringBuilder("UPDATE pedidos SET estado = ?, token = ?, ts_tomado = " + ahoraSQL() + " WHERE id IN (");
+                for (int i = 0; i < ids.size(); i++) sql.append(i == 0 ? "?" : ",?");
+                sql.append(')');
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    ps.setString(1, TOMADO);
+                    ps.setString(2, token);
+                    for (int i = 0; i < ids.size(); i++) ps.setLong(3 + i, ids.get(i));
+                    return ps.executeUpdate();
+                }
+            } catch (SQLException e) {
+                if (e.getErrorCode() != MYSQL_ERROR_SINTAXIS) throw e;
+                sinSkipLocked = true;
+                Logger.warn("El servidor MySQL no admite SKIP LOCKED, los pedidos se toman con UPDATE ... LIMIT");
+            }
+        }
+        // Atómico igual: el UPDATE bloquea las filas que marca; otro receptor espera y toma las siguientes
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE pedidos SET estado = ?, token = ?, ts_tomado = " + ahoraSQL() + " WHERE estado = ? ORDER BY id LIMIT ?")) {
+            ps.setString(1, TOMADO);
+            ps.setString(2, token);
+            ps.setString(3, NUEVO);
+            ps.setInt(4, maximo);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Devuelve a NUEVO lo que un receptor tomó y nunca confirmó
+     */
+    private static void liberarVencidos(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE pedidos SET estado = ?, token = NULL, ts_tomado = NULL WHERE estado = ? AND ts_tomado < " + ahoraSQL() + " - ?")) {
+            ps.setString(1, NUEVO);
+            ps.setString(2, TOMADO);
+            ps.setLong(3, TOMA_VENCIDA_MS);
+            int liberados = ps.executeUpdate();
+            if (liberados > 0) Logger.warn("Pedidos tomados sin confirmar devueltos a la cola: " + liberados);
+        }
+    }
+
+    private static void deshacer(Connection conn) {
+        try {
+            if (conn != null) conn.rollback();
+        } catch (SQLException e) {
+            Logger.error("Error en rollback de pedidos", e);
+        }
+    }
+
+    private static void cerrar(Connection conn) {
+        try {
+            if (conn != null) {
+                conn.setAutoCommit(true);
+                conn.close();
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al cerrar conexión de pedidos", e);
+        }
+    }
+}
@@ -4,26 +4,41 @@ import java.sql.*;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * Wrapper para conexiones del pool que intercepta el close()
+ * Los prepareStatement pasan por la caché de sentencias de la conexión física
  */
 public class PooledConnection implements Connection {
     
     private final Connection realConnection;
-    private final ConnectionPool pool;
+    private final Consumer<Connection> devolucion;
+    private final CacheSentencias cacheSentencias;
     private boolean closed = false;
     
     public PooledConnection(Connection realConnection, ConnectionPool pool) {
+        this(realConnection, pool, null);
+    }
+    
+    public PooledConnection(Connection realConnection, ConnectionPool pool, CacheSentencias cacheSentencias) {
+        this(realConnection, pool::returnConnection, cacheSentencias);
+    }
+    
+    /**
+     * @param devolucion Qué hacer con la conexión física al cerrar la lógica (p.ej. liberar el escritor SQLite)
+     */
+    public PooledConnection(Connection realConnection, Consumer<Connection> devolucion, CacheSentencias cacheSentencias) {
         this.realConnection = realConnection;
-        this.pool = pool;
+        this.devolucion = devolucion;
+        this.cacheSentencias = cacheSentencias;
     }
     
     @Override
     public void close() throws SQLException {
         if (!closed) {
             closed = true;
-            pool.returnConnection(realConnection);
+            devolucion.accept(realConnection);
         }
     }
     
@@ -42,12 +57,18 @@ public class PooledConnection implements Connection {
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
         checkClosed();
+        if (cacheSentencias != null) {
+            return cacheSentencias.preparar(this, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, -1);
+        }
         return realConnection.prepareStatement(sql);
     }
     
     @Override
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
         checkClosed();
+        if (cacheSentencias != null) {
+            return cacheSentencias.preparar(this, sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1, autoGeneratedKeys);
+        }
         return realConnection.prepareStatement(sql, autoGeneratedKeys);
     }
     
@@ -157,6 +178,9 @@ public class PooledConnection implements Connection {
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
         checkClosed();
+        if (cacheSentencias != null) {
+            return cacheSentencias.preparar(this, sql, resultSetType, resultSetConcurrency, -1, -1);
+        }
         return realConnection.prepareStatement(sql, resultSetType, resultSetConcurrency);
     }
     
@@ -223,6 +247,9 @@ public class PooledConnection implements Connection {
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
         checkClosed();
+        if (cacheSentencias != null) {
+            return cacheSentencias.preparar(this, sql, resultSetType, resultSetConcurrency, resultSetHoldability, -1);
+        }
         return realConnection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
     }
     
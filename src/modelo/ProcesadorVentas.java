@@ -0,0 +1,194 @@
+package modelo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Cola de guardado de ventas con un único hilo escritor
+ * El controlador entrega la venta ya validada y sigue atendiendo; el hilo
+ * la persiste con VentaDAO y avisa el resultado a través del notificador
+ * (en la UI, SwingUtilities::invokeLater)
+ * Con commit_agrupado=true las ventas que llegan juntas se guardan en una sola transacción
+ */
+public class ProcesadorVentas {
+
+    public static final int CAPACIDAD_POR_DEFECTO = 32;
+
+    private static final Pendiente FIN = new Pendiente(0, null, null);
+
+    private final VentaDAO ventaDao;
+    private final Executor notificador;
+    private final BlockingQueue<Pendiente> cola;
+    private final Thread escritor;
+    private int enCurso = 0; // En cola + guardándose (protegido por this)
+    private boolean detenido = false;
+
+    public ProcesadorVentas(VentaDAO ventaDao, Executor notificador) {
+        this(ventaDao, notificador, CAPACIDAD_POR_DEFECTO);
+    }
+
+    public ProcesadorVentas(VentaDAO ventaDao, Executor notificador, int capacidad) {
+        this.ventaDao = ventaDao;
+        this.notificador = notificador;
+        this.cola = new ArrayBlockingQueue<>(capacidad + 1); // +1: lugar para la marca de fin
+        this.escritor = new Thread(this::procesar, "kiosco-ventas");
+        this.escritor.start();
+    }
+
+    /**
+     * Encola una venta para guardarla en segundo plano
+     * @param alTerminar Recibe true si la venta quedó registrada (se invoca en el notificador)
+     * @return false si la cola está llena o el procesador se detuvo; la venta no se encoló
+     */
+    public synchronized boolean encolar(int idCaja, Venta venta, Consumer<Boolean> alTerminar) {
+        if (detenido || cola.remainingCapacity() <= 1) return false;
+        cola.add(new Pendiente(idCaja, venta, alTerminar));
+        enCurso++;
+        return true;
+    }
+
+    public synchronized int getPendientes() {
+        return enCurso;
+    }
+
+    /**
+     * Bloquea hasta que se guarden todas las ventas encoladas (por ejemplo, antes de cerrar la caja)
+     * @return true si no quedó ninguna pendiente dentro del plazo
+     */
+    public synchronized boolean esperarPendientes(long esperaMaximaMs) {
+        long limite = System.currentTimeMillis() + esperaMaximaMs;
+        try {
+            while (enCurso > 0) {
+                long resta = limite - System.currentTimeMillis();
+                if (resta <= 0) return false;
+                wait(resta);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deja de aceptar ventas, guarda las que ya estaban en cola y termina el hilo
+     */
+    public void detener(long esperaMaximaMs) {
+        synchronized (this) {
+            if (detenido) return;
+            detenido = true;
+            cola.add(FIN);
+        }
+        try {
+            escritor.join(esperaMaximaMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int restantes = getPendientes();
+        if (restantes > 0) {
+            Logger.warn("Quedaron " + restantes + " ventas sin guardar al detener el procesador");
+        }
+    }
+
+    private void procesar() {
+        List<Pendiente> grupo = new ArrayList<>();
+        while (true) {
+            Pendiente primera;
+            try {
+                primera = cola.take();
+            } catch (InterruptedException e) {
+                Logger.warn("Hilo de guardado de ventas interrumpido");
+                return;
+            }
+            if (primera == FIN) return;
+
+            grupo.clear();
+            grupo.add(primera);
+            boolean fin = juntarGrupo(grupo);
+
+            boolean[] resultados = guardar(grupo);
+            for (int i = 0; i < grupo.size(); i++) {
+                notificar(grupo.get(i), resultados[i]);
+            }
+
+            synchronized (this) {
+                enCurso -= grupo.size();
+                notifyAll();
+            }
+            if (fin) return;
+        }
+    }
+
+    /**
+     * Commit agrupado (opcional, commit_agrupado=true): suma al grupo las ventas que
+     * lleguen dentro de la ventana o hasta el máximo configurado
+     * @return true si apareció la marca de fin mientras se juntaba
+     */
+    private boolean juntarGrupo(List<Pendiente> grupo) {
+        ServicioConfiguracion.Configuracion config = ServicioConfiguracion.obtener();
+        if (!config.getBooleano("commit_agrupado", false)) return false;
+
+        long ventanaMs = config.getEntero("commit_agrupado_ventana_ms", 5);
+        int maximo = config.getEntero("commit_agrupado_max", 20);
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ventanaMs);
+
+        try {
+            while (grupo.size() < maximo) {
+                long resta = limite - System.nanoTime();
+                if (resta <= 0) break;
+                Pendiente p = cola.poll(resta, TimeUnit.NANOSECONDS);
+                if (p == null) break;
+                if (p == FIN) return true;
+                grupo.add(p);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private boolean[] guardar(List<Pendiente> grupo) {
+        try {
+            if (grupo.size() == 1) {
+                Pendiente p = grupo.get(0);
+                return new boolean[] { ventaDao.registrarVenta(p.idCaja, p.venta) };
+            }
+            int[] idCajas = new int[grupo.size()];
+            List<Venta> ventas = new ArrayList<>(grupo.size());
+            for (int i = 0; i < idCajas.length; i++) {
+                idCajas[i] = grupo.get(i).idCaja;
+                ventas.add(grupo.get(i).venta);
+            }
+            Logger.debug("Commit agrupado de " + ventas.size() + " ventas");
+            return ventaDao.registrarVentas(idCajas, ventas);
+        } catch (Exception e) {
+            Logger.error("Error inesperado guardando ventas en segundo plano", e);
+            return new boolean[grupo.size()];
+        }
+    }
+
+    private void notificar(Pendiente p, boolean resultado) {
+        try {
+            notificador.execute(() -> p.alTerminar.accept(resultado));
+        } catch (Exception e) {
+            Logger.error("No se pudo notificar el resultado de la venta", e);
+        }
+    }
+
+    private static class Pendiente {
+        final int idCaja;
+        final Venta venta;
+        final Consumer<Boolean> alTerminar;
+
+        Pendiente(int idCaja, Venta venta, Consumer<Boolean> alTerminar) {
+            this.idCaja = idCaja;
+            this.venta = venta;
+            this.alTerminar = alTerminar;
+        }
+    }
+}
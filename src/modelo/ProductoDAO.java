@@ -7,10 +7,16 @@ import java.util.List;
 public class ProductoDAO {
 
     public List<Producto> listar(String filtro) {
+        // Con el catálogo en memoria la búsqueda no toca la BD en cada tecla
+        CatalogoProductos catalogo = CatalogoProductos.getInstance();
+        if (catalogo.estaCargado()) {
+            return catalogo.buscarTexto(filtro);
+        }
+        
         List<Producto> lista = new ArrayList<>();
         String sql = "SELECT * FROM productos WHERE nombre LIKE ? OR CAST(codigo AS CHAR) LIKE ?";
 
-        try (Connection conn = ConexionDB.conectar();
+        try (Connection conn = ConexionDB.conectarLectura();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, "%" + filtro + "%");
             pstmt.setString(2, "%" + filtro + "%");
@@ -35,7 +41,9 @@ public class ProductoDAO {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, cantidad);
             pstmt.setLong(2, codigo);
-            return pstmt.executeUpdate() > 0;
+            boolean exito = pstmt.executeUpdate() > 0;
+            if (exito) CatalogoProductos.getInstance().ajustarStock(codigo, -cantidad);
+            return exito;
         } catch (Exception e) { return false; }
     }
 
@@ -45,7 +53,9 @@ public class ProductoDAO {
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, cantidad);
             pstmt.setLong(2, codigo);
-            return pstmt.executeUpdate() > 0;
+            boolean exito = pstmt.executeUpdate() > 0;
+            if (exito) CatalogoProductos.getInstance().ajustarStock(codigo, cantidad);
+            return exito;
         } catch (Exception e) { return false; }
     }
 
@@ -72,14 +82,17 @@ public class ProductoDAO {
         }
         
         String sql = "INSERT INTO productos(codigo, nombre, precio, stock, es_cigarrillo) VALUES(?,?,?,?,?)";
+        String nombreLimpio = Validador.sanitizarTexto(p.getNombre());
         try (Connection conn = ConexionDB.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setLong(1, p.getCodigo());
-            pstmt.setString(2, Validador.sanitizarTexto(p.getNombre()));
+            pstmt.setString(2, nombreLimpio);
             pstmt.setDouble(3, p.getPrecio());
             pstmt.setInt(4, p.getStock());
             pstmt.setInt(5, p.isEsCigarrillo() ? 1 : 0);
             pstmt.executeUpdate();
+            CatalogoProductos.getInstance().poner(
+                new Producto(p.getCodigo(), nombreLimpio, p.getPrecio(), p.getStock(), p.isEsCigarrillo()));
             Logger.info("Producto insertado exitosamente: " + p.getNombre() + " (Código: " + p.getCodigo() + ")");
         } catch (SQLException e) {
             Logger.error("Error SQL al insertar producto: " + p.getNombre(), e);
@@ -93,7 +106,9 @@ public class ProductoDAO {
         try (Connection conn = ConexionDB.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setLong(1, codigo);
-            return pstmt.executeUpdate() > 0;
+            boolean exito = pstmt.executeUpdate() > 0;
+            if (exito) CatalogoProductos.getInstance().quitar(codigo);
+            return exito;
         } catch (Exception e) { return false; }
     }
 
@@ -120,9 +135,10 @@ public class ProductoDAO {
         }
         
         String sql = "UPDATE productos SET nombre = ?, precio = ?, stock = ?, es_cigarrillo = ? WHERE codigo = ?";
+        String nombreLimpio = Validador.sanitizarTexto(p.getNombre());
         try (Connection conn = ConexionDB.conectar();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, Validador.sanitizarTexto(p.getNombre()));
+            pstmt.setString(1, nombreLimpio);
             pstmt.setDouble(2, p.getPrecio());
             pstmt.setInt(3, p.getStock());
             pstmt.setInt(4, p.isEsCigarrillo() ? 1 : 0);
@@ -130,6 +146,8 @@ public class ProductoDAO {
             
             boolean exito = pstmt.executeUpdate() > 0;
             if (exito) {
+                CatalogoProductos.getInstance().poner(
+                    new Producto(p.getCodigo(), nombreLimpio, p.getPrecio(), p.getStock(), p.isEsCigarrillo()));
                 Logger.info("Producto actualizado exitosamente: " + p.getNombre() + " (Código: " + p.getCodigo() + ")");
             }
             return exito;
@@ -166,6 +184,30 @@ public class ProductoDAO {
         return null;
     }
     
+    public Producto buscarPorNombre(String nombre) {
+        String sql = "SELECT * FROM productos WHERE nombre = ? ORDER BY codigo LIMIT 1";
+        try (Connection conn = ConexionDB.conectar();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, nombre);
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return new Producto(
+                    rs.getLong("codigo"),
+                    rs.getString("nombre"),
+                    rs.getDouble("precio"),
+                    rs.getInt("stock"),
+                    rs.getInt("es_cigarrillo") == 1
+                );
+            }
+        } catch (SQLException e) {
+            Logger.error("Error SQL al buscar producto por nombre: " + nombre, e);
+        } catch (Exception e) {
+            Logger.error("Error inesperado al buscar producto por nombre: " + nombre, e);
+        }
+        return null;
+    }
+    
     /**
      * NUEVA FUNCIONALIDAD: Cuenta productos con stock bajo
      * @param limite Límite de stock considerado como "bajo"
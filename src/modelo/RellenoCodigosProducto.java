@@ -0,0 +1,85 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Completa en segundo plano codigo_producto y es_cigarrillo de los detalles de venta
+ * anteriores a la migración v8, buscando el producto por nombre una única vez
+ * Trabaja por lotes cortos, cada uno en su propia transacción, para no frenar las ventas
+ * Los detalles cuyo nombre ya no existe en productos quedan con código 0 (como los manuales)
+ */
+public class RellenoCodigosProducto {
+
+    private static final int LOTE = 500;
+    private static final long PAUSA_ENTRE_LOTES_MS = 50;
+
+    private static final String SQL_HASTA =
+            "SELECT MAX(id) FROM (SELECT id FROM detalle_ventas WHERE codigo_producto IS NULL ORDER BY id LIMIT " + LOTE + ") t";
+    private static final String SQL_ACTUALIZAR =
+            "UPDATE detalle_ventas SET " +
+            "codigo_producto = COALESCE((SELECT MIN(p.codigo) FROM productos p WHERE p.nombre = detalle_ventas.nombre_producto), 0), " +
+            "es_cigarrillo = COALESCE((SELECT MAX(p.es_cigarrillo) FROM productos p WHERE p.nombre = detalle_ventas.nombre_producto), 0) " +
+            "WHERE codigo_producto IS NULL AND id <= ?";
+
+    private static Thread hilo;
+
+    /**
+     * Lanza el relleno si no está corriendo (idempotente)
+     */
+    public static synchronized void iniciar() {
+        if (hilo != null && hilo.isAlive()) return;
+        hilo = new Thread(RellenoCodigosProducto::rellenar, "kiosco-relleno-codigos");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+    }
+
+    private static void rellenar() {
+        long inicio = System.nanoTime();
+        int total = 0;
+
+        while (true) {
+            int filas;
+            try (Connection conn = ConexionDB.conectar()) {
+                long hasta;
+                try (PreparedStatement ps = conn.prepareStatement(SQL_HASTA);
+                     ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) break;
+                    hasta = rs.getLong(1);
+                    if (rs.wasNull()) break; // No quedan detalles sin código
+                }
+
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(SQL_ACTUALIZAR)) {
+                    ps.setLong(1, hasta);
+                    filas = ps.executeUpdate();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                Logger.error("Error rellenando códigos de detalle_ventas (se reintentará en el próximo inicio)", e);
+                break;
+            }
+
+            total += filas;
+            if (filas < LOTE) break;
+
+            try {
+                Thread.sleep(PAUSA_ENTRE_LOTES_MS); // Dejar pasar a las ventas entre lotes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (total > 0) {
+            Logger.info(String.format("Relleno de códigos en detalle_ventas completado: %d filas en %d ms",
+                    total, (System.nanoTime() - inicio) / 1_000_000));
+        }
+    }
+}
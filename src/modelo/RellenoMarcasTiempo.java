@@ -0,0 +1,103 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Completa en segundo plano la columna ts de ventas, cajas y gastos anteriores a
+ * la migración v7, leyendo sus fechas en texto
+ * Trabaja por lotes cortos, cada uno en su propia transacción, para no frenar las ventas
+ * Las filas con fecha ilegible quedan con ts = 0 (fuera de cualquier rango)
+ */
+public class RellenoMarcasTiempo {
+
+    private static final int LOTE = 500;
+    private static final long PAUSA_ENTRE_LOTES_MS = 50;
+
+    private static Thread hilo;
+
+    private interface Conversor {
+        Long convertir(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Lanza el relleno si no está corriendo (idempotente)
+     */
+    public static synchronized void iniciar() {
+        if (hilo != null && hilo.isAlive()) return;
+        hilo = new Thread(RellenoMarcasTiempo::rellenarTodo, "kiosco-relleno-ts");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+    }
+
+    private static void rellenarTodo() {
+        long inicio = System.nanoTime();
+        int total = 0;
+
+        total += rellenar("ventas", "SELECT id, fecha, hora FROM ventas WHERE ts IS NULL ORDER BY id LIMIT " + LOTE,
+                rs -> MarcaTiempo.deVenta(rs.getString(2), rs.getString(3)));
+
+        total += rellenar("cajas", "SELECT id, fecha_apertura FROM cajas WHERE ts IS NULL ORDER BY id LIMIT " + LOTE,
+                rs -> MarcaTiempo.deCaja(rs.getString(2)));
+
+        total += rellenar("gastos", "SELECT g.id, g.fecha, c.fecha_apertura FROM gastos g " +
+                "LEFT JOIN cajas c ON g.id_caja = c.id WHERE g.ts IS NULL ORDER BY g.id LIMIT " + LOTE,
+                rs -> MarcaTiempo.deGasto(rs.getString(2), MarcaTiempo.diaDeCaja(rs.getString(3))));
+
+        if (total > 0) {
+            Logger.info(String.format("Relleno de ts completado: %d filas en %d ms",
+                    total, (System.nanoTime() - inicio) / 1_000_000));
+        }
+    }
+
+    private static int rellenar(String tabla, String sqlLeer, Conversor conversor) {
+        String sqlActualizar = "UPDATE " + tabla + " SET ts = ? WHERE id = ? AND ts IS NULL";
+        int total = 0;
+
+        while (true) {
+            List<long[]> lote = new ArrayList<>(LOTE);
+            try (Connection conn = ConexionDB.conectar()) {
+                try (PreparedStatement ps = conn.prepareStatement(sqlLeer);
+                     ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Long ts = conversor.convertir(rs);
+                        lote.add(new long[] { rs.getLong(1), ts == null ? 0L : ts });
+                    }
+                }
+                if (lote.isEmpty()) return total;
+
+                conn.setAutoCommit(false);
+                try (PreparedStatement ps = conn.prepareStatement(sqlActualizar)) {
+                    for (long[] fila : lote) {
+                        ps.setLong(1, fila[1]);
+                        ps.setLong(2, fila[0]);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                Logger.error("Error rellenando ts de " + tabla + " (se reintentará en el próximo inicio)", e);
+                return total;
+            }
+
+            total += lote.size();
+            if (lote.size() < LOTE) return total;
+
+            try {
+                Thread.sleep(PAUSA_ENTRE_LOTES_MS); // Dejar pasar a las ventas entre lotes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return total;
+            }
+        }
+    }
+}
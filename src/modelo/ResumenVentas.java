@@ -0,0 +1,287 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Resúmenes precalculados de ventas para las estadísticas:
+ * ventas_dia (por día), ventas_hora (por día y hora) y producto_dia (por día y producto)
+ * Se actualizan por diferencia en la misma transacción que cada venta o anulación;
+ * reconstruir() los vuelve a armar desde ventas y detalle_ventas si quedaron desfasados
+ * El día se guarda como entero yyyyMMdd (hora local del equipo)
+ */
+public final class ResumenVentas {
+
+    private static final int LOTE = 1000;
+
+    private ResumenVentas() {}
+
+    /**
+     * Clave de día usada en las tablas de resumen (por ejemplo 20241231)
+     */
+    public static int clave(LocalDate dia) {
+        return dia.getYear() * 10000 + dia.getMonthValue() * 100 + dia.getDayOfMonth();
+    }
+
+    /**
+     * Suma una venta recién insertada, dentro de la transacción abierta en conn
+     */
+    public static void sumarVenta(Connection conn, LocalDateTime momento, Venta venta) throws SQLException {
+        Acumulador a = new Acumulador();
+        a.venta(momento, venta.getTotal());
+        for (Venta.DetalleVenta item : venta.getItems()) {
+            a.detalle(momento, item.nombreProducto, item.cantidad, item.subtotal);
+        }
+        a.volcar(conn);
+    }
+
+    /**
+     * Descuenta un ítem borrado de una venta ya registrada
+     * @param tsVenta ts de la venta a la que pertenecía el ítem
+     */
+    public static void restarItem(Connection conn, long tsVenta, String nombre, int cantidad, double subtotal) throws SQLException {
+        if (tsVenta <= 0) return; // Venta sin fecha válida: no figura en los resúmenes
+        LocalDateTime momento = aMomento(tsVenta);
+        Acumulador a = new Acumulador();
+        a.importe(momento, -subtotal);
+        a.detalle(momento, nombre, -cantidad, -subtotal);
+        a.volcar(conn);
+    }
+
+    /**
+     * Descuenta todas las ventas de una caja (antes de borrarla)
+     */
+    public static void restarCaja(Connection conn, int idCaja) throws SQLException {
+        Acumulador a = new Acumulador();
+        a.leerVentas(conn, " WHERE id_caja = " + idCaja, -1);
+        a.leerDetalles(conn, " WHERE v.id_caja = " + idCaja, -1);
+        a.volcar(conn);
+    }
+
+    /**
+     * Borra y vuelve a calcular los tres resúmenes desde las ventas
+     * Conviene correrlo sin ventas en curso: una venta confirmada a mitad
+     * de la reconstrucción puede quedar afuera
+     * @return Cantidad de ventas procesadas
+     */
+    public static int reconstruir(Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate("DELETE FROM ventas_dia");
+                st.executeUpdate("DELETE FROM ventas_hora");
+                st.executeUpdate("DELETE FROM producto_dia");
+            }
+            Acumulador a = new Acumulador();
+            int ventas = a.leerVentas(conn, "", 1);
+            a.leerDetalles(conn, "", 1);
+            a.volcar(conn);
+            conn.commit();
+            CacheTablero.getInstance().invalidar();
+
+            Logger.info(String.format("Resúmenes de ventas reconstruidos: %d ventas en %d ms",
+                    ventas, (System.nanoTime() - inicio) / 1_000_000));
+            return ventas;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Versión para la UI: abre su propia conexión
+     * @return Cantidad de ventas procesadas, o -1 si falló
+     */
+    public static int reconstruir() {
+        try (Connection conn = ConexionDB.conectar()) {
+            return reconstruir(conn);
+        } catch (SQLException e) {
+            Logger.error("Error reconstruyendo resúmenes de ventas", e);
+            return -1;
+        }
+    }
+
+    private static LocalDateTime aMomento(long ts) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(ts), ZoneId.systemDefault());
+    }
+
+    /**
+     * Momento de una venta: ts si ya está relleno, si no la fecha y hora en texto
+     */
+    private static LocalDateTime momentoDeVenta(ResultSet rs) throws SQLException {
+        long ts = rs.getLong("ts");
+        if (!rs.wasNull() && ts > 0) return aMomento(ts);
+        Long calculado = MarcaTiempo.deVenta(rs.getString("fecha"), rs.getString("hora"));
+        return calculado == null ? null : aMomento(calculado);
+    }
+
+    private static boolean esSQLite() {
+        return ConexionDB.tipoBase.equals("sqlite");
+    }
+
+    /**
+     * INSERT que suma sobre la fila existente (upsert en el dialecto de cada base)
+     */
+    private static String sqlSumar(String tabla, String[] claves, String[] valores) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tabla).append("(");
+        StringBuilder marcas = new StringBuilder();
+        for (String c : claves) {
+            sql.append(c).append(", ");
+            marcas.append("?,");
+        }
+        for (int i = 0; i < valores.length; i++) {
+            sql.append(valores[i]).append(i < valores.length - 1 ? ", " : ")");
+            marcas.append(i < valores.length - 1 ? "?," : "?");
+        }
+        sql.append(" VALUES(").append(marcas).append(")");
+
+        if (esSQLite()) {
+            sql.append(" ON CONFLICT(").append(String.join(", ", claves)).append(") DO UPDATE SET ");
+        } else {
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+        }
+        for (int i = 0; i < valores.length; i++) {
+            String v = valores[i];
+            sql.append(v).append(" = ").append(v).append(" + ")
+               .append(esSQLite() ? "excluded." + v : "VALUES(" + v + ")");
+            if (i < valores.length - 1) sql.append(", ");
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Junta las diferencias en memoria y las escribe ordenadas por clave
+     * (mismo orden en todas las terminales: evita bloqueos cruzados en MySQL)
+     */
+    private static class Acumulador {
+        final Map<Integer, double[]> dias = new TreeMap<>();            // cantidad, total, items
+        final Map<Long, double[]> horas = new TreeMap<>();              // cantidad, total, items
+        final Map<Integer, Map<String, double[]>> productos = new TreeMap<>(); // cantidad, total
+        private int enLote = 0;
+
+        void venta(LocalDateTime momento, double total) {
+            dia(momento)[0] += 1;
+            hora(momento)[0] += 1;
+            importe(momento, total);
+        }
+
+        void importe(LocalDateTime momento, double monto) {
+            dia(momento)[1] += monto;
+            hora(momento)[1] += monto;
+        }
+
+        void detalle(LocalDateTime momento, String nombre, int cantidad, double subtotal) {
+            dia(momento)[2] += cantidad;
+            hora(momento)[2] += cantidad;
+            double[] p = productos.computeIfAbsent(clave(momento.toLocalDate()), k -> new TreeMap<>())
+                    .computeIfAbsent(nombre == null ? "" : nombre, k -> new double[2]);
+            p[0] += cantidad;
+            p[1] += subtotal;
+        }
+
+        private double[] dia(LocalDateTime momento) {
+            return dias.computeIfAbsent(clave(momento.toLocalDate()), k -> new double[3]);
+        }
+
+        private double[] hora(LocalDateTime momento) {
+            long k = clave(momento.toLocalDate()) * 100L + momento.getHour();
+            return horas.computeIfAbsent(k, x -> new double[3]);
+        }
+
+        int leerVentas(Connection conn, String filtro, int signo) throws SQLException {
+            int n = 0;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT ts, fecha, hora, total FROM ventas" + filtro)) {
+                while (rs.next()) {
+                    LocalDateTime momento = momentoDeVenta(rs);
+                    if (momento == null) continue;
+                    dia(momento)[0] += signo;
+                    hora(momento)[0] += signo;
+                    importe(momento, signo * rs.getDouble("total"));
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        void leerDetalles(Connection conn, String filtro, int signo) throws SQLException {
+            String sql = "SELECT v.ts, v.fecha, v.hora, d.nombre_producto, d.cantidad, d.subtotal " +
+                         "FROM detalle_ventas d JOIN ventas v ON d.id_venta = v.id" + filtro;
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery(sql)) {
+                while (rs.next()) {
+                    LocalDateTime momento = momentoDeVenta(rs);
+                    if (momento == null) continue;
+                    detalle(momento, rs.getString("nombre_producto"),
+                            signo * rs.getInt("cantidad"), signo * rs.getDouble("subtotal"));
+                }
+            }
+        }
+
+        /**
+         * En una reconstrucción los lotes pueden ser enormes: se envían de a LOTE filas
+         */
+        private void agregarAlLote(PreparedStatement ps) throws SQLException {
+            ps.addBatch();
+            if (++enLote % LOTE == 0) ps.executeBatch();
+        }
+
+        void volcar(Connection conn) throws SQLException {
+            if (!dias.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sqlSumar("ventas_dia",
+                        new String[] { "dia" }, new String[] { "cantidad_ventas", "total", "items" }))) {
+                    for (Map.Entry<Integer, double[]> e : dias.entrySet()) {
+                        ps.setInt(1, e.getKey());
+                        ps.setInt(2, (int) e.getValue()[0]);
+                        ps.setDouble(3, e.getValue()[1]);
+                        ps.setInt(4, (int) e.getValue()[2]);
+                        agregarAlLote(ps);
+                    }
+                    ps.executeBatch();
+                }
+            }
+            if (!horas.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sqlSumar("ventas_hora",
+                        new String[] { "dia", "hora" }, new String[] { "cantidad_ventas", "total", "items" }))) {
+                    for (Map.Entry<Long, double[]> e : horas.entrySet()) {
+                        ps.setInt(1, (int) (e.getKey() / 100));
+                        ps.setInt(2, (int) (e.getKey() % 100));
+                        ps.setInt(3, (int) e.getValue()[0]);
+                        ps.setDouble(4, e.getValue()[1]);
+                        ps.setInt(5, (int) e.getValue()[2]);
+                        agregarAlLote(ps);
+                    }
+                    ps.executeBatch();
+                }
+            }
+            if (!productos.isEmpty()) {
+                try (PreparedStatement ps = conn.prepareStatement(sqlSumar("producto_dia",
+                        new String[] { "dia", "nombre_producto" }, new String[] { "cantidad", "total" }))) {
+                    for (Map.Entry<Integer, Map<String, double[]>> dia : productos.entrySet()) {
+                        for (Map.Entry<String, double[]> e : dia.getValue().entrySet()) {
+                            ps.setInt(1, dia.getKey());
+                            ps.setString(2, e.getKey());
+                            ps.setInt(3, (int) e.getValue()[0]);
+                            ps.setDouble(4, e.getValue()[1]);
+                            agregarAlLote(ps);
+                        }
+                    }
+                    ps.executeBatch();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package modelo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Configuración del sistema (db_config.properties) cargada una sola vez en memoria
+ * Los lectores obtienen una instantánea inmutable sin tocar el disco; cuando el archivo
+ * cambia (desde esta u otra aplicación) un WatchService la reemplaza de forma atómica
+ * y avisa a los suscriptores
+ */
+public class ServicioConfiguracion {
+
+    public static final String ARCHIVO = "db_config.properties";
+
+    private static final ServicioConfiguracion instance = new ServicioConfiguracion();
+
+    private final File archivo = new File(ARCHIVO);
+    private final AtomicReference<Configuracion> actual = new AtomicReference<>(Configuracion.VACIA);
+    private final List<Consumer<Configuracion>> suscriptores = new CopyOnWriteArrayList<>();
+    private final Object escritura = new Object();
+    private WatchService vigilante;
+    private Thread hiloVigilante;
+
+    private ServicioConfiguracion() {
+        recargar();
+    }
+
+    public static ServicioConfiguracion getInstance() {
+        return instance;
+    }
+
+    /**
+     * Acceso directo a la instantánea vigente (sin E/S)
+     */
+    public static Configuracion obtener() {
+        return instance.actual.get();
+    }
+
+    /**
+     * Registra un suscriptor que recibe la nueva instantánea en cada cambio
+     * Se invoca desde el hilo que detectó el cambio: la UI debe pasar por invokeLater
+     */
+    public void suscribir(Consumer<Configuracion> suscriptor) {
+        suscriptores.add(suscriptor);
+    }
+
+    public void desuscribir(Consumer<Configuracion> suscriptor) {
+        suscriptores.remove(suscriptor);
+    }
+
+    /**
+     * Vuelve a leer el archivo y publica la instantánea si cambió
+     */
+    public void recargar() {
+        Configuracion nueva = leerArchivo();
+        Configuracion anterior = actual.getAndSet(nueva);
+        if (!nueva.equals(anterior) && anterior != Configuracion.VACIA) {
+            Logger.info("Configuración recargada desde " + ARCHIVO);
+            for (Consumer<Configuracion> s : suscriptores) {
+                try {
+                    s.accept(nueva);
+                } catch (Exception e) {
+                    Logger.error("Error notificando cambio de configuración", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe las claves indicadas conservando el resto y publica el resultado
+     */
+    public void guardar(Map<String, String> cambios) throws IOException {
+        synchronized (escritura) {
+            Properties prop = new Properties();
+            if (archivo.exists()) {
+                try (FileInputStream fis = new FileInputStream(archivo)) {
+                    prop.load(fis);
+                }
+            }
+            prop.putAll(cambios);
+            try (FileOutputStream fos = new FileOutputStream(archivo)) {
+                prop.store(fos, "Configuracion Kiosco");
+            }
+        }
+        recargar(); // No esperar al WatchService: quien guarda ve el cambio al instante
+    }
+
+    public void guardar(String clave, String valor) throws IOException {
+        guardar(Collections.singletonMap(clave, valor));
+    }
+
+    /**
+     * Arranca el hilo que vigila el archivo (idempotente)
+     */
+    public synchronized void iniciarVigilancia() {
+        if (hiloVigilante != null) return;
+        try {
+            Path carpeta = archivo.getAbsoluteFile().toPath().getParent();
+            vigilante = FileSystems.getDefault().newWatchService();
+            carpeta.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            Logger.error("No se pudo vigilar " + ARCHIVO + "; los cambios externos requerirán reiniciar", e);
+            return;
+        }
+
+        hiloVigilante = new Thread(this::vigilar, "kiosco-config");
+        hiloVigilante.setDaemon(true);
+        hiloVigilante.start();
+    }
+
+    public synchronized void detener() {
+        if (vigilante != null) {
+            try {
+                vigilante.close();
+            } catch (IOException e) {
+                // Ignorar
+            }
+        }
+        hiloVigilante = null;
+        vigilante = null;
+    }
+
+    private void vigilar() {
+        WatchService ws = vigilante;
+        try {
+            while (true) {
+                WatchKey clave = ws.take();
+                boolean tocado = false;
+                for (WatchEvent<?> evento : clave.pollEvents()) {
+                    Object ruta = evento.context();
+                    if (ruta != null && ruta.toString().equals(archivo.getName())) tocado = true;
+                }
+                clave.reset();
+                if (tocado) {
+                    Thread.sleep(100); // Un editor puede escribir en varias pasadas
+                    recargar();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // detener()
+        }
+    }
+
+    private Configuracion leerArchivo() {
+        Map<String, String> valores = new HashMap<>();
+        if (archivo.exists()) {
+            try (FileInputStream fis = new FileInputStream(archivo)) {
+                Properties prop = new Properties();
+                prop.load(fis);
+                for (String k : prop.stringPropertyNames()) {
+                    valores.put(k, prop.getProperty(k).trim());
+                }
+            } catch (Exception e) {
+                // A mitad de una escritura: conservar la instantánea anterior
+                Logger.error("No se pudo leer " + ARCHIVO + ", se conserva la configuración anterior", e);
+                Configuracion previa = actual.get();
+                return previa == Configuracion.VACIA ? new Configuracion(valores) : previa;
+            }
+        }
+        return new Configuracion(valores);
+    }
+
+    /**
+     * Instantánea inmutable de la configuración
+     */
+    public static final class Configuracion {
+
+        static final Configuracion VACIA = new Configuracion(Collections.emptyMap());
+
+        private final Map<String, String> valores;
+
+        Configuracion(Map<String, String> valores) {
+            this.valores = Collections.unmodifiableMap(new HashMap<>(valores));
+        }
+
+        public String getTexto(String clave, String porDefecto) {
+            return valores.getOrDefault(clave, porDefecto);
+        }
+
+        public boolean getBooleano(String clave, boolean porDefecto) {
+            String v = valores.get(clave);
+            return v == null ? porDefecto : Boolean.parseBoolean(v);
+        }
+
+        public int getEntero(String clave, int porDefecto) {
+            String v = valores.get(clave);
+            if (v == null) return porDefecto;
+            try {
+                return Integer.parseInt(v);
+            } catch (NumberFormatException e) {
+                return porDefecto;
+            }
+        }
+
+        public String getTipoBase() { return getTexto("tipo", "mysql").toLowerCase(); }
+        public String getLicencia() { return getTexto("licencia", "FULL").toUpperCase(); }
+        public String getModoCarrito() { return getTexto("modo_carrito", "LOCAL").toUpperCase(); }
+        public String getModoManual() { return getTexto("modo_manual", "NORMAL").toUpperCase(); }
+        public boolean isImprimirTicket() { return getBooleano("imprimir_ticket", true); }
+        public boolean isCarritoCompartido() { return getBooleano("carrito_compartido", false); }
+        public boolean isSepararCigarros() { return getBooleano("separar_cigarros", true); }
+        public boolean isSonidoVenta() { return getBooleano("sonido_venta", true); }
+
+        /**
+         * Nombre impreso en el ticket (fijo en la versión LITE)
+         */
+        public String getNombreLocal() {
+            if (valores.isEmpty() || "LITE".equals(getTexto("licencia", "PRO").toUpperCase())) return "Kiosco";
+            return getTexto("nombre_local", "Mi Negocio");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Configuracion && valores.equals(((Configuracion) o).valores);
+        }
+
+        @Override
+        public int hashCode() {
+            return valores.hashCode();
+        }
+    }
+}
@@ -23,6 +23,13 @@ public class Sesion {
         }
     }
     
+    /**
+     * Lectura sin lock para el logger (una sola lectura de un campo volatile)
+     */
+    static String usuarioActual() {
+        return usuario;
+    }
+    
     public static String getRol() {
         lock.readLock().lock();
         try {
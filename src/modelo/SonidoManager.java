@@ -1,7 +1,6 @@
 package modelo;
 
-import java.io.*;
-import java.util.Properties;
+import java.io.IOException;
 
 /**
  * Gestor de sonidos del sistema
@@ -9,28 +8,18 @@ import java.util.Properties;
  */
 public class SonidoManager {
     
-    private static boolean sonidoActivo = true;
+    private static volatile boolean sonidoActivo = true;
     
     static {
         cargarConfiguracion();
+        ServicioConfiguracion.getInstance().suscribir(c -> sonidoActivo = c.isSonidoVenta());
     }
     
     /**
-     * Carga la configuración de sonido desde db_config.properties
+     * Toma la configuración de sonido de la instantánea en memoria
      */
     private static void cargarConfiguracion() {
-        try {
-            File f = new File("db_config.properties");
-            if (f.exists()) {
-                Properties prop = new Properties();
-                try (FileInputStream fis = new FileInputStream(f)) {
-                    prop.load(fis);
-                }
-                sonidoActivo = prop.getProperty("sonido_venta", "true").equals("true");
-            }
-        } catch (Exception e) {
-            Logger.error("Error cargando config de sonido", e);
-        }
+        sonidoActivo = ServicioConfiguracion.obtener().isSonidoVenta();
     }
     
     /**
@@ -87,21 +76,8 @@ public class SonidoManager {
      */
     private static void guardarConfiguracion() {
         try {
-            File f = new File("db_config.properties");
-            Properties prop = new Properties();
-            
-            if (f.exists()) {
-                try (FileInputStream fis = new FileInputStream(f)) {
-                    prop.load(fis);
-                }
-            }
-            
-            prop.setProperty("sonido_venta", sonidoActivo ? "true" : "false");
-            
-            try (FileOutputStream fos = new FileOutputStream(f)) {
-                prop.store(fos, "Configuracion Kiosco");
-            }
-        } catch (Exception e) {
+            ServicioConfiguracion.getInstance().guardar("sonido_venta", sonidoActivo ? "true" : "false");
+        } catch (IOException e) {
             Logger.error("Error guardando config de sonido", e);
         }
     }
@@ -1,105 +1,42 @@
 package modelo;
 
-import javax.print.*;
-import javax.swing.JOptionPane;
-import java.io.File;
-import java.io.FileInputStream;
-import java.util.Properties;
+import java.util.function.Consumer;
 
+/**
+ * Tickets de venta para impresoras térmicas (ESC/POS)
+ * Los bytes los arma CodificadorTicket; la impresión en sí la hace ColaImpresion,
+ * de a un ticket por vez
+ */
 public class TicketImpresora {
 
-    public static void imprimir(String contenido) {
-        new Thread(() -> {
-            try {
-                // 1. Busca la impresora PREDETERMINADA (La que tiene el check verde en Windows)
-                PrintService service = PrintServiceLookup.lookupDefaultPrintService();
-                
-                if (service == null) {
-                    JOptionPane.showMessageDialog(null, "No se encontró una impresora predeterminada.");
-                    return;
-                }
+    private static final CodificadorTicket codificador = new CodificadorTicket();
 
-                // 2. Obtener nombre del local desde configuración
-                String nombreLocal = obtenerNombreLocal();
-
-                // 3. Construimos el Ticket con códigos ESC/POS
-                // Estos códigos funcionan en casi cualquier térmica (XPrinter, Epson, Hasar, chinas, etc.)
-                String ESC = "\u001B";
-                String GS = "\u001D";
-                
-                StringBuilder ticket = new StringBuilder();
-
-                // --- INICIO ---
-                ticket.append(ESC).append("@"); // Inicializar impresora
-
-                // --- TÍTULO GIGANTE CENTRADO ---
-                ticket.append(ESC).append("a").append((char)1); // Centrar
-                ticket.append(ESC).append("!").append((char)48); // Doble alto y Doble ancho
-                ticket.append(nombreLocal.toUpperCase()).append("\n");
-                ticket.append(ESC).append("!").append((char)0); // Volver a letra normal
-
-                // --- SEPARADOR ---
-                ticket.append("--------------------------------\n");
-                ticket.append(ESC).append("a").append((char)0); // Alinear Izquierda
-
-                // --- CONTENIDO DEL TICKET ---
-                // Quitamos acentos porque en modo RAW a veces salen caracteres raros
-                String textoLimpio = contenido
-                        .replace("á", "a").replace("Á", "A")
-                        .replace("é", "e").replace("É", "E")
-                        .replace("í", "i").replace("Í", "I")
-                        .replace("ó", "o").replace("Ó", "O")
-                        .replace("ú", "u").replace("Ú", "U")
-                        .replace("ñ", "n").replace("Ñ", "N")
-                        .replace("°", " ");
-
-                ticket.append(textoLimpio);
-
-                // --- FINAL Y CORTE ---
-                ticket.append("\n\n\n\n\n"); // Avanzar papel
-                ticket.append(GS).append("V").append((char)66).append((char)0); // CORTAR PAPEL
-
-                // 4. ENVIAR BYTES (Lo importante)
-                byte[] bytes = ticket.toString().getBytes();
-
-                DocFlavor flavor = DocFlavor.BYTE_ARRAY.AUTOSENSE;
-                Doc doc = new SimpleDoc(bytes, flavor, null);
-
-                DocPrintJob job = service.createPrintJob();
-                job.print(doc, null);
+    /**
+     * Arma el ticket con el texto dado y lo deja en la cola de impresión
+     * Los errores de impresión se avisan por ColaImpresion.setAvisoError
+     * @return false si la cola está llena y el ticket no se encoló
+     */
+    public static boolean imprimir(String contenido) {
+        return imprimir(t -> t.texto(contenido));
+    }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                JOptionPane.showMessageDialog(null, "Error al Imprimir: " + e.getMessage());
-            }
-        }).start();
+    /**
+     * Igual que imprimir(String), pero el cuerpo se escribe directo en el codificador
+     * (sin armar un String intermedio)
+     */
+    public static synchronized boolean imprimir(Consumer<CodificadorTicket> cuerpo) {
+        ServicioConfiguracion.Configuracion config = ServicioConfiguracion.obtener();
+        codificador.iniciar(config.getNombreLocal(), obtenerPaginaCodigos(config));
+        cuerpo.accept(codificador);
+        // El diario de la cola copia los bytes antes de devolver: el buffer se puede reutilizar
+        return ColaImpresion.getInstance().encolar(codificador.terminar());
     }
-    
+
     /**
-     * Obtiene el nombre del local desde la configuración
+     * Página de códigos de la impresora: ticket_codigos=ASCII (por defecto) o CP850
      */
-    private static String obtenerNombreLocal() {
-        try {
-            File f = new File("db_config.properties");
-            if (f.exists()) {
-                Properties prop = new Properties();
-                try (FileInputStream fis = new FileInputStream(f)) {
-                    prop.load(fis);
-                }
-                
-                String licencia = prop.getProperty("licencia", "PRO").trim().toUpperCase();
-                
-                if ("LITE".equals(licencia)) {
-                    return "Kiosco"; // Nombre fijo para versión LITE
-                } else {
-                    return prop.getProperty("nombre_local", "Mi Negocio").trim();
-                }
-            }
-        } catch (Exception e) {
-            Logger.error("Error al obtener nombre del local", e);
-        }
-        
-        // Valor por defecto
-        return "Kiosco";
+    private static CodificadorTicket.PaginaCodigos obtenerPaginaCodigos(ServicioConfiguracion.Configuracion config) {
+        String valor = config.getTexto("ticket_codigos", "ASCII").toUpperCase();
+        return valor.equals("CP850") ? CodificadorTicket.PaginaCodigos.CP850 : CodificadorTicket.PaginaCodigos.ASCII;
     }
-}
\ No newline at end of file
+}
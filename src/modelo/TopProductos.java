@@ -0,0 +1,321 @@
+package modelo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Productos más vendidos del día y del mes, calculados en memoria a medida que
+ * se confirman las ventas (algoritmo Space-Saving)
+ * Mientras la cantidad de productos distintos no supera la capacidad los conteos
+ * son exactos; por encima, los más vendidos se conservan y el resto se aproxima
+ * Al cerrar se guarda un punto de control en disco; al iniciar se usa si sigue al
+ * día con las ventas y, si no, se recarga desde producto_dia
+ */
+public class TopProductos {
+
+    public static final String ARCHIVO = "top_productos.dat";
+
+    private static final int CAPACIDAD = 256;
+    private static final int VERSION_ARCHIVO = 1;
+    private static final long RESINCRONIZAR_MYSQL_MS = 5 * 60 * 1000L;
+    private static final int INTENTOS_RESINCRONIZAR = 3;
+
+    private static final TopProductos instance = new TopProductos();
+
+    private Ventana dia = new Ventana();
+    private Ventana mes = new Ventana();
+    private long ultimaVenta = 0;       // ts de la última venta contada
+    private long sincronizadoEn = 0;    // System.currentTimeMillis() de la última carga desde la BD
+    private long cambios = 0;           // Ventas y descuentos contados; si se mueve durante una recarga, se descarta
+
+    private TopProductos() {}
+
+    public static TopProductos getInstance() {
+        return instance;
+    }
+
+    /**
+     * Carga el punto de control o, si quedó atrasado, recalcula desde producto_dia
+     */
+    public void iniciar() {
+        long enBD = ultimaVentaEnBD();
+        synchronized (this) {
+            if (leerPuntoControl() && ultimaVenta >= enBD) {
+                Logger.debug("Top de productos restaurado desde " + ARCHIVO);
+                sincronizadoEn = System.currentTimeMillis();
+                return;
+            }
+        }
+        resincronizar();
+    }
+
+    /**
+     * Suma una venta ya confirmada
+     * @param momento Instante con el que se guardó la venta (define su día y su mes)
+     */
+    public synchronized void registrarVenta(Venta venta, LocalDateTime momento) {
+        for (Venta.DetalleVenta item : venta.getItems()) {
+            sumar(momento.toLocalDate(), item.nombreProducto, item.cantidad);
+        }
+        ultimaVenta = Math.max(ultimaVenta, MarcaTiempo.de(momento));
+    }
+
+    /**
+     * Descuenta un ítem borrado de una venta confirmada
+     */
+    public synchronized void descontar(LocalDate diaVenta, String nombre, int cantidad) {
+        sumar(diaVenta, nombre, -cantidad);
+    }
+
+    private void sumar(LocalDate fecha, String nombre, int cantidad) {
+        if (nombre == null) return;
+        cambios++;
+        dia.sumar(ResumenVentas.clave(fecha), nombre, cantidad);
+        mes.sumar(claveMes(fecha), nombre, cantidad);
+    }
+
+    /**
+     * Los más vendidos de hoy, de mayor a menor
+     */
+    public List<EstadisticasDAO.ProductoVendido> topDelDia(int limite) {
+        alDia();
+        synchronized (this) {
+            return dia.top(ResumenVentas.clave(LocalDate.now()), limite);
+        }
+    }
+
+    /**
+     * Los más vendidos del mes en curso, de mayor a menor
+     */
+    public List<EstadisticasDAO.ProductoVendido> topDelMes(int limite) {
+        alDia();
+        synchronized (this) {
+            return mes.top(claveMes(LocalDate.now()), limite);
+        }
+    }
+
+    /**
+     * Con MySQL otras terminales también venden: cada tanto se vuelve a leer producto_dia
+     */
+    private void alDia() {
+        if (!ConexionDB.tipoBase.equals("mysql")) return;
+        synchronized (this) {
+            long ahora = System.currentTimeMillis();
+            if (ahora - sincronizadoEn <= RESINCRONIZAR_MYSQL_MS) return;
+            sincronizadoEn = ahora; // Las demás consultas no disparan otra recarga mientras tanto
+        }
+        resincronizar();
+    }
+
+    /**
+     * Recarga ambas ventanas desde producto_dia (al iniciar, tras borrar una caja
+     * o reconstruir los resúmenes)
+     * La consulta corre sin tomar el monitor, así no frena a registrarVenta; el
+     * resultado se cambia solo si mientras tanto no se contó nada en memoria
+     */
+    public void resincronizar() {
+        for (int intento = 0; intento < INTENTOS_RESINCRONIZAR; intento++) {
+            long vistos;
+            synchronized (this) {
+                vistos = cambios;
+            }
+            Carga carga = cargarDesdeBD();
+            synchronized (this) {
+                sincronizadoEn = System.currentTimeMillis();
+                if (carga == null) return;
+                if (cambios == vistos) {
+                    dia = carga.dia;
+                    mes = carga.mes;
+                    ultimaVenta = carga.ultimaVenta;
+                    return;
+                }
+            }
+        }
+        Logger.warn("Ventas en curso durante la recarga del top de productos, se mantiene el conteo en memoria");
+    }
+
+    /**
+     * Lee producto_dia en ventanas nuevas
+     * @return null si la carga no salió completa
+     */
+    private Carga cargarDesdeBD() {
+        LocalDate hoy = LocalDate.now();
+        int claveHoy = ResumenVentas.clave(hoy);
+        String sql = "SELECT dia, nombre_producto, cantidad FROM producto_dia WHERE dia >= ? AND dia <= ? AND cantidad > 0";
+
+        Carga carga = new Carga();
+        carga.dia.reiniciar(claveHoy);
+        carga.mes.reiniciar(claveMes(hoy));
+        try (Connection conn = ConexionDB.conectarLectura();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, ResumenVentas.clave(hoy.withDayOfMonth(1)));
+            ps.setInt(2, claveHoy);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String nombre = rs.getString(2);
+                    int cantidad = rs.getInt(3);
+                    if (rs.getInt(1) == claveHoy) carga.dia.sumar(claveHoy, nombre, cantidad);
+                    carga.mes.sumar(claveMes(hoy), nombre, cantidad);
+                }
+            }
+            carga.ultimaVenta = ultimaVentaEnBD(conn); // Sin este dato la carga no sirve para el punto de control
+        } catch (SQLException e) {
+            Logger.error("Error cargando el top de productos desde producto_dia", e);
+            return null;
+        }
+        return carga;
+    }
+
+    /**
+     * Guarda las dos ventanas en disco (al cerrar la aplicación)
+     */
+    public synchronized void guardarPuntoControl() {
+        File destino = new File(ARCHIVO);
+        File temporal = new File(ARCHIVO + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temporal))) {
+            out.writeInt(VERSION_ARCHIVO);
+            out.writeLong(ultimaVenta);
+            dia.escribir(out);
+            mes.escribir(out);
+        } catch (IOException e) {
+            Logger.error("No se pudo guardar " + ARCHIVO, e);
+            return;
+        }
+        if (destino.exists() && !destino.delete() || !temporal.renameTo(destino)) {
+            Logger.warn("No se pudo reemplazar " + ARCHIVO);
+        }
+    }
+
+    private boolean leerPuntoControl() {
+        File origen = new File(ARCHIVO);
+        if (!origen.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(origen))) {
+            if (in.readInt() != VERSION_ARCHIVO) return false;
+            ultimaVenta = in.readLong();
+            if (ultimaVenta == Long.MAX_VALUE) return false; // Lo dejó una versión que guardaba el valor de error
+            dia.leer(in);
+            mes.leer(in);
+        } catch (IOException e) {
+            Logger.warn("Punto de control " + ARCHIVO + " ilegible, se recalcula el top");
+            return false;
+        }
+        // Si cambió el día o el mes, la ventana vieja no sirve
+        LocalDate hoy = LocalDate.now();
+        return dia.clave == ResumenVentas.clave(hoy) && mes.clave == claveMes(hoy);
+    }
+
+    private long ultimaVentaEnBD() {
+        try (Connection conn = ConexionDB.conectarLectura()) {
+            return ultimaVentaEnBD(conn);
+        } catch (SQLException e) {
+            return Long.MAX_VALUE; // Sin dato: no confiar en el punto de control (nunca se guarda)
+        }
+    }
+
+    private static long ultimaVentaEnBD(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT MAX(ts) FROM ventas");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static int claveMes(LocalDate fecha) {
+        return fecha.getYear() * 100 + fecha.getMonthValue();
+    }
+
+    private static class Carga {
+        final Ventana dia = new Ventana();
+        final Ventana mes = new Ventana();
+        long ultimaVenta;
+    }
+
+    /**
+     * Una ventana (día o mes) con sus contadores Space-Saving
+     * Al llegar una clave nueva la ventana se vacía
+     */
+    private static class Ventana {
+        int clave = 0;
+        final Map<String, long[]> contadores = new HashMap<>(); // cuenta, error
+
+        void reiniciar(int nuevaClave) {
+            clave = nuevaClave;
+            contadores.clear();
+        }
+
+        void sumar(int claveMomento, String nombre, int cantidad) {
+            if (claveMomento != clave) {
+                if (claveMomento < clave) return; // Venta de una ventana ya cerrada
+                reiniciar(claveMomento);
+            }
+
+            long[] c = contadores.get(nombre);
+            if (c != null) {
+                c[0] = Math.max(0, c[0] + cantidad);
+                return;
+            }
+            if (cantidad <= 0) return; // Descuento de algo que no se está siguiendo
+
+            if (contadores.size() < CAPACIDAD) {
+                contadores.put(nombre, new long[] { cantidad, 0 });
+                return;
+            }
+
+            // Lleno: el nuevo reemplaza al mínimo y hereda su cuenta como error
+            String menor = null;
+            long minimo = Long.MAX_VALUE;
+            for (Map.Entry<String, long[]> e : contadores.entrySet()) {
+                if (e.getValue()[0] < minimo) {
+                    minimo = e.getValue()[0];
+                    menor = e.getKey();
+                }
+            }
+            contadores.remove(menor);
+            contadores.put(nombre, new long[] { minimo + cantidad, minimo });
+        }
+
+        List<EstadisticasDAO.ProductoVendido> top(int claveActual, int limite) {
+            List<EstadisticasDAO.ProductoVendido> lista = new ArrayList<>();
+            if (claveActual != clave) return lista; // Todavía no se vendió nada en este período
+
+            List<Map.Entry<String, long[]>> ordenados = new ArrayList<>(contadores.entrySet());
+            ordenados.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            for (Map.Entry<String, long[]> e : ordenados) {
+                if (lista.size() >= limite || e.getValue()[0] <= 0) break;
+                lista.add(new EstadisticasDAO.ProductoVendido(e.getKey(), (int) e.getValue()[0]));
+            }
+            return lista;
+        }
+
+        void escribir(DataOutputStream out) throws IOException {
+            out.writeInt(clave);
+            out.writeInt(contadores.size());
+            for (Map.Entry<String, long[]> e : contadores.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue()[0]);
+                out.writeLong(e.getValue()[1]);
+            }
+        }
+
+        void leer(DataInputStream in) throws IOException {
+            reiniciar(in.readInt());
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                contadores.put(in.readUTF(), new long[] { in.readLong(), in.readLong() });
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package modelo;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Totales acumulados de cada caja (tabla caja_totales, una fila por caja)
+ * Se actualizan por diferencia dentro de la misma transacción que la venta, el
+ * borrado de ítem o el gasto; leer el desglose de la caja es una sola fila
+ * Si la fila falta (cajas anteriores a la migración v9 o datos migrados) se
+ * reconstruye sumando ventas, detalles y gastos de esa caja
+ */
+public final class TotalesCaja {
+
+    // Posiciones del arreglo que devuelve leer()
+    public static final int BRUTO_EFECTIVO = 0;
+    public static final int BRUTO_DIGITAL = 1;
+    public static final int CIGA_EFECTIVO = 2;
+    public static final int CIGA_DIGITAL = 3;
+    public static final int ITEMS = 4;
+    public static final int GASTOS = 5;
+
+    private static final String SQL_SUMAR = "UPDATE caja_totales SET " +
+            "bruto_efectivo = bruto_efectivo + ?, bruto_digital = bruto_digital + ?, " +
+            "ciga_efectivo = ciga_efectivo + ?, ciga_digital = ciga_digital + ?, " +
+            "cantidad_items = cantidad_items + ?, gastos = gastos + ? WHERE id_caja = ?";
+    private static final String SQL_LEER = "SELECT bruto_efectivo, bruto_digital, ciga_efectivo, ciga_digital, " +
+            "cantidad_items, gastos FROM caja_totales WHERE id_caja = ?";
+
+    private TotalesCaja() {}
+
+    /**
+     * Suma una venta recién insertada (cabecera y detalles ya están en la transacción)
+     */
+    public static void sumarVenta(Connection conn, int idCaja, Venta venta) throws SQLException {
+        double cigarrillos = 0;
+        int items = 0;
+        for (Venta.DetalleVenta item : venta.getItems()) {
+            if (item.esCigarrillo) cigarrillos += item.subtotal;
+            items += item.cantidad;
+        }
+        sumarMovimiento(conn, idCaja, venta.getMedioPago(), venta.getTotal(), cigarrillos, items);
+    }
+
+    /**
+     * Suma importes de un movimiento de ventas; con valores negativos lo descuenta
+     * (por ejemplo, al borrar un ítem de una venta)
+     */
+    public static void sumarMovimiento(Connection conn, int idCaja, String medioPago,
+                                       double bruto, double cigarrillos, int items) throws SQLException {
+        boolean efectivo = esEfectivo(medioPago);
+        double[] delta = new double[6];
+        delta[efectivo ? BRUTO_EFECTIVO : BRUTO_DIGITAL] = bruto;
+        delta[efectivo ? CIGA_EFECTIVO : CIGA_DIGITAL] = cigarrillos;
+        delta[ITEMS] = items;
+        aplicar(conn, idCaja, delta);
+    }
+
+    /**
+     * Suma un gasto a la caja (negativo al anularlo)
+     */
+    public static void sumarGasto(Connection conn, int idCaja, double monto) throws SQLException {
+        double[] delta = new double[6];
+        delta[GASTOS] = monto;
+        aplicar(conn, idCaja, delta);
+    }
+
+    /**
+     * Totales de la caja, reconstruyendo la fila si no existe
+     * @return Arreglo indexado por BRUTO_EFECTIVO ... GASTOS
+     */
+    public static double[] leer(Connection conn, int idCaja) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_LEER)) {
+            ps.setInt(1, idCaja);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) return desdeFila(rs, 1);
+            }
+        }
+        return reconstruir(conn, idCaja);
+    }
+
+    /**
+     * Lee los seis totales a partir de la columna indicada de una fila
+     */
+    static double[] desdeFila(ResultSet rs, int primeraColumna) throws SQLException {
+        double[] t = new double[6];
+        for (int i = 0; i < t.length; i++) t[i] = rs.getDouble(primeraColumna + i);
+        return t;
+    }
+
+    /**
+     * Recalcula los totales de una caja desde ventas, detalles y gastos y los guarda
+     * Si otra terminal creó la fila mientras tanto se conserva la existente
+     */
+    public static double[] reconstruir(Connection conn, int idCaja) throws SQLException {
+        double[] t = calcular(conn, idCaja);
+        if (insertar(conn, idCaja, t)) {
+            Logger.debug("Totales de caja #" + idCaja + " reconstruidos");
+        }
+        return t;
+    }
+
+    /**
+     * Quita la fila de la caja (al eliminar la caja)
+     */
+    public static void borrar(Connection conn, int idCaja) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM caja_totales WHERE id_caja = ?")) {
+            ps.setInt(1, idCaja);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void aplicar(Connection conn, int idCaja, double[] delta) throws SQLException {
+        if (actualizar(conn, idCaja, delta) > 0) return;
+
+        // Sin fila: la reconstrucción ya incluye este movimiento, que está en la misma transacción
+        if (insertar(conn, idCaja, calcular(conn, idCaja))) return;
+
+        // Otra terminal la creó entre medio (sin ver este movimiento, todavía sin confirmar)
+        if (actualizar(conn, idCaja, delta) > 0) return;
+        throw new SQLException("No se pudieron actualizar los totales de la caja #" + idCaja);
+    }
+
+    private static boolean insertar(Connection conn, int idCaja, double[] t) throws SQLException {
+        String sql = (ConexionDB.tipoBase.equals("sqlite") ? "INSERT OR IGNORE" : "INSERT IGNORE") +
+                " INTO caja_totales(id_caja, bruto_efectivo, bruto_digital, ciga_efectivo, ciga_digital, cantidad_items, gastos)" +
+                " VALUES(?,?,?,?,?,?,?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, idCaja);
+            for (int i = 0; i < t.length; i++) {
+                if (i == ITEMS) ps.setInt(i + 2, (int) t[i]);
+                else ps.setDouble(i + 2, t[i]);
+            }
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    private static int actualizar(Connection conn, int idCaja, double[] delta) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SQL_SUMAR)) {
+            for (int i = 0; i < delta.length; i++) {
+                if (i == ITEMS) ps.setInt(i + 1, (int) delta[i]);
+                else ps.setDouble(i + 1, delta[i]);
+            }
+            ps.setInt(7, idCaja);
+            return ps.executeUpdate();
+        }
+    }
+
+    private static double[] calcular(Connection conn, int idCaja) throws SQLException {
+        double[] t = new double[6];
+
+        String sqlBruto = "SELECT medio_pago, SUM(total) FROM ventas WHERE id_caja = ? GROUP BY medio_pago";
+        try (PreparedStatement ps = conn.prepareStatement(sqlBruto)) {
+            ps.setInt(1, idCaja);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) t[esEfectivo(rs.getString(1)) ? BRUTO_EFECTIVO : BRUTO_DIGITAL] += rs.getDouble(2);
+            }
+        }
+
+        // Los detalles que RellenoCodigosProducto todavía no alcanzó se clasifican por nombre
+        String sqlDetalle = "SELECT v.medio_pago, " +
+                "SUM(CASE WHEN d.es_cigarrillo = 1 OR (d.codigo_producto IS NULL AND EXISTS " +
+                "(SELECT 1 FROM productos p WHERE p.nombre = d.nombre_producto AND p.es_cigarrillo = 1)) " +
+                "THEN d.subtotal ELSE 0 END), SUM(d.cantidad) " +
+                "FROM detalle_ventas d JOIN ventas v ON d.id_venta = v.id " +
+                "WHERE v.id_caja = ? GROUP BY v.medio_pago";
+        try (PreparedStatement ps = conn.prepareStatement(sqlDetalle)) {
+            ps.setInt(1, idCaja);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    t[esEfectivo(rs.getString(1)) ? CIGA_EFECTIVO : CIGA_DIGITAL] += rs.getDouble(2);
+                    t[ITEMS] += rs.getInt(3);
+                }
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("SELECT SUM(monto) FROM gastos WHERE id_caja = ?")) {
+            ps.setInt(1, idCaja);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) t[GASTOS] = rs.getDouble(1);
+            }
+        }
+        return t;
+    }
+
+    private static boolean esEfectivo(String medioPago) {
+        return "Efectivo".equalsIgnoreCase(medioPago);
+    }
+}
@@ -22,16 +22,24 @@ public class Venta {
     
     // Clase interna para el detalle
     public static class DetalleVenta {
+        public long codigoProducto; // 0 = sin producto asociado (ítem manual)
         public String nombreProducto;
         public double precioUnitario;
         public int cantidad;
         public double subtotal;
+        public boolean esCigarrillo;
 
         public DetalleVenta(String nombre, double precio, int cant) {
+            this(0, nombre, precio, cant, false);
+        }
+
+        public DetalleVenta(long codigo, String nombre, double precio, int cant, boolean esCigarrillo) {
+            this.codigoProducto = codigo;
             this.nombreProducto = nombre;
             this.precioUnitario = precio;
             this.cantidad = cant;
             this.subtotal = precio * cant;
+            this.esCigarrillo = esCigarrillo;
         }
     }
 }
\ No newline at end of file
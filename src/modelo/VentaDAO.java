@@ -1,63 +1,33 @@
 package modelo;
 
 import java.sql.*;
-import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class VentaDAO {
 
+    private static final String SQL_VENTA = "INSERT INTO ventas(id_caja, fecha, hora, total, medio_pago, ts) VALUES(?,?,?,?,?,?)";
+    private static final String SQL_DETALLE = "INSERT INTO detalle_ventas(id_venta, nombre_producto, precio_unitario, cantidad, subtotal, codigo_producto, es_cigarrillo) VALUES(?,?,?,?,?,?,?)";
+    private static final String SQL_STOCK = "UPDATE productos SET stock = stock - ? WHERE codigo = ?";
+
     public boolean registrarVenta(int idCaja, Venta venta) {
-        String sqlVenta = "INSERT INTO ventas(id_caja, fecha, hora, total, medio_pago) VALUES(?,?,?,?,?)";
-        String sqlDetalle = "INSERT INTO detalle_ventas(id_venta, nombre_producto, precio_unitario, cantidad, subtotal) VALUES(?,?,?,?,?)";
-        String sqlStock = "UPDATE productos SET stock = stock - ? WHERE nombre = ?";
-        
         Connection conn = null;
 
         try {
             conn = ConexionDB.conectar();
             conn.setAutoCommit(false); // Inicio Transacción
 
-            // 1. Cabecera de Venta
-            PreparedStatement pstVenta = conn.prepareStatement(sqlVenta, Statement.RETURN_GENERATED_KEYS);
-            pstVenta.setInt(1, idCaja);
-            pstVenta.setString(2, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
-            pstVenta.setString(3, LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
-            pstVenta.setDouble(4, venta.getTotal());
-            pstVenta.setString(5, venta.getMedioPago());
-            pstVenta.executeUpdate();
-
-            ResultSet rs = pstVenta.getGeneratedKeys();
-            int idVenta = 0;
-            if (rs.next()) idVenta = rs.getInt(1);
-
-            // 2. Detalles de Venta
-            PreparedStatement pstDetalle = conn.prepareStatement(sqlDetalle);
-            PreparedStatement pstStock = conn.prepareStatement(sqlStock);
-
-            for (Venta.DetalleVenta item : venta.getItems()) {
-                // Insertar detalle
-                pstDetalle.setInt(1, idVenta);
-                pstDetalle.setString(2, item.nombreProducto);
-                pstDetalle.setDouble(3, item.precioUnitario);
-                pstDetalle.setInt(4, item.cantidad);
-                pstDetalle.setDouble(5, item.subtotal);
-                pstDetalle.executeUpdate();
-                
-                // Descontar stock DENTRO de la transacción (solo si NO es LITE)
-                if (!ConexionDB.licencia.equals("LITE")) {
-                    pstStock.setInt(1, item.cantidad);
-                    pstStock.setString(2, item.nombreProducto);
-                    int filasAfectadas = pstStock.executeUpdate();
-                    
-                    // Verificar que se pudo descontar stock
-                    if (filasAfectadas == 0) {
-                        throw new SQLException("No se pudo descontar stock para: " + item.nombreProducto);
-                    }
-                }
-            }
+            LocalDateTime momento = insertarVenta(conn, idCaja, venta);
 
             conn.commit(); 
+            actualizarCatalogo(venta);
+            TopProductos.getInstance().registrarVenta(venta, momento);
+            CacheTablero.getInstance().invalidar();
             return true;
 
         } catch (SQLException e) {
@@ -88,6 +58,175 @@ public class VentaDAO {
         }
     }
     
+    /**
+     * Commit agrupado: registra varias ventas en una sola transacción (un solo fsync)
+     * Cada venta corre bajo su propio savepoint, así la que falla se deshace sola
+     * sin arrastrar a las demás
+     * @return Resultado por venta, en el mismo orden; todo false si falla el commit
+     */
+    public boolean[] registrarVentas(int[] idCajas, List<Venta> ventas) {
+        boolean[] resultados = new boolean[ventas.size()];
+        LocalDateTime[] momentos = new LocalDateTime[ventas.size()];
+        Connection conn = null;
+
+        try {
+            conn = ConexionDB.conectar();
+            conn.setAutoCommit(false);
+
+            for (int i = 0; i < ventas.size(); i++) {
+                Savepoint punto = conn.setSavepoint();
+                try {
+                    momentos[i] = insertarVenta(conn, idCajas[i], ventas.get(i));
+                    resultados[i] = true;
+                } catch (SQLException e) {
+                    conn.rollback(punto);
+                    Logger.error("Error SQL al registrar venta " + (i + 1) + " de " + ventas.size() + " del grupo", e);
+                }
+                try {
+                    conn.releaseSavepoint(punto);
+                } catch (SQLException e) {
+                    // Algunos drivers lo liberan solos al volver a él
+                }
+            }
+
+            conn.commit();
+            for (int i = 0; i < ventas.size(); i++) {
+                if (!resultados[i]) continue;
+                actualizarCatalogo(ventas.get(i));
+                TopProductos.getInstance().registrarVenta(ventas.get(i), momentos[i]);
+            }
+            CacheTablero.getInstance().invalidar();
+            return resultados;
+
+        } catch (Exception e) {
+            try { 
+                if (conn != null) conn.rollback(); 
+            } catch (SQLException ex) { 
+                Logger.error("Error en rollback de transacción", ex);
+            }
+            Logger.error("Error al registrar grupo de " + ventas.size() + " ventas", e);
+            return new boolean[ventas.size()];
+        } finally {
+            try { 
+                if (conn != null) { 
+                    conn.setAutoCommit(true); 
+                    conn.close(); 
+                } 
+            } catch (SQLException e) {
+                Logger.error("Error al cerrar conexión", e);
+            }
+        }
+    }
+
+    /**
+     * Inserta cabecera, detalles y descuento de stock de una venta
+     * dentro de la transacción abierta en conn (no hace commit)
+     * @return Instante con el que quedó guardada
+     */
+    private LocalDateTime insertarVenta(Connection conn, int idCaja, Venta venta) throws SQLException {
+        // 1. Cabecera de Venta
+        int idVenta = 0;
+        LocalDateTime ahora = LocalDateTime.now(); // Un solo instante para fecha, hora y ts
+        try (PreparedStatement pstVenta = conn.prepareStatement(SQL_VENTA, Statement.RETURN_GENERATED_KEYS)) {
+            pstVenta.setInt(1, idCaja);
+            pstVenta.setString(2, ahora.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")));
+            pstVenta.setString(3, ahora.format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+            pstVenta.setDouble(4, venta.getTotal());
+            pstVenta.setString(5, venta.getMedioPago());
+            pstVenta.setLong(6, MarcaTiempo.de(ahora));
+            pstVenta.executeUpdate();
+
+            ResultSet rs = pstVenta.getGeneratedKeys();
+            if (rs.next()) idVenta = rs.getInt(1);
+        }
+
+        // 2. Detalles de Venta y stock en lote: un viaje por sentencia en vez de uno por ítem
+        //    (con rewriteBatchedStatements, MySQL recibe un único INSERT multi-fila)
+        //    El stock se descuenta por código (clave primaria); los ítems manuales no tienen código
+        boolean descontarStock = !ConexionDB.licencia.equals("LITE");
+        List<Venta.DetalleVenta> conStock = new ArrayList<>();
+        try (PreparedStatement pstDetalle = conn.prepareStatement(SQL_DETALLE);
+             PreparedStatement pstStock = conn.prepareStatement(SQL_STOCK)) {
+
+            for (Venta.DetalleVenta item : venta.getItems()) {
+                pstDetalle.setInt(1, idVenta);
+                pstDetalle.setString(2, item.nombreProducto);
+                pstDetalle.setDouble(3, item.precioUnitario);
+                pstDetalle.setInt(4, item.cantidad);
+                pstDetalle.setDouble(5, item.subtotal);
+                pstDetalle.setLong(6, item.codigoProducto);
+                pstDetalle.setInt(7, item.esCigarrillo ? 1 : 0);
+                pstDetalle.addBatch();
+                
+                // Descontar stock DENTRO de la transacción (solo si NO es LITE)
+                if (descontarStock && item.codigoProducto > 0) {
+                    pstStock.setInt(1, item.cantidad);
+                    pstStock.setLong(2, item.codigoProducto);
+                    pstStock.addBatch();
+                    conStock.add(item);
+                }
+            }
+
+            pstDetalle.executeBatch();
+            
+            if (!conStock.isEmpty()) {
+                verificarStockDescontado(conn, conStock, pstStock.executeBatch());
+            }
+        }
+
+        // 3. Totales acumulados de la caja y resúmenes de estadísticas, en la misma transacción
+        TotalesCaja.sumarVenta(conn, idCaja, venta);
+        ResumenVentas.sumarVenta(conn, ahora, venta);
+        return ahora;
+    }
+    
+    /**
+     * Verifica que cada UPDATE de stock del lote haya afectado al menos una fila
+     * Si el driver no informa conteos (SUCCESS_NO_INFO) se confirma con una sola consulta
+     */
+    private void verificarStockDescontado(Connection conn, List<Venta.DetalleVenta> items, int[] filas) throws SQLException {
+        Set<Long> sinInformacion = new LinkedHashSet<>();
+        for (int i = 0; i < filas.length; i++) {
+            Venta.DetalleVenta item = items.get(i);
+            if (filas[i] == 0 || filas[i] == Statement.EXECUTE_FAILED) {
+                throw new SQLException("No se pudo descontar stock para: " + item.nombreProducto);
+            }
+            if (filas[i] == Statement.SUCCESS_NO_INFO) {
+                sinInformacion.add(item.codigoProducto);
+            }
+        }
+        if (sinInformacion.isEmpty()) return;
+
+        StringBuilder sql = new StringBuilder("SELECT codigo FROM productos WHERE codigo IN (");
+        for (int i = 0; i < sinInformacion.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(")");
+
+        Set<Long> encontrados = new HashSet<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            int pos = 1;
+            for (long codigo : sinInformacion) ps.setLong(pos++, codigo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) encontrados.add(rs.getLong(1));
+            }
+        }
+        for (long codigo : sinInformacion) {
+            if (!encontrados.contains(codigo)) {
+                throw new SQLException("No se pudo descontar stock para el código: " + codigo);
+            }
+        }
+    }
+
+    /**
+     * Refleja en el catálogo en memoria el stock descontado por una venta ya confirmada
+     */
+    private void actualizarCatalogo(Venta venta) {
+        if (ConexionDB.licencia.equals("LITE")) return;
+        CatalogoProductos catalogo = CatalogoProductos.getInstance();
+        for (Venta.DetalleVenta item : venta.getItems()) {
+            if (item.codigoProducto > 0) catalogo.ajustarStock(item.codigoProducto, -item.cantidad);
+        }
+    }
+    
     /**
      * NUEVA FUNCIONALIDAD: Obtiene la hora de la última venta registrada
      * @return Hora de la última venta en formato HH:mm o null si no hay ventas
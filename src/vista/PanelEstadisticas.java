@@ -14,7 +14,7 @@ public class PanelEstadisticas extends JPanel {
     public JLabel lblVentasHoy, lblVentasAyer, lblTotalProds, lblProductoMes, lblPromedioVenta, lblStockBajo;
     public JTable tablaTop, tablaSemana, tablaPeriodos;
     public DefaultTableModel modeloTop, modeloSemana, modeloPeriodos;
-    public JButton btnActualizar, btnExportar, btnReporte;
+    public JButton btnActualizar, btnExportar, btnReporte, btnReconstruir;
     
     // Colores del tema
     private final Color bgPrincipal = new Color(33, 37, 43);
@@ -67,7 +67,10 @@ public class PanelEstadisticas extends JPanel {
         btnExportar = crearBotonAccion("Exportar", colorInfo);
         btnReporte = crearBotonAccion("Reporte", colorSecundario);
         btnActualizar = crearBotonAccion("Actualizar", colorExito);
+        btnReconstruir = crearBotonAccion("Reconstruir", colorNeutral);
+        btnReconstruir.setToolTipText("Vuelve a calcular los resúmenes de ventas desde el historial");
         
+        pnlBotones.add(btnReconstruir);
         pnlBotones.add(btnExportar);
         pnlBotones.add(btnReporte);
         pnlBotones.add(btnActualizar);